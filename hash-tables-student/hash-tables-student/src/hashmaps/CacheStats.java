@@ -0,0 +1,69 @@
+package hashmaps;
+
+/**
+ * An immutable snapshot of the statistics of a CachingSimpleMap.
+ */
+public class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long evictionWeight;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long evictionWeight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.evictionWeight = evictionWeight;
+    }
+
+    /**
+     * @return the number of lookups that found a (live) value
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that found no value, or an expired one
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the total number of lookups
+     */
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * @return the fraction of lookups that were hits, or 1.0 if there have
+     *         been no lookups
+     */
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * @return the number of entries evicted, either to stay within the
+     *         maximum weight or because they expired
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the total weight of the entries evicted
+     */
+    public long evictionWeight() {
+        return evictionWeight;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount
+                + ", evictionCount=" + evictionCount + ", evictionWeight=" + evictionWeight + "}";
+    }
+}
@@ -0,0 +1,319 @@
+package hashmaps;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A SimpleMap that acts as a bounded cache: once the total weight of its
+ * entries exceeds a maximum, it evicts entries to make room.
+ *
+ * Which entries to keep is decided by the W-TinyLFU policy:
+ *
+ * - New entries enter a small LRU "window" (1% of the maximum weight), so
+ *   that bursts of new keys do not flush the rest of the cache.
+ * - Entries pushed out of the window become candidates for the main space, a
+ *   segmented LRU made of a "probation" segment and a "protected" segment
+ *   (80% of the main space). An entry in probation that is used again is
+ *   promoted to protected; protected overflow is demoted back to probation.
+ * - When the cache is over its maximum, a candidate is only admitted if a
+ *   count-min sketch (FrequencySketch) estimates that it has been used more
+ *   often recently than the probation entry it would replace (the victim);
+ *   otherwise the candidate itself is evicted.
+ *
+ * Optionally, entries expire a fixed time after they were last written.
+ * Expired entries are dropped when they are next looked up, or by
+ * cleanUp(); until then they still count towards size().
+ *
+ * Hits, misses and evictions are counted, and a snapshot of those counts is
+ * returned by stats().
+ *
+ * Lookups are by key through an underlying SimpleHashMap, so every operation
+ * takes (amortized, expected) constant time. Like SimpleHashMap, this class
+ * is not thread-safe.
+ */
+public class CachingSimpleMap<K, V> implements SimpleMap<K, V> {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static class Node<K, V> {
+        final K key;
+        V value;
+        int weight;
+        long writeTime;
+        int queue;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+
+    private final SimpleHashMap<K, Node<K, V>> index = new SimpleHashMap<>();
+    private final FrequencySketch sketch;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private final long expireAfterWriteNanos;
+    private final LongSupplier ticker;
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    // each queue is circular, with a sentinel whose next is the LRU end
+    private final Node<K, V>[] queues = newQueues(3);
+    private final long[] queueWeights = new long[3];
+    private long totalWeight;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long evictionWeight;
+
+    /**
+     * Create a cache holding at most maximumSize entries, which never expire.
+     */
+    public CachingSimpleMap(long maximumSize) {
+        this(maximumSize, (k, v) -> 1, null);
+    }
+
+    /**
+     * Create a cache whose entries weigh at most maximumWeight in total, as
+     * measured by weigher, and which expire expireAfterWrite after they were
+     * last written (or never, if expireAfterWrite is null).
+     */
+    public CachingSimpleMap(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher,
+            Duration expireAfterWrite) {
+        this(maximumWeight, weigher, expireAfterWrite, System::nanoTime);
+    }
+
+    /**
+     * As above, reading the time in nanoseconds from ticker.
+     */
+    CachingSimpleMap(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher,
+            Duration expireAfterWrite, LongSupplier ticker) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("maximumWeight must not be negative");
+        }
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * 8 / 10;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = expireAfterWrite == null ? 0 : expireAfterWrite.toNanos();
+        this.ticker = ticker;
+        this.sketch = new FrequencySketch(maximumWeight);
+        for (int i = 0; i < queues.length; i++) {
+            Node<K, V> sentinel = new Node<>(null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            queues[i] = sentinel;
+        }
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void put(K k, V v) {
+        sketch.increment(k);
+        int weight = weigher.applyAsInt(k, v);
+        if (weight < 0) {
+            throw new IllegalArgumentException("negative weight for key " + k);
+        }
+        Node<K, V> node = index.get(k);
+        if (node == null) {
+            node = new Node<>(k);
+            node.queue = WINDOW;
+            index.put(k, node);
+            link(node);
+        } else {
+            onAccess(node);
+        }
+        node.value = v;
+        queueWeights[node.queue] += weight - node.weight;
+        totalWeight += weight - node.weight;
+        node.weight = weight;
+        node.writeTime = ticker.getAsLong();
+        evict();
+    }
+
+    @Override
+    public V get(K k) {
+        return getOrDefault(k, null);
+    }
+
+    @Override
+    public V getOrDefault(K k, V defaultValue) {
+        sketch.increment(k);
+        Node<K, V> node = index.get(k);
+        if (node != null && isExpired(node)) {
+            evict(node);
+            node = null;
+        }
+        if (node == null) {
+            missCount++;
+            return defaultValue;
+        }
+        hitCount++;
+        onAccess(node);
+        return node.value;
+    }
+
+    @Override
+    public V remove(K k) {
+        Node<K, V> node = index.remove(k);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return isExpired(node) ? null : node.value;
+    }
+
+    @Override
+    public Set<K> keys() {
+        Set<K> keys = new HashSet<>();
+        for (Node<K, V> sentinel : queues) {
+            for (Node<K, V> node = sentinel.next; node != sentinel; node = node.next) {
+                if (!isExpired(node)) {
+                    keys.add(node.key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Evict every expired entry now, rather than when it is next looked up.
+     */
+    public void cleanUp() {
+        if (expireAfterWriteNanos == 0) {
+            return;
+        }
+        for (Node<K, V> sentinel : queues) {
+            Node<K, V> node = sentinel.next;
+            while (node != sentinel) {
+                Node<K, V> next = node.next;
+                if (isExpired(node)) {
+                    evict(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * @return the total weight of the entries in the cache
+     */
+    public long weight() {
+        return totalWeight;
+    }
+
+    /**
+     * @return a snapshot of the hit, miss and eviction counts so far
+     */
+    public CacheStats stats() {
+        return new CacheStats(hitCount, missCount, evictionCount, evictionWeight);
+    }
+
+    private boolean isExpired(Node<K, V> node) {
+        return expireAfterWriteNanos > 0 && ticker.getAsLong() - node.writeTime >= expireAfterWriteNanos;
+    }
+
+    /**
+     * Update the position of a node that has just been used.
+     */
+    private void onAccess(Node<K, V> node) {
+        if (node.queue == PROBATION) {
+            unlink(node);
+            node.queue = PROTECTED;
+            link(node);
+            // demote protected overflow back to probation
+            while (queueWeights[PROTECTED] > protectedMaximum) {
+                Node<K, V> demoted = queues[PROTECTED].next;
+                unlink(demoted);
+                demoted.queue = PROBATION;
+                link(demoted);
+            }
+        } else {
+            unlink(node);
+            link(node);
+        }
+    }
+
+    /**
+     * Move window overflow into probation, then evict until the cache is
+     * back within its maximum weight.
+     */
+    private void evict() {
+        Node<K, V> probation = queues[PROBATION];
+        Node<K, V> candidate = null;
+        while (queueWeights[WINDOW] > windowMaximum) {
+            Node<K, V> moved = queues[WINDOW].next;
+            unlink(moved);
+            moved.queue = PROBATION;
+            link(moved);
+            if (candidate == null) {
+                candidate = moved;
+            }
+        }
+
+        while (totalWeight > maximumWeight) {
+            Node<K, V> victim = probation.next;
+            if (victim == probation) {
+                victim = queues[PROTECTED].next != queues[PROTECTED]
+                        ? queues[PROTECTED].next : queues[WINDOW].next;
+            }
+            if (candidate == null || candidate == probation || candidate == victim) {
+                if (candidate == victim) {
+                    candidate = candidate.next;
+                }
+                evict(victim);
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                // admit the candidate; its successors are the next candidates
+                candidate = candidate.next;
+                evict(victim);
+            } else {
+                Node<K, V> rejected = candidate;
+                candidate = candidate.next;
+                evict(rejected);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> Node<K, V>[] newQueues(int count) {
+        return (Node<K, V>[]) new Node[count];
+    }
+
+    private void evict(Node<K, V> node) {
+        index.remove(node.key);
+        unlink(node);
+        evictionCount++;
+        evictionWeight += node.weight;
+    }
+
+    /**
+     * Add node at the most recently used end of its queue.
+     */
+    private void link(Node<K, V> node) {
+        Node<K, V> sentinel = queues[node.queue];
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+        queueWeights[node.queue] += node.weight;
+        totalWeight += node.weight;
+    }
+
+    private void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        queueWeights[node.queue] -= node.weight;
+        totalWeight -= node.weight;
+    }
+}
@@ -0,0 +1,85 @@
+package hashmaps;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts values of type T to and from bytes, so that they can be stored
+ * outside the Java heap or written to disk.
+ *
+ * A codec must be deterministic: equal values must encode to equal bytes,
+ * since maps that store encoded keys compare them byte-for-byte.
+ */
+public interface Codec<T> {
+
+    /**
+     * Return the encoding of value as bytes.
+     *
+     * @param value the (non-null) value to encode
+     * @return the bytes representing value
+     */
+    byte[] encode(T value);
+
+    /**
+     * Decode a value from all the remaining bytes of buffer. The buffer's
+     * position after this call is unspecified.
+     *
+     * @param buffer the bytes to decode, from position to limit
+     * @return the decoded value
+     */
+    T decode(ByteBuffer buffer);
+
+    /** Stores byte arrays as themselves. */
+    Codec<byte[]> BYTES = new Codec<byte[]>() {
+        @Override
+        public byte[] encode(byte[] value) {
+            return value;
+        }
+
+        @Override
+        public byte[] decode(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+    };
+
+    /** Stores strings as UTF-8. */
+    Codec<String> STRING = new Codec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer) {
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+    };
+
+    /** Stores integers as four big-endian bytes. */
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public byte[] encode(Integer value) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+        }
+
+        @Override
+        public Integer decode(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    /** Stores longs as eight big-endian bytes. */
+    Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public byte[] encode(Long value) {
+            return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+        }
+
+        @Override
+        public Long decode(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+}
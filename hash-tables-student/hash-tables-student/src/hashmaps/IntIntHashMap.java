@@ -0,0 +1,251 @@
+package hashmaps;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A mapping from int keys to int values, specialized so that neither keys nor
+ * values are ever boxed.
+ *
+ * This class mirrors SimpleMap for primitives. Keys and values are stored in
+ * parallel int[] arrays using open addressing with linear probing, and a
+ * separate occupancy bitset records which slots are in use, so every int can
+ * be used as a key. put(), get(), getOrDefault(), containsKey() and remove()
+ * allocate nothing.
+ *
+ * Capacity and load factor follow the HashTable semantics used by
+ * ChainingHashTable: the capacity is 2^n - 1, and when the load factor exceeds
+ * 0.75, the next put() triggers a resize by incrementing n (by one).
+ */
+public class IntIntHashMap {
+    private int[] keys;
+    private int[] values;
+    private long[] used;
+    private int size;
+    private int capacity;
+
+    /**
+     * Instantiate a new map. The initial capacity should be 7.
+     */
+    public IntIntHashMap() {
+        this(7);
+    }
+
+    /**
+     * Instantiate a new map. The initial capacity should be at least
+     * sufficient to hold n entries, but must be one less than a power of two.
+     */
+    public IntIntHashMap(int n) {
+        capacity = (int) Math.pow(2, (int) (Math.log(n) / Math.log(2)) + 1) - 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new long[(capacity + 63) >>> 6];
+        size = 0;
+    }
+
+    /**
+     * @return the number of distinct key-value pairs stored in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the length of the underlying arrays
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the ratio of the size to the capacity
+     */
+    public double loadFactor() {
+        return (double) size / capacity;
+    }
+
+    /**
+     * Insert the given key-value pair into the map; if the key already
+     * exists in the map, its value is overwritten.
+     *
+     * @param k the key to insert
+     * @param v the value to associate with the key
+     */
+    public void put(int k, int v) {
+        if (loadFactor() > 0.75) {
+            resize();
+        }
+        int index = getIndex(k);
+        while (isUsed(index)) {
+            if (keys[index] == k) {
+                values[index] = v;
+                return;
+            }
+            index = next(index);
+        }
+        keys[index] = k;
+        values[index] = v;
+        setUsed(index);
+        size++;
+    }
+
+    /**
+     * Return the value associated with k, or 0 if k is not in the map. Use
+     * containsKey() or getOrDefault() to tell a stored 0 from a missing key.
+     *
+     * @param k the key
+     * @return the value associated with k, or 0
+     */
+    public int get(int k) {
+        return getOrDefault(k, 0);
+    }
+
+    /**
+     * Return the value associated with k, or defaultValue if k is not in the
+     * map.
+     *
+     * @param k            the key
+     * @param defaultValue the value to return if k is not in the map
+     * @return the value associated with k, or defaultValue
+     */
+    public int getOrDefault(int k, int defaultValue) {
+        int index = find(k);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    /**
+     * @param k the key
+     * @return true iff k is in the map
+     */
+    public boolean containsKey(int k) {
+        return find(k) >= 0;
+    }
+
+    /**
+     * Remove the key from the map, if present.
+     *
+     * @param k the key to remove
+     * @return true iff k was in the map
+     */
+    public boolean remove(int k) {
+        int index = find(k);
+        if (index < 0) {
+            return false;
+        }
+        deleteSlot(index);
+        size--;
+        return true;
+    }
+
+    /**
+     * Return an iterator over the keys stored in the map, in no particular
+     * order.
+     *
+     * @return an iterator over the keys stored in the map
+     */
+    public PrimitiveIterator.OfInt keys() {
+        return new KeyIterator();
+    }
+
+    private int find(int k) {
+        int index = getIndex(k);
+        // a completely full table has no empty slot to stop on
+        for (int probes = 0; probes < capacity && isUsed(index); probes++) {
+            if (keys[index] == k) {
+                return index;
+            }
+            index = next(index);
+        }
+        return -1;
+    }
+
+    /**
+     * Empty the slot at hole, moving back any later entry of its probe run
+     * that can no longer be reached past the hole.
+     */
+    private void deleteSlot(int hole) {
+        int index = next(hole);
+        for (int probes = 1; probes < capacity && isUsed(index); probes++) {
+            int home = getIndex(keys[index]);
+            // move the entry unless its home lies cyclically in (hole, index]
+            boolean reachable = hole <= index
+                    ? hole < home && home <= index
+                    : hole < home || home <= index;
+            if (!reachable) {
+                keys[hole] = keys[index];
+                values[hole] = values[index];
+                hole = index;
+            }
+            index = next(index);
+        }
+        clearUsed(hole);
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        long[] oldUsed = used;
+        capacity = (capacity + 1) * 2 - 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new long[(capacity + 63) >>> 6];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if ((oldUsed[i >>> 6] & (1L << i)) != 0) {
+                int index = getIndex(oldKeys[i]);
+                while (isUsed(index)) {
+                    index = next(index);
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+                setUsed(index);
+            }
+        }
+    }
+
+    private int getIndex(int k) {
+        // mix the bits (murmur3 finalizer), then map onto [0, capacity)
+        int h = k;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (int) (((h & 0xffffffffL) * capacity) >>> 32);
+    }
+
+    private int next(int index) {
+        return index + 1 == capacity ? 0 : index + 1;
+    }
+
+    private boolean isUsed(int index) {
+        return (used[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void setUsed(int index) {
+        used[index >>> 6] |= 1L << index;
+    }
+
+    private void clearUsed(int index) {
+        used[index >>> 6] &= ~(1L << index);
+    }
+
+    private class KeyIterator implements PrimitiveIterator.OfInt {
+        private int currentIndex = 0;
+
+        @Override
+        public boolean hasNext() {
+            while (currentIndex < capacity && !isUsed(currentIndex)) {
+                currentIndex++;
+            }
+            return currentIndex < capacity;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return keys[currentIndex++];
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package hashmaps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An implementation of SimpleMap whose contents live in a memory-mapped file
+ * rather than on the Java heap.
+ *
+ * Keys and values are converted to bytes by a pair of Codecs. The file is
+ * laid out as:
+ *
+ * - a fixed 64-byte header (magic number, version, size, the location and
+ *   length of the slot region, and the end of the used part of the file);
+ * - an open-addressed slot region, a power-of-two number of 16-byte slots,
+ *   each holding the file offset of a record (0 for an empty slot, -1 for a
+ *   removed one) and the hash of its key;
+ * - an append-only data region of records, each holding the key length, the
+ *   value length (-1 for a null value), the key bytes and the value bytes.
+ *
+ * Nothing is ever overwritten in the data region: put() appends a record and
+ * points a slot at it, and remove() marks the slot as removed. When the slots
+ * pass a load factor of 0.75 a new, twice as large slot region is appended
+ * and the header is pointed at it. Space taken by old records and old slot
+ * regions is not reclaimed.
+ *
+ * Opening an existing file only reads the header and maps the file, so it
+ * takes constant time however many entries the file holds. Lookups hash and
+ * compare the encoded key directly against the mapped bytes, and
+ * getBuffer() returns a value without copying it.
+ *
+ * The whole file is mapped as one MappedByteBuffer, so it is limited to 2GB.
+ */
+public class MappedHashMap<K, V> implements SimpleMap<K, V>, Closeable {
+    private static final int MAGIC = 0x534d4d48; // "SMMH"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_SLOTS = 1024;
+
+    // header field offsets
+    private static final int MAGIC_AT = 0;
+    private static final int VERSION_AT = 4;
+    private static final int SIZE_AT = 8;
+    private static final int SLOTS_OFFSET_AT = 16;
+    private static final int SLOT_COUNT_AT = 24;
+    private static final int USED_SLOTS_AT = 28;
+    private static final int DATA_END_AT = 32;
+
+    private static final long EMPTY = 0;
+    private static final long REMOVED = -1;
+
+    private final FileChannel channel;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private MappedByteBuffer buffer;
+
+    private MappedHashMap(FileChannel channel, Codec<K> keyCodec, Codec<V> valueCodec) {
+        this.channel = channel;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+    }
+
+    /**
+     * Open the map stored in the given file, creating an empty one if the
+     * file does not exist.
+     *
+     * @param path       the file holding the map
+     * @param keyCodec   the codec for keys
+     * @param valueCodec the codec for values
+     * @return the map
+     * @throws IOException if the file cannot be opened or is not a map file
+     */
+    public static <K, V> MappedHashMap<K, V> open(Path path, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedHashMap<K, V> map = new MappedHashMap<>(channel, keyCodec, valueCodec);
+        try {
+            if (channel.size() == 0) {
+                map.initialize();
+            } else {
+                map.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (map.buffer.getInt(MAGIC_AT) != MAGIC || map.buffer.getInt(VERSION_AT) != VERSION) {
+                    throw new IOException(path + " is not a MappedHashMap file");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return map;
+    }
+
+    @Override
+    public int size() {
+        return (int) buffer.getLong(SIZE_AT);
+    }
+
+    @Override
+    public void put(K k, V v) {
+        byte[] key = keyCodec.encode(k);
+        byte[] value = v == null ? null : valueCodec.encode(v);
+        int hash = hash(key);
+        long record = append(key, value);
+
+        int free = -1;
+        int slotCount = slotCount();
+        int index = hash & (slotCount - 1);
+        while (true) {
+            long offset = slotRecord(index);
+            if (offset == EMPTY) {
+                break;
+            }
+            if (offset == REMOVED) {
+                if (free < 0) {
+                    free = index;
+                }
+            } else if (slotHash(index) == hash && keyEquals(offset, key)) {
+                setSlot(index, record, hash);
+                return;
+            }
+            index = (index + 1) & (slotCount - 1);
+        }
+        if (free < 0) {
+            free = index;
+            buffer.putInt(USED_SLOTS_AT, buffer.getInt(USED_SLOTS_AT) + 1);
+        }
+        setSlot(free, record, hash);
+        buffer.putLong(SIZE_AT, buffer.getLong(SIZE_AT) + 1);
+        if ((double) buffer.getInt(USED_SLOTS_AT) / slotCount > 0.75) {
+            growSlots();
+        }
+    }
+
+    @Override
+    public V get(K k) {
+        return getOrDefault(k, null);
+    }
+
+    @Override
+    public V getOrDefault(K k, V defaultValue) {
+        int index = find(keyCodec.encode(k));
+        if (index < 0) {
+            return defaultValue;
+        }
+        ByteBuffer value = valueAt(slotRecord(index));
+        return value == null ? null : valueCodec.decode(value);
+    }
+
+    /**
+     * Return a read-only view of the encoded value associated with k, without
+     * copying it out of the file, or null if k is not in the map or maps to
+     * null. The view is only valid until the next put().
+     *
+     * @param k the (non-null) key
+     * @return the bytes of the value associated with k, or null
+     */
+    public ByteBuffer getBuffer(K k) {
+        int index = find(keyCodec.encode(k));
+        return index < 0 ? null : valueAt(slotRecord(index));
+    }
+
+    @Override
+    public V remove(K k) {
+        int index = find(keyCodec.encode(k));
+        if (index < 0) {
+            return null;
+        }
+        ByteBuffer value = valueAt(slotRecord(index));
+        setSlot(index, REMOVED, 0);
+        buffer.putLong(SIZE_AT, buffer.getLong(SIZE_AT) - 1);
+        return value == null ? null : valueCodec.decode(value);
+    }
+
+    @Override
+    public Set<K> keys() {
+        Set<K> keys = new HashSet<>();
+        for (int index = 0; index < slotCount(); index++) {
+            long offset = slotRecord(index);
+            if (offset != EMPTY && offset != REMOVED) {
+                int keyLength = buffer.getInt((int) offset);
+                keys.add(keyCodec.decode(slice(offset + 8, keyLength)));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Write any changes to the map through to the storage device.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * Write any changes to the map through to the storage device and close
+     * the file. The map must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void initialize() throws IOException {
+        long slotsOffset = HEADER_SIZE;
+        long dataEnd = slotsOffset + (long) INITIAL_SLOTS * SLOT_SIZE;
+        remap(dataEnd * 2);
+        buffer.putInt(MAGIC_AT, MAGIC);
+        buffer.putInt(VERSION_AT, VERSION);
+        buffer.putLong(SIZE_AT, 0);
+        buffer.putLong(SLOTS_OFFSET_AT, slotsOffset);
+        buffer.putInt(SLOT_COUNT_AT, INITIAL_SLOTS);
+        buffer.putInt(USED_SLOTS_AT, 0);
+        buffer.putLong(DATA_END_AT, dataEnd);
+    }
+
+    /**
+     * Return the slot holding the record for key, or -1 if there is none.
+     */
+    private int find(byte[] key) {
+        int hash = hash(key);
+        int slotCount = slotCount();
+        int index = hash & (slotCount - 1);
+        while (true) {
+            long offset = slotRecord(index);
+            if (offset == EMPTY) {
+                return -1;
+            }
+            if (offset != REMOVED && slotHash(index) == hash && keyEquals(offset, key)) {
+                return index;
+            }
+            index = (index + 1) & (slotCount - 1);
+        }
+    }
+
+    /**
+     * Append a record to the data region, returning its offset.
+     */
+    private long append(byte[] key, byte[] value) {
+        int valueLength = value == null ? 0 : value.length;
+        long offset = allocate(8L + key.length + valueLength);
+        int at = (int) offset;
+        buffer.putInt(at, key.length);
+        buffer.putInt(at + 4, value == null ? -1 : value.length);
+        buffer.put(at + 8, key);
+        if (value != null) {
+            buffer.put(at + 8 + key.length, value);
+        }
+        return offset;
+    }
+
+    /**
+     * Reserve length bytes (8-byte aligned) at the end of the used part of
+     * the file, growing the file if need be, and return their offset.
+     */
+    private long allocate(long length) {
+        long offset = buffer.getLong(DATA_END_AT);
+        long end = offset + ((length + 7) & ~7L);
+        if (end > buffer.capacity()) {
+            try {
+                remap(grownSize(end, buffer.capacity()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        buffer.putLong(DATA_END_AT, end);
+        return offset;
+    }
+
+    /**
+     * Return the size to grow a file of the given capacity to so that it
+     * holds end bytes: twice the capacity, but no more than the 2GB a
+     * mapping can hold, so that remap() only fails when end itself is past
+     * the limit.
+     */
+    static long grownSize(long end, long capacity) {
+        return Math.max(end, Math.min(Integer.MAX_VALUE, 2L * capacity));
+    }
+
+    private void remap(long fileSize) throws IOException {
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("MappedHashMap files are limited to 2GB");
+        }
+        // writing the last byte extends the file to fileSize
+        channel.write(ByteBuffer.wrap(new byte[1]), fileSize - 1);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+    }
+
+    /**
+     * Append a slot region twice as large as the current one, move the live
+     * slots into it, and point the header at it.
+     */
+    private void growSlots() {
+        int oldCount = slotCount();
+        int oldOffset = (int) buffer.getLong(SLOTS_OFFSET_AT);
+        int newCount = oldCount * 2;
+        long newOffset = allocate((long) newCount * SLOT_SIZE);
+        for (int index = 0; index < oldCount; index++) {
+            int at = oldOffset + index * SLOT_SIZE;
+            long record = buffer.getLong(at);
+            if (record != EMPTY && record != REMOVED) {
+                int hash = buffer.getInt(at + 8);
+                int target = hash & (newCount - 1);
+                while (buffer.getLong((int) newOffset + target * SLOT_SIZE) != EMPTY) {
+                    target = (target + 1) & (newCount - 1);
+                }
+                buffer.putLong((int) newOffset + target * SLOT_SIZE, record);
+                buffer.putInt((int) newOffset + target * SLOT_SIZE + 8, hash);
+            }
+        }
+        buffer.putLong(SLOTS_OFFSET_AT, newOffset);
+        buffer.putInt(SLOT_COUNT_AT, newCount);
+        buffer.putInt(USED_SLOTS_AT, (int) buffer.getLong(SIZE_AT));
+    }
+
+    private int slotCount() {
+        return buffer.getInt(SLOT_COUNT_AT);
+    }
+
+    private int slotAt(int index) {
+        return (int) buffer.getLong(SLOTS_OFFSET_AT) + index * SLOT_SIZE;
+    }
+
+    private long slotRecord(int index) {
+        return buffer.getLong(slotAt(index));
+    }
+
+    private int slotHash(int index) {
+        return buffer.getInt(slotAt(index) + 8);
+    }
+
+    private void setSlot(int index, long record, int hash) {
+        int at = slotAt(index);
+        buffer.putLong(at, record);
+        buffer.putInt(at + 8, hash);
+    }
+
+    private boolean keyEquals(long record, byte[] key) {
+        int at = (int) record;
+        if (buffer.getInt(at) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(at + 8 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return a view of the value bytes of the record, or null for a null value.
+     */
+    private ByteBuffer valueAt(long record) {
+        int at = (int) record;
+        int valueLength = buffer.getInt(at + 4);
+        if (valueLength < 0) {
+            return null;
+        }
+        return slice(record + 8 + buffer.getInt(at), valueLength);
+    }
+
+    private ByteBuffer slice(long offset, int length) {
+        return buffer.slice((int) offset, length).asReadOnlyBuffer();
+    }
+
+    private static int hash(byte[] key) {
+        // a fixed function of the bytes, so hashes stay valid across runs
+        int h = 1;
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+}
@@ -0,0 +1,469 @@
+package hashmaps;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An implementation of SimpleMap whose keys and values live outside the Java
+ * heap, so that a map holding gigabytes of data costs the garbage collector
+ * only a handful of objects.
+ *
+ * Keys and values are converted to bytes by a pair of Codecs and stored as
+ * records (the key length, the value length or -1 for a null value, the key
+ * bytes and the value bytes) in direct ByteBuffers called slabs. The only
+ * per-entry state on the heap is the index: an open-addressed table of two
+ * primitive arrays, holding the address (slab number and offset) of each
+ * record and the hash of its key. It uses linear probing, and removals shift
+ * later entries back rather than leaving tombstones.
+ *
+ * Records are allocated from slabs in blocks of power-of-two size classes,
+ * from 16 bytes up to the slab size. Each size class keeps a free list of
+ * released blocks, threaded through the blocks themselves, and allocation
+ * takes a free block of the right class before carving a new one from the
+ * end of the current slab. When the current slab is too full for a block,
+ * its remainder is split into free blocks of smaller classes and a new slab
+ * is started. A record too large for a slab gets a slab of its own, which is
+ * dropped when the record is removed.
+ *
+ * Free lists can leave memory stranded in size classes that are no longer
+ * used. compact() copies every record into fresh, densely packed slabs and
+ * drops the old ones. Java 17 cannot free a direct buffer explicitly, so the
+ * memory of dropped slabs is returned when the collector reclaims their
+ * ByteBuffer objects; close() drops every slab at once.
+ *
+ * Instances are not thread-safe.
+ */
+public class OffHeapHashMap<K, V> implements SimpleMap<K, V>, Closeable {
+    private static final int DEFAULT_SLAB_SIZE = 1 << 20;
+    private static final int MIN_BLOCK = 16;
+    private static final int RECORD_HEADER = 8;
+    private static final int INITIAL_SLOTS = 16;
+    private static final long EMPTY = -1;
+
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final int slabSize;
+
+    // the index: record addresses (EMPTY for a free slot) and key hashes
+    private long[] records;
+    private int[] hashes;
+    private int size;
+
+    // the slabs; a null entry is the slot of a dropped large-record slab
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final ArrayDeque<Integer> freeSlabNumbers = new ArrayDeque<>();
+    // head of the free list of each size class, or EMPTY
+    private final long[] freeBlocks;
+    // the slab blocks are currently carved from, and the offset of its unused part
+    private int currentSlab = -1;
+    private int currentOffset;
+    private long allocatedBytes;
+    private long usedBytes;
+
+    /**
+     * Instantiate an empty map with 1MB slabs.
+     *
+     * @param keyCodec   the codec for keys
+     * @param valueCodec the codec for values
+     */
+    public OffHeapHashMap(Codec<K> keyCodec, Codec<V> valueCodec) {
+        this(keyCodec, valueCodec, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * Instantiate an empty map whose slabs are slabSize bytes.
+     *
+     * @param keyCodec   the codec for keys
+     * @param valueCodec the codec for values
+     * @param slabSize   the size of each slab, a power of two of at least 64
+     */
+    public OffHeapHashMap(Codec<K> keyCodec, Codec<V> valueCodec, int slabSize) {
+        if (slabSize < 64 || Integer.bitCount(slabSize) != 1) {
+            throw new IllegalArgumentException("slab size must be a power of two of at least 64: " + slabSize);
+        }
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.slabSize = slabSize;
+        freeBlocks = new long[sizeClass(slabSize) + 1];
+        Arrays.fill(freeBlocks, EMPTY);
+        records = new long[INITIAL_SLOTS];
+        Arrays.fill(records, EMPTY);
+        hashes = new int[INITIAL_SLOTS];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void put(K k, V v) {
+        byte[] key = keyCodec.encode(k);
+        byte[] value = v == null ? null : valueCodec.encode(v);
+        int hash = hash(key);
+        int index = find(key, hash);
+        if (index >= 0) {
+            long record = records[index];
+            long block = blockSize(recordLength(key, value));
+            if (block <= slabSize && block == blockSize(recordLength(record))) {
+                write(record, key, value);
+            } else {
+                free(record);
+                records[index] = store(key, value);
+            }
+            return;
+        }
+        if ((size + 1) * 4L > records.length * 3L) {
+            growIndex();
+        }
+        index = hash & (records.length - 1);
+        while (records[index] != EMPTY) {
+            index = (index + 1) & (records.length - 1);
+        }
+        records[index] = store(key, value);
+        hashes[index] = hash;
+        size++;
+    }
+
+    @Override
+    public V get(K k) {
+        return getOrDefault(k, null);
+    }
+
+    @Override
+    public V getOrDefault(K k, V defaultValue) {
+        byte[] key = keyCodec.encode(k);
+        int index = find(key, hash(key));
+        if (index < 0) {
+            return defaultValue;
+        }
+        ByteBuffer value = valueAt(records[index]);
+        return value == null ? null : valueCodec.decode(value);
+    }
+
+    @Override
+    public V remove(K k) {
+        byte[] key = keyCodec.encode(k);
+        int index = find(key, hash(key));
+        if (index < 0) {
+            return null;
+        }
+        long record = records[index];
+        ByteBuffer value = valueAt(record);
+        V removed = value == null ? null : valueCodec.decode(value);
+        free(record);
+        deleteSlot(index);
+        size--;
+        return removed;
+    }
+
+    @Override
+    public Set<K> keys() {
+        Set<K> keys = new HashSet<>();
+        for (long record : records) {
+            if (record != EMPTY) {
+                ByteBuffer slab = slab(record);
+                int at = offset(record);
+                keys.add(keyCodec.decode(slab.slice(at + RECORD_HEADER, slab.getInt(at))));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Copy every record into fresh, densely packed slabs and drop the old
+     * ones, releasing the memory held by free blocks. Records with slabs of
+     * their own are not copied.
+     */
+    public void compact() {
+        List<ByteBuffer> oldSlabs = new ArrayList<>(slabs);
+        slabs.clear();
+        freeSlabNumbers.clear();
+        Arrays.fill(freeBlocks, EMPTY);
+        currentSlab = -1;
+        allocatedBytes = 0;
+        usedBytes = 0;
+        for (int index = 0; index < records.length; index++) {
+            long record = records[index];
+            if (record == EMPTY) {
+                continue;
+            }
+            ByteBuffer oldSlab = oldSlabs.get(slabNumber(record));
+            int at = offset(record);
+            int length = RECORD_HEADER + oldSlab.getInt(at) + Math.max(0, oldSlab.getInt(at + 4));
+            long moved;
+            if (blockSize(length) > slabSize) {
+                moved = address(addSlab(oldSlab), 0);
+                allocatedBytes += oldSlab.capacity();
+                usedBytes += oldSlab.capacity();
+            } else {
+                moved = allocate(length);
+                slab(moved).put(offset(moved), oldSlab, at, length);
+            }
+            records[index] = moved;
+        }
+    }
+
+    /**
+     * Return the number of off-heap bytes held in slabs, whether or not they
+     * are in use.
+     *
+     * @return the bytes held off the heap
+     */
+    public long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Return the number of off-heap bytes in the blocks holding the map's
+     * records.
+     *
+     * @return the bytes in use
+     */
+    public long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Drop every entry and every slab. The map is empty, and still usable,
+     * afterwards.
+     */
+    @Override
+    public void close() {
+        slabs.clear();
+        freeSlabNumbers.clear();
+        Arrays.fill(freeBlocks, EMPTY);
+        currentSlab = -1;
+        allocatedBytes = 0;
+        usedBytes = 0;
+        records = new long[INITIAL_SLOTS];
+        Arrays.fill(records, EMPTY);
+        hashes = new int[INITIAL_SLOTS];
+        size = 0;
+    }
+
+    /**
+     * Return the index slot holding the record for key, or -1 if there is none.
+     */
+    private int find(byte[] key, int hash) {
+        int mask = records.length - 1;
+        for (int index = hash & mask; records[index] != EMPTY; index = (index + 1) & mask) {
+            if (hashes[index] == hash && keyEquals(records[index], key)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Empty the index slot, shifting back any later entries of its probe
+     * run that would otherwise become unreachable.
+     */
+    private void deleteSlot(int index) {
+        int mask = records.length - 1;
+        int hole = index;
+        for (int next = (hole + 1) & mask; records[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hashes[next] & mask;
+            // move the entry at next into the hole unless its home lies in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                records[hole] = records[next];
+                hashes[hole] = hashes[next];
+                hole = next;
+            }
+        }
+        records[hole] = EMPTY;
+    }
+
+    private void growIndex() {
+        long[] oldRecords = records;
+        int[] oldHashes = hashes;
+        records = new long[oldRecords.length * 2];
+        Arrays.fill(records, EMPTY);
+        hashes = new int[records.length];
+        int mask = records.length - 1;
+        for (int i = 0; i < oldRecords.length; i++) {
+            if (oldRecords[i] != EMPTY) {
+                int index = oldHashes[i] & mask;
+                while (records[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                records[index] = oldRecords[i];
+                hashes[index] = oldHashes[i];
+            }
+        }
+    }
+
+    /**
+     * Allocate a block for a record of key and value, write it, and return
+     * its address.
+     */
+    private long store(byte[] key, byte[] value) {
+        int length = recordLength(key, value);
+        long record;
+        if (blockSize(length) > slabSize) {
+            record = address(addSlab(ByteBuffer.allocateDirect(length)), 0);
+            allocatedBytes += length;
+            usedBytes += length;
+        } else {
+            record = allocate(length);
+        }
+        write(record, key, value);
+        return record;
+    }
+
+    private void write(long record, byte[] key, byte[] value) {
+        ByteBuffer slab = slab(record);
+        int at = offset(record);
+        slab.putInt(at, key.length);
+        slab.putInt(at + 4, value == null ? -1 : value.length);
+        slab.put(at + RECORD_HEADER, key);
+        if (value != null) {
+            slab.put(at + RECORD_HEADER + key.length, value);
+        }
+    }
+
+    /**
+     * Return the address of a free block large enough for length bytes,
+     * taken from its size class's free list or carved from the current slab.
+     */
+    private long allocate(int length) {
+        int sizeClass = sizeClass(length);
+        int block = MIN_BLOCK << sizeClass;
+        usedBytes += block;
+        long head = freeBlocks[sizeClass];
+        if (head != EMPTY) {
+            freeBlocks[sizeClass] = slab(head).getLong(offset(head));
+            return head;
+        }
+        if (currentSlab < 0 || currentOffset + block > slabSize) {
+            if (currentSlab >= 0) {
+                releaseRemainder();
+            }
+            currentSlab = addSlab(ByteBuffer.allocateDirect(slabSize));
+            currentOffset = 0;
+            allocatedBytes += slabSize;
+        }
+        long address = address(currentSlab, currentOffset);
+        currentOffset += block;
+        return address;
+    }
+
+    /**
+     * Split the unused end of the current slab into free blocks. Offsets are
+     * sums of block sizes, so each block carved largest first is aligned.
+     */
+    private void releaseRemainder() {
+        for (int sizeClass = freeBlocks.length - 1; sizeClass >= 0; sizeClass--) {
+            int block = MIN_BLOCK << sizeClass;
+            while (currentOffset + block <= slabSize) {
+                push(sizeClass, address(currentSlab, currentOffset));
+                currentOffset += block;
+            }
+        }
+    }
+
+    private void free(long record) {
+        int length = recordLength(record);
+        if (blockSize(length) > slabSize) {
+            int number = slabNumber(record);
+            allocatedBytes -= slabs.get(number).capacity();
+            usedBytes -= slabs.get(number).capacity();
+            slabs.set(number, null);
+            freeSlabNumbers.push(number);
+            return;
+        }
+        int sizeClass = sizeClass(length);
+        usedBytes -= MIN_BLOCK << sizeClass;
+        push(sizeClass, record);
+    }
+
+    private void push(int sizeClass, long block) {
+        slab(block).putLong(offset(block), freeBlocks[sizeClass]);
+        freeBlocks[sizeClass] = block;
+    }
+
+    private int addSlab(ByteBuffer slab) {
+        Integer number = freeSlabNumbers.poll();
+        if (number != null) {
+            slabs.set(number, slab);
+            return number;
+        }
+        slabs.add(slab);
+        return slabs.size() - 1;
+    }
+
+    private boolean keyEquals(long record, byte[] key) {
+        ByteBuffer slab = slab(record);
+        int at = offset(record);
+        return slab.getInt(at) == key.length
+                && slab.slice(at + RECORD_HEADER, key.length).equals(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * Return a view of the value bytes of the record, or null for a null value.
+     */
+    private ByteBuffer valueAt(long record) {
+        ByteBuffer slab = slab(record);
+        int at = offset(record);
+        int valueLength = slab.getInt(at + 4);
+        if (valueLength < 0) {
+            return null;
+        }
+        return slab.slice(at + RECORD_HEADER + slab.getInt(at), valueLength);
+    }
+
+    private int recordLength(long record) {
+        ByteBuffer slab = slab(record);
+        int at = offset(record);
+        return RECORD_HEADER + slab.getInt(at) + Math.max(0, slab.getInt(at + 4));
+    }
+
+    private static int recordLength(byte[] key, byte[] value) {
+        return RECORD_HEADER + key.length + (value == null ? 0 : value.length);
+    }
+
+    /**
+     * Return the size class of a record of length bytes: the n for which
+     * MIN_BLOCK * 2^n is the smallest block that holds it.
+     */
+    private static int sizeClass(int length) {
+        if (length <= MIN_BLOCK) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(length - 1) - Integer.numberOfTrailingZeros(MIN_BLOCK);
+    }
+
+    private static long blockSize(int length) {
+        return (long) MIN_BLOCK << sizeClass(length);
+    }
+
+    private ByteBuffer slab(long address) {
+        return slabs.get(slabNumber(address));
+    }
+
+    private static long address(int slab, int offset) {
+        return ((long) slab << 32) | offset;
+    }
+
+    private static int slabNumber(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static int hash(byte[] key) {
+        int h = Arrays.hashCode(key);
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+}
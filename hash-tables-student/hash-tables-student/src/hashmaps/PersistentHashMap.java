@@ -0,0 +1,474 @@
+package hashmaps;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * An implementation of SimpleMap backed by a persistent (immutable) hash
+ * array mapped trie, or HAMT, so that a consistent snapshot of the map can be
+ * taken in constant time.
+ *
+ * The trie branches on five bits of a key's hash code at each level. Each
+ * node stores a 32-bit bitmap saying which of its 32 possible children are
+ * present, and a compact array holding only those: either a key and its
+ * value, or (with a null key) a child node. Keys whose entire hash codes
+ * collide are kept together in a collision node. Lookups and updates touch
+ * one node per level, and there are at most seven levels.
+ *
+ * Nodes are never modified once the map that built them is visible to
+ * others. An update copies the nodes on the path from the root to the
+ * changed entry, sharing every other node with the previous version, and then
+ * publishes the new root with a single volatile write. So snapshot() just
+ * hands out the current root: the snapshot and this map then evolve
+ * independently, and a reader of a snapshot can never see a partial update.
+ *
+ * Path copying costs an allocation per level on every update. For bulk
+ * loading, batch() runs a series of updates in "transient" mode, where nodes
+ * are tagged with an edit token and nodes created during the batch are updated
+ * in place; the token is dropped when the batch ends (or a snapshot is taken
+ * during it), which freezes those nodes.
+ *
+ * A PersistentHashMap has a single writer. snapshot() and the lookup methods
+ * may be called from any thread, except while a batch is running, when the
+ * live map is being modified in place and only the writer may use it.
+ * Snapshots taken during a batch are not affected by the rest of it.
+ */
+public class PersistentHashMap<K, V> implements SimpleMap<K, V> {
+    private static final Object NOT_FOUND = new Object();
+
+    /**
+     * The root node and size, published together.
+     */
+    private static final class Root {
+        final Node node;
+        final int size;
+
+        Root(Node node, int size) {
+            this.node = node;
+            this.size = size;
+        }
+    }
+
+    private volatile Root root;
+    // non-null while a batch is running; nodes carrying it may be mutated
+    private Object edit;
+
+    /**
+     * Create an empty map.
+     */
+    public PersistentHashMap() {
+        this(new Root(BitmapIndexedNode.EMPTY, 0));
+    }
+
+    private PersistentHashMap(Root root) {
+        this.root = root;
+    }
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    @Override
+    public void put(K k, V v) {
+        Root r = root;
+        Box added = new Box();
+        Node node = r.node.assoc(edit, 0, hash(k), k, v, added);
+        if (node != r.node || added.found) {
+            root = new Root(node, added.found ? r.size + 1 : r.size);
+        }
+    }
+
+    @Override
+    public V get(K k) {
+        return getOrDefault(k, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(K k, V defaultValue) {
+        Object v = root.node.find(0, hash(k), k, NOT_FOUND);
+        return v == NOT_FOUND ? defaultValue : (V) v;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(K k) {
+        Root r = root;
+        Box removed = new Box();
+        Node node = r.node.without(edit, 0, hash(k), k, removed);
+        if (!removed.found) {
+            return null;
+        }
+        root = new Root(node == null ? BitmapIndexedNode.EMPTY : node, r.size - 1);
+        return (V) removed.value;
+    }
+
+    /**
+     * Put every entry of entries into this map, in a single batch.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        batch(map -> {
+            for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+                map.put(entry.getKey(), entry.getValue());
+            }
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<K> keys() {
+        Set<K> keys = new HashSet<>();
+        root.node.forEach((k, v) -> keys.add((K) k));
+        return keys;
+    }
+
+    /**
+     * Return a map holding the current contents of this one, in constant
+     * time. Later updates to either map do not affect the other.
+     *
+     * @return a snapshot of this map
+     */
+    public PersistentHashMap<K, V> snapshot() {
+        if (edit != null) {
+            // freeze the nodes built so far in this batch
+            edit = new Object();
+        }
+        return new PersistentHashMap<>(root);
+    }
+
+    /**
+     * Apply updates to this map in transient mode, in which nodes allocated
+     * during the batch are updated in place rather than copied. The result
+     * is the same as applying the updates one at a time.
+     *
+     * @param updates performs the updates, on the map it is passed
+     */
+    public void batch(Consumer<? super PersistentHashMap<K, V>> updates) {
+        if (edit != null) {
+            // already in a batch
+            updates.accept(this);
+            return;
+        }
+        edit = new Object();
+        try {
+            updates.accept(this);
+        } finally {
+            edit = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        root.node.forEach((k, v) -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(k).append('=').append(v);
+        });
+        return sb.append('}').toString();
+    }
+
+    private static int hash(Object k) {
+        int h = k.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bitpos(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    /**
+     * Reports back whether an update added or removed a key, and the removed
+     * value.
+     */
+    private static final class Box {
+        boolean found;
+        Object value;
+    }
+
+    private abstract static class Node {
+        /**
+         * Return the value for key, or notFound if it is absent.
+         */
+        abstract Object find(int shift, int hash, Object key, Object notFound);
+
+        /**
+         * Return this node with key mapped to value, setting added.found if
+         * the key is new. Returns this node itself if nothing changed, or if
+         * it was owned by edit and updated in place.
+         */
+        abstract Node assoc(Object edit, int shift, int hash, Object key, Object value, Box added);
+
+        /**
+         * Return this node without key, or null if that leaves it empty,
+         * setting removed.found and removed.value if the key was present.
+         */
+        abstract Node without(Object edit, int shift, int hash, Object key, Box removed);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+    }
+
+    private static final class BitmapIndexedNode extends Node {
+        static final BitmapIndexedNode EMPTY = new BitmapIndexedNode(null, 0, new Object[0]);
+
+        final Object edit;
+        int bitmap;
+        // key/value pairs, with a null key marking a child node as the value;
+        // in nodes owned by an edit, there may be unused space at the end
+        Object[] array;
+
+        BitmapIndexedNode(Object edit, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key, Object notFound) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return notFound;
+            }
+            int i = 2 * index(bit);
+            Object keyOrNull = array[i];
+            Object valueOrNode = array[i + 1];
+            if (keyOrNull == null) {
+                return ((Node) valueOrNode).find(shift + 5, hash, key, notFound);
+            }
+            return key.equals(keyOrNull) ? valueOrNode : notFound;
+        }
+
+        @Override
+        Node assoc(Object edit, int shift, int hash, Object key, Object value, Box added) {
+            int bit = bitpos(hash, shift);
+            int i = 2 * index(bit);
+            if ((bitmap & bit) != 0) {
+                Object keyOrNull = array[i];
+                Object valueOrNode = array[i + 1];
+                if (keyOrNull == null) {
+                    Node child = (Node) valueOrNode;
+                    Node updated = child.assoc(edit, shift + 5, hash, key, value, added);
+                    return updated == child ? this : editAndSet(edit, i + 1, updated);
+                }
+                if (key.equals(keyOrNull)) {
+                    return valueOrNode == value ? this : editAndSet(edit, i + 1, value);
+                }
+                added.found = true;
+                Node child = createNode(edit, shift + 5, keyOrNull, valueOrNode, hash, key, value);
+                BitmapIndexedNode editable = ensureEditable(edit);
+                editable.array[i] = null;
+                editable.array[i + 1] = child;
+                return editable;
+            }
+
+            added.found = true;
+            int n = Integer.bitCount(bitmap);
+            if (edit != null && edit == this.edit && 2 * n < array.length) {
+                System.arraycopy(array, i, array, i + 2, 2 * n - i);
+                array[i] = key;
+                array[i + 1] = value;
+                bitmap |= bit;
+                return this;
+            }
+            // leave room to grow in place if this node belongs to a batch
+            Object[] newArray = new Object[2 * (edit != null ? n + 4 : n + 1)];
+            System.arraycopy(array, 0, newArray, 0, i);
+            newArray[i] = key;
+            newArray[i + 1] = value;
+            System.arraycopy(array, i, newArray, i + 2, 2 * n - i);
+            return new BitmapIndexedNode(edit, bitmap | bit, newArray);
+        }
+
+        @Override
+        Node without(Object edit, int shift, int hash, Object key, Box removed) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = 2 * index(bit);
+            Object keyOrNull = array[i];
+            Object valueOrNode = array[i + 1];
+            if (keyOrNull == null) {
+                Node child = (Node) valueOrNode;
+                Node updated = child.without(edit, shift + 5, hash, key, removed);
+                if (updated == child) {
+                    return this;
+                }
+                if (updated != null) {
+                    return editAndSet(edit, i + 1, updated);
+                }
+            } else if (key.equals(keyOrNull)) {
+                removed.found = true;
+                removed.value = valueOrNode;
+            } else {
+                return this;
+            }
+            // drop the pair at i
+            if (bitmap == bit) {
+                return null;
+            }
+            int n = Integer.bitCount(bitmap);
+            if (edit != null && edit == this.edit) {
+                System.arraycopy(array, i + 2, array, i, 2 * n - i - 2);
+                array[2 * n - 2] = null;
+                array[2 * n - 1] = null;
+                bitmap ^= bit;
+                return this;
+            }
+            Object[] newArray = new Object[2 * (n - 1)];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, 2 * n - i - 2);
+            return new BitmapIndexedNode(edit, bitmap ^ bit, newArray);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            int n = Integer.bitCount(bitmap);
+            for (int i = 0; i < 2 * n; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private BitmapIndexedNode ensureEditable(Object edit) {
+            if (edit != null && edit == this.edit) {
+                return this;
+            }
+            int n = Integer.bitCount(bitmap);
+            Object[] newArray = new Object[2 * (edit != null ? n + 1 : n)];
+            System.arraycopy(array, 0, newArray, 0, 2 * n);
+            return new BitmapIndexedNode(edit, bitmap, newArray);
+        }
+
+        private BitmapIndexedNode editAndSet(Object edit, int i, Object value) {
+            BitmapIndexedNode editable = ensureEditable(edit);
+            editable.array[i] = value;
+            return editable;
+        }
+    }
+
+    private static final class CollisionNode extends Node {
+        final Object edit;
+        final int hash;
+        int count;
+        // key/value pairs; in nodes owned by an edit, there may be unused
+        // space at the end
+        Object[] array;
+
+        CollisionNode(Object edit, int hash, int count, Object[] array) {
+            this.edit = edit;
+            this.hash = hash;
+            this.count = count;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < 2 * count; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key, Object notFound) {
+            int i = indexOf(key);
+            return i < 0 ? notFound : array[i + 1];
+        }
+
+        @Override
+        Node assoc(Object edit, int shift, int hash, Object key, Object value, Box added) {
+            if (hash != this.hash) {
+                // push this node down a level, beside the new key
+                return new BitmapIndexedNode(edit, bitpos(this.hash, shift), new Object[] { null, this })
+                        .assoc(edit, shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                CollisionNode editable = ensureEditable(edit, count);
+                editable.array[i + 1] = value;
+                return editable;
+            }
+            added.found = true;
+            CollisionNode editable = ensureEditable(edit, count + 1);
+            editable.array[2 * count] = key;
+            editable.array[2 * count + 1] = value;
+            editable.count = count + 1;
+            return editable;
+        }
+
+        @Override
+        Node without(Object edit, int shift, int hash, Object key, Box removed) {
+            int i = indexOf(key);
+            if (i < 0) {
+                return this;
+            }
+            removed.found = true;
+            removed.value = array[i + 1];
+            if (count == 1) {
+                return null;
+            }
+            CollisionNode editable = ensureEditable(edit, count);
+            // move the last pair into the hole
+            int last = 2 * (count - 1);
+            editable.array[i] = editable.array[last];
+            editable.array[i + 1] = editable.array[last + 1];
+            editable.array[last] = null;
+            editable.array[last + 1] = null;
+            editable.count = count - 1;
+            return editable;
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < 2 * count; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+
+        /**
+         * Return a node owned by edit with room for pairs pairs: this one, if
+         * it already is, or else a copy.
+         */
+        private CollisionNode ensureEditable(Object edit, int pairs) {
+            if (edit != null && edit == this.edit && 2 * pairs <= array.length) {
+                return this;
+            }
+            Object[] newArray = new Object[2 * (edit != null ? pairs + 2 : pairs)];
+            System.arraycopy(array, 0, newArray, 0, 2 * count);
+            return new CollisionNode(edit, hash, count, newArray);
+        }
+    }
+
+    /**
+     * Return a node at the given level holding both pairs, whose keys differ.
+     */
+    private static Node createNode(Object edit, int shift, Object key1, Object value1,
+            int hash2, Object key2, Object value2) {
+        int hash1 = hash(key1);
+        if (hash1 == hash2) {
+            return new CollisionNode(edit, hash1, 2, new Object[] { key1, value1, key2, value2 });
+        }
+        Box added = new Box();
+        return BitmapIndexedNode.EMPTY
+                .assoc(edit, shift, hash1, key1, value1, added)
+                .assoc(edit, shift, hash2, key2, value2, added);
+    }
+}
@@ -0,0 +1,415 @@
+package hashmaps;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * A SimpleMap spread over several shards, each itself a SimpleMap (for
+ * instance a SimpleHashMap, or a stand-in for a remote node).
+ *
+ * Keys are routed to shards by consistent hashing. Each shard is placed at
+ * many pseudo-random points ("virtual nodes") on a ring of 32-bit hash
+ * values, and a key belongs to the shard owning the first point at or after
+ * the key's own hash, wrapping around. With enough virtual nodes, shards get
+ * roughly equal shares of the keys, and adding or removing a shard only
+ * moves the keys it gains or loses: about 1/n of them, rather than nearly all
+ * as with hash-mod-n routing.
+ *
+ * Those keys are moved incrementally. addShard() and removeShard() switch to
+ * the new ring at once, and only queue up the shards that may now hold keys
+ * belonging elsewhere: every existing shard when one is added, or just the
+ * removed shard. Each following put() or remove() then examines a bounded
+ * number of keys (MIGRATION_STEP), moving those whose shard changed, and
+ * migrateStep() can be called to examine more. A queued shard's keys are
+ * only listed when its turn comes, one shard at a time, so changing shards
+ * costs nothing up front. Until a key has moved, lookups that miss in its
+ * new shard fall back to the shards the earlier rings route it to, and
+ * writes to it go to the new shard and clear it from those, so the map
+ * behaves the same throughout. A change of shards may start while another
+ * is still migrating; the shards queued by both are simply (re)examined
+ * against the newest ring.
+ *
+ * putAll() and getAll() group their keys by shard and work on the shards in
+ * parallel, one thread per shard. Other operations, and the map as a whole,
+ * are not thread-safe.
+ */
+public class ShardedSimpleMap<K, V> implements SimpleMap<K, V> {
+    /** Number of keys examined for migration by each put() or remove(). */
+    private static final int MIGRATION_STEP = 16;
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+    private static final Object ABSENT = new Object();
+
+    private final int virtualNodes;
+    private final Map<String, SimpleMap<K, V>> shards = new LinkedHashMap<>();
+    private TreeMap<Integer, SimpleMap<K, V>> ring = new TreeMap<>();
+
+    // the rings in use since the last completed migration, newest first
+    private final List<TreeMap<Integer, SimpleMap<K, V>>> oldRings = new ArrayList<>();
+    // shards waiting to have their keys examined, and the one being examined
+    private final Deque<SimpleMap<K, V>> queued = new ArrayDeque<>();
+    private SimpleMap<K, V> scanning;
+    private Iterator<K> scan;
+    // removed shards, kept until their keys have all been moved out
+    private final List<SimpleMap<K, V>> retiring = new ArrayList<>();
+
+    /**
+     * Create a map with no shards, placing each shard at 128 points on the
+     * ring.
+     */
+    public ShardedSimpleMap() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Create a map with no shards, placing each shard at virtualNodes points
+     * on the ring.
+     */
+    public ShardedSimpleMap(int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Add a shard, which must be empty, and start migrating to it the keys
+     * it now owns.
+     *
+     * @param name  a name for the shard, unique within this map; its
+     *              position on the ring depends only on the name
+     * @param shard the (empty) shard
+     */
+    public void addShard(String name, SimpleMap<K, V> shard) {
+        if (shards.containsKey(name)) {
+            throw new IllegalArgumentException("duplicate shard name " + name);
+        }
+        if (shard.size() != 0) {
+            throw new IllegalArgumentException("shard " + name + " is not empty");
+        }
+        TreeMap<Integer, SimpleMap<K, V>> newRing = new TreeMap<>(ring);
+        for (int i = 0; i < virtualNodes; i++) {
+            newRing.putIfAbsent(point(name, i), shard);
+        }
+        // any existing shard may hold keys that now route to the new one
+        List<SimpleMap<K, V>> sources = new ArrayList<>(shards.values());
+        shards.put(name, shard);
+        startMigration(newRing, sources);
+    }
+
+    /**
+     * Remove a shard, and start migrating its keys to the shards that now
+     * own them. The shard is no longer used once the migration completes.
+     *
+     * @param name the name of the shard
+     * @return the removed shard
+     */
+    public SimpleMap<K, V> removeShard(String name) {
+        SimpleMap<K, V> shard = shards.get(name);
+        if (shard == null) {
+            throw new IllegalArgumentException("no shard named " + name);
+        }
+        if (shards.size() == 1 && size() > 0) {
+            throw new IllegalStateException("cannot remove the last shard while it holds keys");
+        }
+        shards.remove(name);
+        TreeMap<Integer, SimpleMap<K, V>> newRing = new TreeMap<>(ring);
+        newRing.values().removeIf(s -> s == shard);
+        retiring.add(shard);
+        // removing points only reroutes the removed shard's keys
+        startMigration(newRing, Collections.singletonList(shard));
+        return shard;
+    }
+
+    /**
+     * @return the names of the shards, in the order they were added
+     */
+    public Set<String> shardNames() {
+        return new LinkedHashSet<>(shards.keySet());
+    }
+
+    /**
+     * Return true iff keys are still being moved after a change of shards.
+     */
+    public boolean isMigrating() {
+        return !oldRings.isEmpty();
+    }
+
+    /**
+     * Examine up to maxKeys keys of the queued shards, moving those that
+     * belong elsewhere to their new shards. Starting on a shard lists its
+     * keys.
+     *
+     * @param maxKeys the most keys to examine
+     * @return true iff the migration is now complete
+     */
+    public boolean migrateStep(int maxKeys) {
+        for (int i = 0; i < maxKeys && nextScanned(); i++) {
+            K k = scan.next();
+            SimpleMap<K, V> owner = route(ring, k);
+            if (owner != scanning) {
+                V v = lookup(scanning, k);
+                if (v != ABSENT) {
+                    scanning.remove(k);
+                    owner.put(k, v);
+                }
+            }
+        }
+        nextScanned();
+        return !isMigrating();
+    }
+
+    /**
+     * Make sure scan has a key left to examine, moving on to the next queued
+     * shard as needed, and end the migration if there are none.
+     *
+     * @return false iff the migration is complete
+     */
+    private boolean nextScanned() {
+        while (scan == null || !scan.hasNext()) {
+            if (scanning != null && scanning.size() == 0 && retiring.remove(scanning)) {
+                // every key of a removed shard has now moved out
+                queued.remove(scanning);
+            }
+            scanning = queued.poll();
+            if (scanning == null) {
+                scan = null;
+                oldRings.clear();
+                return false;
+            }
+            scan = new ArrayList<>(scanning.keys()).iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        // every key is in exactly one shard, even during a migration
+        int size = 0;
+        for (SimpleMap<K, V> shard : shards.values()) {
+            size += shard.size();
+        }
+        for (SimpleMap<K, V> shard : retiring) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void put(K k, V v) {
+        SimpleMap<K, V> owner = owner(k);
+        owner.put(k, v);
+        if (isMigrating()) {
+            for (TreeMap<Integer, SimpleMap<K, V>> oldRing : oldRings) {
+                SimpleMap<K, V> previous = route(oldRing, k);
+                if (previous != owner) {
+                    previous.remove(k);
+                }
+            }
+            migrateStep(MIGRATION_STEP);
+        }
+    }
+
+    @Override
+    public V get(K k) {
+        return getOrDefault(k, null);
+    }
+
+    @Override
+    public V getOrDefault(K k, V defaultValue) {
+        if (ring.isEmpty()) {
+            return defaultValue;
+        }
+        V v = find(k);
+        return v == ABSENT ? defaultValue : v;
+    }
+
+    @Override
+    public V remove(K k) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        V v = find(k);
+        if (v == ABSENT) {
+            return null;
+        }
+        owner(k).remove(k);
+        if (isMigrating()) {
+            for (TreeMap<Integer, SimpleMap<K, V>> oldRing : oldRings) {
+                route(oldRing, k).remove(k);
+            }
+            migrateStep(MIGRATION_STEP);
+        }
+        return v;
+    }
+
+    @Override
+    public Set<K> keys() {
+        Set<K> keys = new HashSet<>();
+        for (SimpleMap<K, V> shard : shards.values()) {
+            keys.addAll(shard.keys());
+        }
+        for (SimpleMap<K, V> shard : retiring) {
+            keys.addAll(shard.keys());
+        }
+        return keys;
+    }
+
+    /**
+     * Put every entry of entries into this map, grouping the entries by
+     * shard and writing to the shards in parallel. Any migration in progress
+     * is finished first.
+     *
+     * @param entries the entries to add
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        finishMigration();
+        Map<SimpleMap<K, V>, List<Map.Entry<? extends K, ? extends V>>> byShard = new HashMap<>();
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            byShard.computeIfAbsent(owner(entry.getKey()), s -> new ArrayList<>()).add(entry);
+        }
+        byShard.entrySet().parallelStream().forEach(group -> {
+            SimpleMap<K, V> shard = group.getKey();
+            for (Map.Entry<? extends K, ? extends V> entry : group.getValue()) {
+                shard.put(entry.getKey(), entry.getValue());
+            }
+        });
+    }
+
+    /**
+     * Look up every key in keys, grouping the keys by shard and reading the
+     * shards in parallel. Keys that are absent are left out of the result.
+     *
+     * @param keys the keys to look up
+     * @return a map from each present key to its value
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<SimpleMap<K, V>, List<K>> byShard = new HashMap<>();
+        if (!ring.isEmpty()) {
+            for (K k : keys) {
+                byShard.computeIfAbsent(owner(k), s -> new ArrayList<>()).add(k);
+            }
+        }
+        List<Map<K, V>> parts = byShard.entrySet().parallelStream().map(group -> {
+            SimpleMap<K, V> shard = group.getKey();
+            Map<K, V> part = new HashMap<>();
+            for (K k : group.getValue()) {
+                V v = lookup(shard, k);
+                if (v != ABSENT) {
+                    part.put(k, v);
+                }
+            }
+            return part;
+        }).collect(Collectors.toList());
+        Map<K, V> result = new HashMap<>();
+        for (Map<K, V> part : parts) {
+            result.putAll(part);
+        }
+        if (isMigrating()) {
+            // keys not yet migrated are read from their old shards
+            for (K k : keys) {
+                if (!result.containsKey(k)) {
+                    V v = findMigrating(k);
+                    if (v != ABSENT) {
+                        result.put(k, v);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void startMigration(TreeMap<Integer, SimpleMap<K, V>> newRing,
+            Collection<SimpleMap<K, V>> sources) {
+        TreeMap<Integer, SimpleMap<K, V>> previous = ring;
+        ring = newRing;
+        for (SimpleMap<K, V> source : sources) {
+            // a shard already part-way through is examined again, against the new ring
+            if (!queued.contains(source)) {
+                queued.add(source);
+            }
+        }
+        if (scanning == null && queued.isEmpty()) {
+            // there were no shards, so no keys to move
+            oldRings.clear();
+        } else if (!previous.isEmpty()) {
+            oldRings.add(0, previous);
+        }
+    }
+
+    private void finishMigration() {
+        while (!migrateStep(Integer.MAX_VALUE)) {
+        }
+    }
+
+    /**
+     * Return the value for k, looking in its old shards if it has not been
+     * migrated yet, or ABSENT if there is none.
+     */
+    private V find(K k) {
+        V v = lookup(owner(k), k);
+        if (v == ABSENT && isMigrating()) {
+            v = findMigrating(k);
+        }
+        return v;
+    }
+
+    /**
+     * Return the value for k from the shards the old rings route it to, or
+     * ABSENT if there is none.
+     */
+    private V findMigrating(K k) {
+        for (TreeMap<Integer, SimpleMap<K, V>> oldRing : oldRings) {
+            V v = lookup(route(oldRing, k), k);
+            if (v != ABSENT) {
+                return v;
+            }
+        }
+        @SuppressWarnings("unchecked")
+        V absent = (V) ABSENT;
+        return absent;
+    }
+
+    private SimpleMap<K, V> owner(K k) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("no shards");
+        }
+        return route(ring, k);
+    }
+
+    private static <K, V> SimpleMap<K, V> route(TreeMap<Integer, SimpleMap<K, V>> ring, Object k) {
+        Map.Entry<Integer, SimpleMap<K, V>> entry = ring.ceilingEntry(mix(k.hashCode()));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V lookup(SimpleMap<K, V> shard, K k) {
+        return shard.getOrDefault(k, (V) ABSENT);
+    }
+
+    private static int point(String name, int i) {
+        return mix(name.hashCode() * 31 + mix(i));
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -3,8 +3,20 @@
  */
 package hashmaps;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
 
 import hashtables.ChainingHashTable;
 
@@ -14,8 +26,46 @@ import hashtables.ChainingHashTable;
  * An implementation of a SimpleMap, built using the ChainingHashTable and 
  * SimpleMapEntry classes. This class should behave similarly to the built-in
  * java.util.HashMap, though it is much simpler!
+ * 
+ * Since SimpleMapEntries hash and compare by key only, a key is looked up by
+ * probing the table with an entry holding that key (and no value), so get(),
+ * put() and remove() cost a single hash lookup rather than a scan.
+ * 
+ * putIfAbsent(), computeIfAbsent(), compute(), merge() and increment() find
+ * or insert the entry with a single ChainingHashTable.addIfAbsent() call, and
+ * then update its value in place; only an update that removes the key costs
+ * a second lookup.
+ * 
+ * putAll() hands all of its entries to ChainingHashTable.addAll(), which sizes
+ * the table once and, for large maps, builds it in parallel.
+ * 
+ * writeTo() saves the map to a channel in a compact binary format, with keys
+ * and values converted to bytes by a pair of Codecs, and readFrom() loads it
+ * back. The format is:
+ * 
+ * - a 16-byte header: a magic number, the format version, the number of
+ *   entries and a CRC32 of those three;
+ * - chunks of at most 64KB (or a single record, if it is larger), each a
+ *   16-byte chunk header (the length of the chunk's records in bytes, their
+ *   number, their CRC32, and a CRC32 of those three) followed by the
+ *   records, each holding the key length, the value length (-1 for a null
+ *   value), the key bytes and the value bytes.
+ * 
+ * A chunk header is checked before its length is trusted, so a corrupt
+ * snapshot is rejected rather than causing a huge allocation.
+ * 
+ * Writing and reading are a single sequential pass over the table and the
+ * channel. Reading sizes the table for the entry count in the header and
+ * inserts every entry with one addAll(), so nothing is rehashed.
  */
 public class SimpleHashMap<K, V> implements SimpleMap<K, V> {
+    private static final int MAGIC = 0x53484d53; // "SHMS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int CHUNK_HEADER_SIZE = 16;
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+
     private ChainingHashTable<SimpleMapEntry<K, V>> table;
 
     public SimpleHashMap() {
@@ -30,40 +80,110 @@ public class SimpleHashMap<K, V> implements SimpleMap<K, V> {
  
     @Override
     public void put(K k, V v) {
-        SimpleMapEntry<K, V> entry = new SimpleMapEntry<>(k, v);
-        if (table.contains(entry)) table.remove(entry);
-        table.add(entry);
+        // entries are equal by key, so add() overwrites any existing mapping
+        table.add(new SimpleMapEntry<>(k, v));
     }
 
     @Override
-    public V get(K k) {
-        for (SimpleMapEntry<K, V> entry : table) {
-            if (entry.k.equals(k)) {
-                return entry.v;
-            }
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        List<SimpleMapEntry<K, V>> list = new ArrayList<>(entries.size());
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            list.add(new SimpleMapEntry<>(entry.getKey(), entry.getValue()));
         }
-        return null;
+        table.addAll(list);
+    }
+
+    @Override
+    public V get(K k) {
+        SimpleMapEntry<K, V> entry = table.get(probe(k));
+        return entry == null ? null : entry.v;
     }
 
     @Override
     public V getOrDefault(K k, V defaultValue) {
-        for (SimpleMapEntry<K, V> entry : table) {
-            if (entry.k.equals(k)) {
-                return entry.v;
-            }
-        }
-        return defaultValue;
+        SimpleMapEntry<K, V> entry = table.get(probe(k));
+        return entry == null ? defaultValue : entry.v;
     }
 
     @Override
     public V remove(K k) {
-        for (SimpleMapEntry<K, V> entry : table) {
-            if (entry.k.equals(k)) {
-                table.remove(entry);
-                return entry.v;
-            }
+        SimpleMapEntry<K, V> entry = table.removeAndGet(probe(k));
+        return entry == null ? null : entry.v;
+    }
+
+    @Override
+    public V putIfAbsent(K k, V v) {
+        SimpleMapEntry<K, V> entry = table.addIfAbsent(new SimpleMapEntry<>(k, v));
+        if (entry == null) {
+            return null;
+        }
+        if (entry.v == null) {
+            entry.v = v;
+            return null;
         }
-        return null;
+        return entry.v;
+    }
+
+    @Override
+    public V computeIfAbsent(K k, Function<? super K, ? extends V> mappingFunction) {
+        SimpleMapEntry<K, V> inserted = new SimpleMapEntry<>(k, null);
+        SimpleMapEntry<K, V> entry = table.addIfAbsent(inserted);
+        if (entry == null) {
+            entry = inserted;
+        } else if (entry.v != null) {
+            return entry.v;
+        }
+        V v = applyOrRemove(entry, inserted, () -> mappingFunction.apply(k));
+        if (v == null && entry == inserted) {
+            // an existing mapping to null is left alone, as in HashMap
+            table.remove(entry);
+        }
+        return v;
+    }
+
+    @Override
+    public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        SimpleMapEntry<K, V> inserted = new SimpleMapEntry<>(k, null);
+        SimpleMapEntry<K, V> existing = table.addIfAbsent(inserted);
+        SimpleMapEntry<K, V> entry = existing == null ? inserted : existing;
+        V current = entry.v;
+        V v = applyOrRemove(entry, inserted, () -> remappingFunction.apply(k, current));
+        if (v == null) {
+            table.remove(entry);
+        }
+        return v;
+    }
+
+    @Override
+    public V merge(K k, V v, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        SimpleMapEntry<K, V> entry = table.addIfAbsent(new SimpleMapEntry<>(k, v));
+        if (entry == null) {
+            return v;
+        }
+        if (entry.v == null) {
+            entry.v = v;
+            return v;
+        }
+        V merged = remappingFunction.apply(entry.v, v);
+        if (merged == null) {
+            table.remove(entry);
+        } else {
+            entry.v = merged;
+        }
+        return merged;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public long increment(K k, long delta) {
+        SimpleMapEntry<K, V> entry = table.addIfAbsent(new SimpleMapEntry<>(k, (V) Long.valueOf(delta)));
+        if (entry == null) {
+            return delta;
+        }
+        Long current = (Long) entry.v;
+        long updated = (current == null ? 0 : current) + delta;
+        entry.v = (V) Long.valueOf(updated);
+        return updated;
     }
 
     @Override
@@ -90,4 +210,187 @@ public class SimpleHashMap<K, V> implements SimpleMap<K, V> {
         sb.append("}");
         return sb.toString();
     }
+
+    /**
+     * Write every entry of the map to channel, in the format described above.
+     * The map must not be modified while it is being written.
+     * 
+     * @param channel    the channel to write to
+     * @param keyCodec   the codec for keys
+     * @param valueCodec the codec for (non-null) values
+     * @throws IOException if the channel cannot be written to
+     */
+    public void writeTo(WritableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size());
+        header.putInt(checksum(header.array(), HEADER_SIZE - 4));
+        writeFully(channel, header);
+
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        int records = 0;
+        for (SimpleMapEntry<K, V> entry : table) {
+            byte[] key = keyCodec.encode(entry.k);
+            byte[] value = entry.v == null ? null : valueCodec.encode(entry.v);
+            int length = RECORD_HEADER_SIZE + key.length + (value == null ? 0 : value.length);
+            if (length > chunk.remaining() && records > 0) {
+                writeChunk(channel, chunk, records);
+                records = 0;
+            }
+            boolean oversized = length > CHUNK_SIZE;
+            if (oversized) {
+                // a record too large for a chunk gets one of its own
+                chunk = ByteBuffer.allocate(length);
+            }
+            chunk.putInt(key.length).putInt(value == null ? -1 : value.length).put(key);
+            if (value != null) {
+                chunk.put(value);
+            }
+            records++;
+            if (oversized) {
+                writeChunk(channel, chunk, records);
+                records = 0;
+                chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            }
+        }
+        if (records > 0) {
+            writeChunk(channel, chunk, records);
+        }
+    }
+
+    /**
+     * Read a map written by writeTo() from channel.
+     * 
+     * @param channel    the channel to read from
+     * @param keyCodec   the codec the keys were written with
+     * @param valueCodec the codec the values were written with
+     * @return the map
+     * @throws IOException if the channel cannot be read, ends early, or does
+     *                     not hold a map (or holds a corrupted one)
+     */
+    public static <K, V> SimpleHashMap<K, V> readFrom(ReadableByteChannel channel, Codec<K> keyCodec,
+            Codec<V> valueCodec) throws IOException {
+        ByteBuffer header = readFully(channel, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("not a SimpleHashMap snapshot");
+        }
+        if (header.getInt(12) != checksum(header.array(), HEADER_SIZE - 4)) {
+            throw new IOException("snapshot header checksum mismatch");
+        }
+        int count = header.getInt(8);
+        if (count < 0) {
+            throw new IOException("corrupt snapshot header");
+        }
+
+        List<SimpleMapEntry<K, V>> entries = new ArrayList<>(count);
+        while (entries.size() < count) {
+            ByteBuffer chunkHeader = readFully(channel, CHUNK_HEADER_SIZE);
+            if (chunkHeader.getInt(12) != checksum(chunkHeader.array(), CHUNK_HEADER_SIZE - 4)) {
+                throw new IOException("snapshot chunk header checksum mismatch");
+            }
+            int length = chunkHeader.getInt(0);
+            int records = chunkHeader.getInt(4);
+            if (records <= 0 || records > count - entries.size()
+                    || length < (long) records * RECORD_HEADER_SIZE
+                    || (records > 1 && length > CHUNK_SIZE)) {
+                throw new IOException("corrupt snapshot chunk header");
+            }
+            ByteBuffer chunk = readFully(channel, length);
+            if (chunkHeader.getInt(8) != checksum(chunk.array(), length)) {
+                throw new IOException("snapshot chunk checksum mismatch");
+            }
+            try {
+                for (int i = 0; i < records; i++) {
+                    int keyLength = chunk.getInt();
+                    int valueLength = chunk.getInt();
+                    K k = keyCodec.decode(chunk.slice(chunk.position(), keyLength));
+                    chunk.position(chunk.position() + keyLength);
+                    V v = null;
+                    if (valueLength >= 0) {
+                        v = valueCodec.decode(chunk.slice(chunk.position(), valueLength));
+                        chunk.position(chunk.position() + valueLength);
+                    }
+                    entries.add(new SimpleMapEntry<>(k, v));
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("corrupt snapshot record", e);
+            }
+            if (chunk.hasRemaining()) {
+                throw new IOException("corrupt snapshot chunk: bytes after its records");
+            }
+        }
+
+        SimpleHashMap<K, V> map = new SimpleHashMap<>();
+        map.table.addAll(entries);
+        return map;
+    }
+
+    private static void writeChunk(WritableByteChannel channel, ByteBuffer chunk, int records)
+            throws IOException {
+        ByteBuffer chunkHeader = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+        chunkHeader.putInt(chunk.position()).putInt(records)
+                .putInt(checksum(chunk.array(), chunk.position()));
+        chunkHeader.putInt(checksum(chunkHeader.array(), CHUNK_HEADER_SIZE - 4));
+        writeFully(channel, chunkHeader);
+        writeFully(channel, chunk);
+        chunk.clear();
+    }
+
+    /**
+     * Flip buffer and write all of it to channel.
+     */
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Read exactly length bytes from channel into a new heap buffer,
+     * returned with its position at 0.
+     */
+    private static ByteBuffer readFully(ReadableByteChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("snapshot ends early");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Compute a value with function and store it in entry. If function
+     * throws, and entry was inserted just for it, take entry back out so
+     * that no placeholder is left in the map.
+     */
+    private V applyOrRemove(SimpleMapEntry<K, V> entry, SimpleMapEntry<K, V> inserted,
+            Supplier<? extends V> function) {
+        boolean completed = false;
+        try {
+            V v = function.get();
+            entry.v = v;
+            completed = true;
+            return v;
+        } finally {
+            if (!completed && entry == inserted) {
+                table.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Return an entry that is equal to any entry with key k, for looking up
+     * that entry in the table.
+     */
+    private SimpleMapEntry<K, V> probe(K k) {
+        return new SimpleMapEntry<>(k, null);
+    }
 }
@@ -0,0 +1,218 @@
+package hashtables;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Bloom filter: a compact, probabilistic set that can answer "definitely
+ * not present" or "possibly present".
+ *
+ * The filter is an array of m bits, stored in a long[]. Adding an element
+ * sets k of the bits, chosen by k hash functions; an element might be present
+ * only if all k of its bits are set. There are never false negatives, but an
+ * element that was never added may find all its bits set by other elements (a
+ * false positive). Given the number of elements expected and the acceptable
+ * false positive rate p, the filter uses the optimal m = -n ln(p) / (ln 2)^2
+ * bits and k = (m / n) ln 2 hash functions.
+ *
+ * The k hash functions are derived by double hashing: the element's
+ * hashCode() is mixed into 64 bits h1, h2 is h1 with its halves swapped, and
+ * the i-th bit is chosen by h1 + i * h2, computed in 64 bits so that a filter
+ * of more than 2^31 bits uses all of them. Elements with equal hash codes are
+ * therefore indistinguishable to the filter.
+ *
+ * Elements cannot be removed from a Bloom filter.
+ */
+public class BloomFilter<E> {
+    private static final int SERIAL_MAGIC = 0x424c4f4d; // "BLOM"
+
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+
+    /**
+     * Create a filter sized for expectedInsertions elements at the given
+     * false positive rate.
+     *
+     * @param expectedInsertions the number of elements the filter should hold
+     * @param falsePositiveRate  the acceptable false positive rate, in (0, 1)
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be in (0, 1)");
+        }
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) Math.max(1, (m + 63) / 64)];
+        this.numBits = bits.length * 64L;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+    }
+
+    private BloomFilter(long[] bits, int numHashes) {
+        this.bits = bits;
+        this.numBits = bits.length * 64L;
+        this.numHashes = numHashes;
+    }
+
+    /**
+     * Add e to the filter.
+     *
+     * @param e the (non-null) element
+     * @return true iff any bits changed, that is, iff e was definitely not
+     *         present before
+     */
+    public boolean add(E e) {
+        long hash = hash(e);
+        boolean changed = false;
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = bitIndex(hash, i, numBits);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Return false if e has definitely never been added to the filter, and
+     * true if it might have been.
+     *
+     * @param e the (non-null) element
+     * @return false if e is definitely absent
+     */
+    public boolean mightContain(E e) {
+        long hash = hash(e);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = bitIndex(hash, i, numBits);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add every element of other to this filter, in place. The filters must
+     * have been created with the same size and number of hash functions.
+     *
+     * @param other the filter to merge into this one
+     * @throws IllegalArgumentException if the filters are not compatible
+     */
+    public void merge(BloomFilter<E> other) {
+        checkCompatible(other);
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other.bits[i];
+        }
+    }
+
+    /**
+     * Return a new filter that contains the elements of both this filter and
+     * other. The filters must have been created with the same size and number
+     * of hash functions.
+     *
+     * @param other the other filter
+     * @return the union of the two filters
+     * @throws IllegalArgumentException if the filters are not compatible
+     */
+    public BloomFilter<E> union(BloomFilter<E> other) {
+        BloomFilter<E> union = new BloomFilter<>(bits.clone(), numHashes);
+        union.merge(other);
+        return union;
+    }
+
+    /**
+     * @return the number of bits in the filter
+     */
+    public long bitSize() {
+        return numBits;
+    }
+
+    /**
+     * @return the number of hash functions the filter uses
+     */
+    public int hashCount() {
+        return numHashes;
+    }
+
+    /**
+     * Return the probability that mightContain() returns true for an element
+     * that was never added, given how many bits are currently set.
+     *
+     * @return the current expected false positive rate
+     */
+    public double expectedFalsePositiveRate() {
+        long set = 0;
+        for (long word : bits) {
+            set += Long.bitCount(word);
+        }
+        return Math.pow((double) set / numBits, numHashes);
+    }
+
+    /**
+     * Write the filter to out, in a form that readFrom() can read back.
+     *
+     * @param out the output to write to
+     * @throws IOException if out throws an exception
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(SERIAL_MAGIC);
+        out.writeInt(numHashes);
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Read a filter written by writeTo().
+     *
+     * @param in the input to read from
+     * @return the filter
+     * @throws IOException if in throws an exception, or does not hold a filter
+     */
+    public static <E> BloomFilter<E> readFrom(DataInput in) throws IOException {
+        if (in.readInt() != SERIAL_MAGIC) {
+            throw new IOException("not a serialized BloomFilter");
+        }
+        int numHashes = in.readInt();
+        int words = in.readInt();
+        if (numHashes < 1 || words < 1) {
+            throw new IOException("corrupt serialized BloomFilter");
+        }
+        long[] bits = new long[words];
+        for (int i = 0; i < words; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter<>(bits, numHashes);
+    }
+
+    private void checkCompatible(BloomFilter<E> other) {
+        if (other.numBits != numBits || other.numHashes != numHashes) {
+            throw new IllegalArgumentException("Bloom filters differ in size or hash count");
+        }
+    }
+
+    /**
+     * Return the i-th bit, of numBits, chosen for an element with the given
+     * (mixed) hash.
+     */
+    static long bitIndex(long hash, int i, long numBits) {
+        long combined = hash + i * Long.rotateLeft(hash, 32);
+        return (combined & Long.MAX_VALUE) % numBits;
+    }
+
+    private static long hash(Object e) {
+        // murmur3 64-bit finalizer, to spread hashCode() over 64 bits
+        long h = e.hashCode() * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
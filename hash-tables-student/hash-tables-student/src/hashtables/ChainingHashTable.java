@@ -1,29 +1,109 @@
 package hashtables;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * An implementation of HashTable.
- * 
- * This implementation uses chaining to resolve collisions. Chaining means 
- * the underlying array stores references to growable structures (like 
- * LinkedLists) that we expect to remain small in size. When there is a 
+ *
+ * This implementation uses chaining to resolve collisions. Chaining means
+ * the underlying array stores references to growable structures (like
+ * LinkedLists) that we expect to remain small in size. When there is a
  * collision, the element is added to the end of the growable structure. It
  * must search the entire growable structure whenever checking membership
  * or removing elements.
- * 
+ *
  * This implementation maintains a capacity equal to 2^n - 1 for some positive
  * integer n. When the load factor exceeds 0.75, the next add() triggers a
  * resize by incrementing n (by one). For example, when n=3, then capacity=7.
  * When size=6, then load factor ~=0.86. The addition of the seventh item would
  * trigger a resize, increasing the capacity of the array to 15.
+ *
+ * Resizing is incremental. A resize allocates the larger array and reports
+ * the new capacity straight away, but keeps the old array alongside it; each
+ * following add() or remove() then moves a bounded number of old buckets
+ * (REHASH_STEP) into the new array, until the old array is empty and dropped.
+ * While a migration is in progress, an element lives either in a not yet
+ * migrated old bucket or in the new array, so lookups check at most one
+ * bucket of each. No single operation ever has to rehash the whole table.
+ *
+ * A bucket whose chain reaches TREEIFY_THRESHOLD elements is converted into a
+ * TreeBin, a balanced tree ordered by hash code and (for Comparable elements)
+ * compareTo(), and converted back into a list once it shrinks to
+ * UNTREEIFY_THRESHOLD. This bounds the cost of a lookup in a bucket to
+ * O(log n) even when many elements collide, for instance under a
+ * hash-flooding attack.
+ *
+ * Iterators and spliterators are fail-fast: if the table is structurally
+ * modified (an element added or removed, or a bucket migrated) other than
+ * through the iterator after it was created, the iterator throws a
+ * ConcurrentModificationException rather than risk skipping or repeating
+ * elements. The spliterator splits the bucket array into ranges, so
+ * parallelStream() scans the table across all cores.
+ *
+ * addAll() loads many elements at once. It grows the table straight to the
+ * capacity that adding them one at a time would reach (if they are all
+ * distinct), rehashing the existing elements once rather than at every
+ * doubling, and then inserts without checking the load factor per element.
+ * Large collections, given more than one core, have their buckets built in
+ * parallel: the elements' bucket indices are computed on all cores, the
+ * elements are grouped by bucket with a counting sort, and disjoint ranges
+ * of buckets are then filled by separate fork-join tasks.
+ *
+ * The table does not shrink by default. setShrinkThreshold() turns on
+ * shrinking: once a remove() takes the load factor below the threshold, the
+ * table is rehashed (all at once) into the smallest capacity, no smaller
+ * than the initial one, whose load factor is at most half the growth
+ * threshold. The threshold must be below a quarter of the growth threshold,
+ * so that after a resize either way many operations must pass before the
+ * next, and the table cannot thrash between two capacities. trimToSize()
+ * shrinks the table to fit its elements on demand.
+ *
+ * setStatsEnabled(true) starts counting lookups, the elements they examine
+ * and the time spent resizing. While statistics are off there is no recorder
+ * at all, and each operation pays only a null check. The chain length
+ * histogram is computed when stats() is called, by scanning the buckets.
  */
 public class ChainingHashTable<E> implements HashTable<E> {
-    private LinkedList<E>[] table;
+    /** Number of old buckets migrated by each add() or remove(). */
+    private static final int REHASH_STEP = 4;
+    /** Chain length at which a bucket is converted into a TreeBin. */
+    private static final int TREEIFY_THRESHOLD = 8;
+    /** TreeBin size at which a bucket is converted back into a chain. */
+    private static final int UNTREEIFY_THRESHOLD = 6;
+    /** Collection size from which addAll() builds buckets in parallel. */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    /** Number of buckets filled by each task of a parallel addAll(). */
+    private static final int PARALLEL_CHUNK = 1 << 10;
+    /** Load factor above which add() grows the table. */
+    private static final double MAX_LOAD_FACTOR = 0.75;
+    /** Capacity that trimToSize() never goes below. */
+    private static final int MIN_CAPACITY = 7;
+
+    private Collection<E>[] table;
     private int size;
     private int capacity;
+    // non-null only while a resize is migrating buckets out of it
+    private Collection<E>[] oldTable;
+    // every old bucket below this index has already been migrated
+    private int rehashIndex;
+    // count of structural modifications, checked by iterators
+    private int modCount;
+    // the capacity shrinking stops at, and the load factor that triggers it (0 if off)
+    private final int initialCapacity;
+    private double shrinkThreshold;
+    // null unless statistics are enabled
+    private StatsRecorder stats;
+
     /**
      * Instantiate a new hash table. The initial capacity should be 7.
      */
@@ -32,17 +112,15 @@ public class ChainingHashTable<E> implements HashTable<E> {
     }
 
     /**
-     * Instantiate a new hash table. The initial capacity should be 
+     * Instantiate a new hash table. The initial capacity should be
      * at least sufficient to hold n elements, but must be one less
      * than a power of two.
      */
     public ChainingHashTable(int n) {
         capacity =(int) Math.pow(2, (int) (Math.log(n)/Math.log(2)) + 1) - 1;
-        table = (LinkedList<E>[]) new LinkedList[capacity];
-        for (int i = 0; i < capacity; i++) {
-            table[i] = new LinkedList<>();
-        }
+        table = newBuckets(capacity);
         size = 0;
+        initialCapacity = capacity;
     }
 
     @Override
@@ -62,96 +140,599 @@ public class ChainingHashTable<E> implements HashTable<E> {
 
     @Override
     public boolean add(E e) {
-        if (loadFactor() > 0.75) {
+        if (loadFactor() > MAX_LOAD_FACTOR) {
             resize();
         }
+        rehashStep();
+        if (oldTable != null) {
+            Collection<E> old = oldBucket(e);
+            if (old != null && replace(old, e)) return false;
+        }
         int index = getIndex(e);
-        LinkedList<E> l = table[index];
 
-        if (l.contains(e)) return false;
+        if (replace(table[index], e)) return false;
 
-        l.add(e);
+        insert(table, index, e);
         size++;
+        modCount++;
         return true;
     }
 
     @Override
-    public boolean remove(E e) {
+    public E addIfAbsent(E e) {
+        if (loadFactor() > MAX_LOAD_FACTOR) {
+            resize();
+        }
+        rehashStep();
+        if (oldTable != null) {
+            Collection<E> old = oldBucket(e);
+            if (old != null) {
+                E found = find(old, e);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
         int index = getIndex(e);
-        boolean removed = table[index].remove(e);
-        if (removed) {
+        E found = find(table[index], e);
+        if (found != null) {
+            return found;
+        }
+        insert(table, index, e);
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> elements) {
+        return addAll(elements, elements.size() >= PARALLEL_THRESHOLD
+                && ForkJoinPool.getCommonPoolParallelism() > 1);
+    }
+
+    /**
+     * Add every element of elements, as addAll(Collection) does, choosing
+     * explicitly whether to build the buckets in parallel.
+     *
+     * @param elements the (non-null) elements
+     * @param parallel whether to hash and insert on all cores
+     * @return true iff any element was newly inserted
+     */
+    public boolean addAll(Collection<? extends E> elements, boolean parallel) {
+        if (!parallel) {
+            return addAll(elements.iterator(), elements.size());
+        }
+        Object[] array = elements.toArray();
+        presize(array.length);
+        int[] indices = new int[array.length];
+        int buckets = capacity;
+        IntStream.range(0, array.length).parallel()
+                .forEach(i -> indices[i] = indexFor(array[i], buckets));
+
+        // counting sort by bucket, stable so that later duplicates win
+        int[] starts = new int[buckets + 1];
+        for (int index : indices) {
+            starts[index + 1]++;
+        }
+        for (int i = 0; i < buckets; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] order = new int[array.length];
+        int[] next = Arrays.copyOf(starts, buckets);
+        for (int i = 0; i < array.length; i++) {
+            order[next[indices[i]]++] = i;
+        }
+
+        int chunks = (buckets + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        int added = IntStream.range(0, chunks).parallel().map(chunk -> {
+            int inserted = 0;
+            int end = Math.min(buckets, (chunk + 1) * PARALLEL_CHUNK);
+            for (int index = chunk * PARALLEL_CHUNK; index < end; index++) {
+                for (int j = starts[index]; j < starts[index + 1]; j++) {
+                    @SuppressWarnings("unchecked")
+                    E e = (E) array[order[j]];
+                    if (!replace(table[index], e)) {
+                        insert(table, index, e);
+                        inserted++;
+                    }
+                }
+            }
+            return inserted;
+        }).sum();
+        size += added;
+        modCount++;
+        return added > 0;
+    }
+
+    @Override
+    public boolean addAll(Iterator<? extends E> elements, int expectedSize) {
+        presize(expectedSize);
+        // past this size, the table has outgrown the expected size
+        int limit = (int) (capacity * MAX_LOAD_FACTOR) + 1;
+        boolean added = false;
+        while (elements.hasNext()) {
+            E e = elements.next();
+            if (size >= limit) {
+                presize(1);
+                limit = (int) (capacity * MAX_LOAD_FACTOR) + 1;
+            }
+            int index = getIndex(e);
+            if (!replace(table[index], e)) {
+                insert(table, index, e);
+                size++;
+                added = true;
+            }
+        }
+        modCount++;
+        return added;
+    }
+
+    @Override
+    public boolean remove(E e) {
+        return removeAndGet(e) != null;
+    }
+
+    @Override
+    public E removeAndGet(E e) {
+        rehashStep();
+        E removed = null;
+        if (oldTable != null) {
+            int oldIndex = indexFor(e, oldTable.length);
+            if (oldIndex >= rehashIndex) {
+                removed = delete(oldTable, oldIndex, e);
+            }
+        }
+        if (removed == null) {
+            removed = delete(table, getIndex(e), e);
+        }
+        if (removed != null) {
             size--;
+            modCount++;
+            if (loadFactor() < shrinkThreshold && capacity > initialCapacity) {
+                shrink();
+            }
         }
         return removed;
     }
 
+    /**
+     * Turn on shrinking: a remove() that leaves the load factor below
+     * threshold rehashes the table into a smaller array. 0, the default,
+     * turns shrinking off.
+     *
+     * @param threshold the load factor below which to shrink, at least 0 and
+     *                  less than 0.1875 (a quarter of the growth threshold)
+     * @throws IllegalArgumentException if threshold is out of range
+     */
+    public void setShrinkThreshold(double threshold) {
+        if (!(threshold >= 0 && threshold < MAX_LOAD_FACTOR / 4)) {
+            throw new IllegalArgumentException("shrink threshold must be in [0, "
+                    + MAX_LOAD_FACTOR / 4 + "): " + threshold);
+        }
+        shrinkThreshold = threshold;
+    }
+
+    /**
+     * Shrink the table to the smallest capacity (but at least 7) whose load
+     * factor does not exceed the growth threshold, rehashing every element.
+     * Iteration then takes time proportional to the size rather than to the
+     * largest size the table has had. Any migration in progress is
+     * finished, even if the capacity is already the smallest.
+     */
+    public void trimToSize() {
+        int newCapacity = MIN_CAPACITY;
+        while ((double) size / newCapacity > MAX_LOAD_FACTOR) {
+            newCapacity = (newCapacity + 1) * 2 - 1;
+        }
+        if (newCapacity < capacity) {
+            rehashTo(newCapacity);
+        }
+        while (oldTable != null) {
+            migrateBucket();
+        }
+    }
+
     @Override
     public boolean contains(E e) {
-        int index = getIndex(e);
-        return table[index].contains(e);
+        return get(e) != null;
     }
 
     @Override
     public E get(E e) {
-        int index = getIndex(e);
-        for (E element : table[index]) {
-            if (element.equals(e)) {
-                return element;
-            }
+        Collection<E> old = oldTable != null ? oldBucket(e) : null;
+        E found = old != null ? find(old, e) : null;
+        Collection<E> bucket = null;
+        if (found == null) {
+            bucket = table[getIndex(e)];
+            found = find(bucket, e);
         }
-        return null;
+        if (stats != null) {
+            stats.lookup(probes(old, found) + probes(bucket, found), found != null);
+        }
+        return found;
+    }
+
+    @Override
+    public void setStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            stats = null;
+        } else if (stats == null) {
+            stats = new StatsRecorder();
+        }
+    }
+
+    @Override
+    public HashTableStats stats() {
+        long[] histogram = new long[1];
+        int start = oldTable != null ? rehashIndex - oldTable.length : 0;
+        for (int index = start; index < table.length; index++) {
+            histogram = StatsRecorder.count(histogram, bucketAt(oldTable, table, index).size());
+        }
+        StatsRecorder recorder = stats != null ? stats : new StatsRecorder();
+        return recorder.snapshot(size, capacity, histogram);
     }
 
     @Override
     public Iterator<E> iterator() {
         return new HashTableIterator();
     }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        int start = oldTable != null ? rehashIndex - oldTable.length : 0;
+        return new BucketSpliterator(oldTable, table, start, table.length, size, modCount);
+    }
+
+    /**
+     * Return true iff a resize is still moving buckets out of the old array.
+     */
+    public boolean isRehashing() {
+        return oldTable != null;
+    }
+
+    /**
+     * Start a resize to the next capacity. Any migration still in progress
+     * is finished first, so there are never more than two arrays.
+     */
     private void resize() {
-        int newCapacity = (capacity + 1) * 2 - 1;
-        LinkedList<E>[] newTable = (LinkedList<E>[]) new LinkedList[newCapacity];
-        for (int i = 0; i < newCapacity; i++) {
-            newTable[i] = new LinkedList<>();
+        long start = stats != null ? System.nanoTime() : 0;
+        while (oldTable != null) {
+            migrateBucket();
         }
-        for (LinkedList<E> chain : table) {
-            for (E element : chain) {
-                int index = element.hashCode() % newCapacity;
-                newTable[index].add(element);
-            }
+        oldTable = table;
+        rehashIndex = 0;
+        modCount++;
+        capacity = (capacity + 1) * 2 - 1;
+        table = newBuckets(capacity);
+        if (stats != null) {
+            stats.resized();
+            stats.resizing(start);
+        }
+        rehashStep();
+    }
+
+    /**
+     * Finish any migration, then grow the table, rehashing every element
+     * once, to the capacity that adding additional distinct elements one at a
+     * time would reach.
+     */
+    private void presize(int additional) {
+        long start = stats != null ? System.nanoTime() : 0;
+        while (oldTable != null) {
+            migrateBucket();
         }
-        table = newTable;
+        long total = (long) size + additional;
+        int newCapacity = capacity;
+        while (total > 0 && (double) (total - 1) / newCapacity > MAX_LOAD_FACTOR) {
+            newCapacity = (newCapacity + 1) * 2 - 1;
+        }
+        if (stats != null) {
+            stats.resizing(start);
+        }
+        if (newCapacity != capacity) {
+            rehashTo(newCapacity);
+        }
+    }
+
+    /**
+     * Shrink to the smallest capacity, no smaller than the initial one, at
+     * which the load factor is at most half the growth threshold.
+     */
+    private void shrink() {
+        int newCapacity = capacity;
+        while (newCapacity > initialCapacity
+                && (double) size / ((newCapacity - 1) / 2) <= MAX_LOAD_FACTOR / 2) {
+            newCapacity = (newCapacity - 1) / 2;
+        }
+        if (newCapacity < capacity) {
+            rehashTo(newCapacity);
+        }
+    }
+
+    /**
+     * Finish any migration, then move every element into a new array of
+     * newCapacity buckets at once.
+     */
+    private void rehashTo(int newCapacity) {
+        long start = stats != null ? System.nanoTime() : 0;
+        while (oldTable != null) {
+            migrateBucket();
+        }
+        Collection<E>[] old = table;
         capacity = newCapacity;
+        table = newBuckets(capacity);
+        for (Collection<E> bucket : old) {
+            for (E element : bucket) {
+                insert(table, getIndex(element), element);
+            }
+        }
+        modCount++;
+        if (stats != null) {
+            stats.resized();
+            stats.resizing(start);
+        }
+    }
+
+    private void rehashStep() {
+        if (oldTable == null) {
+            return;
+        }
+        long start = stats != null ? System.nanoTime() : 0;
+        for (int i = 0; i < REHASH_STEP && oldTable != null; i++) {
+            migrateBucket();
+        }
+        if (stats != null) {
+            stats.resizing(start);
+        }
+    }
+
+    private void migrateBucket() {
+        for (E element : oldTable[rehashIndex]) {
+            insert(table, getIndex(element), element);
+        }
+        oldTable[rehashIndex] = null;
+        rehashIndex++;
+        modCount++;
+        if (rehashIndex == oldTable.length) {
+            oldTable = null;
+        }
+    }
+
+    /**
+     * Add e (known not to be present) to buckets[index], treeifying the
+     * bucket if its chain has grown too long.
+     */
+    private static <E> void insert(Collection<E>[] buckets, int index, E e) {
+        Collection<E> bucket = buckets[index];
+        bucket.add(e);
+        if (!(bucket instanceof TreeBin) && bucket.size() >= TREEIFY_THRESHOLD) {
+            buckets[index] = new TreeBin<>(bucket);
+        }
+    }
+
+    /**
+     * Remove e from buckets[index], if present, turning the bucket back into a
+     * chain if it was a tree that has become small.
+     */
+    private static <E> E delete(Collection<E>[] buckets, int index, E e) {
+        Collection<E> bucket = buckets[index];
+        E removed = null;
+        if (bucket instanceof TreeBin) {
+            removed = ((TreeBin<E>) bucket).removeAndGet(e);
+        } else {
+            for (Iterator<E> it = bucket.iterator(); it.hasNext();) {
+                E element = it.next();
+                if (element.equals(e)) {
+                    it.remove();
+                    removed = element;
+                    break;
+                }
+            }
+        }
+        if (bucket instanceof TreeBin && bucket.size() <= UNTREEIFY_THRESHOLD) {
+            buckets[index] = new LinkedList<>(bucket);
+        }
+        return removed;
+    }
+
+    /**
+     * Return the element of bucket that is equals() to e, or null if none.
+     */
+    private static <E> E find(Collection<E> bucket, E e) {
+        if (bucket instanceof TreeBin) {
+            return ((TreeBin<E>) bucket).find(e);
+        }
+        for (E element : bucket) {
+            if (element.equals(e)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the number of elements of bucket (if any) a search for found
+     * examined: its position in a chain, or the whole chain if it is not
+     * there. Trees are charged their balanced height.
+     */
+    private static <E> int probes(Collection<E> bucket, E found) {
+        if (bucket == null) {
+            return 0;
+        }
+        if (bucket instanceof TreeBin) {
+            return 32 - Integer.numberOfLeadingZeros(bucket.size());
+        }
+        int probes = 0;
+        for (E element : bucket) {
+            probes++;
+            if (element == found) {
+                break;
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * Overwrite the element of bucket that is equals() to e, if any, returning
+     * true iff there was one.
+     */
+    private static <E> boolean replace(Collection<E> bucket, E e) {
+        if (bucket instanceof TreeBin) {
+            return ((TreeBin<E>) bucket).replace(e);
+        }
+        for (ListIterator<E> it = ((LinkedList<E>) bucket).listIterator(); it.hasNext();) {
+            if (it.next().equals(e)) {
+                it.set(e);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the old bucket for e, or null if that bucket has been migrated.
+     */
+    private Collection<E> oldBucket(E e) {
+        int index = indexFor(e, oldTable.length);
+        return index >= rehashIndex ? oldTable[index] : null;
     }
 
     private int getIndex(E e) {
-        return e.hashCode() % capacity;
+        return indexFor(e, capacity);
+    }
+
+    private static int indexFor(Object e, int capacity) {
+        return (e.hashCode() & 0x7fffffff) % capacity;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> Collection<E>[] newBuckets(int capacity) {
+        Collection<E>[] buckets = (Collection<E>[]) new Collection[capacity];
+        for (int i = 0; i < capacity; i++) {
+            buckets[i] = new LinkedList<>();
+        }
+        return buckets;
     }
 
+    /**
+     * Visits the not yet migrated old buckets (if any), then the current
+     * array. Lookups never move buckets, so reading the table while
+     * iterating is safe; adding or removing elements throws a
+     * ConcurrentModificationException at the next call to the iterator.
+     *
+     * Each chain is walked with its own iterator, so a full iteration is
+     * linear in the size plus the capacity.
+     */
     private class HashTableIterator implements Iterator<E> {
-        private int currentIndex = 0;
-        private int ll_index = 0;
+        private final Collection<E>[] old = oldTable;
+        private final Collection<E>[] current = table;
+        private int currentIndex = old != null ? rehashIndex - old.length : 0;
+        private Iterator<E> chain;
+        private final int expectedModCount = modCount;
 
         @Override
         public boolean hasNext() {
-            while (currentIndex < table.length) {
-                if (table[currentIndex].isEmpty()) currentIndex++;
-                else if (ll_index < table[currentIndex].size()) {
-                    return true;
-                }
-
-                else {
-                    ll_index = 0;
-                    currentIndex++;
+            checkForComodification();
+            while (chain == null || !chain.hasNext()) {
+                if (currentIndex >= current.length) {
+                    return false;
                 }
+                chain = bucketAt(old, current, currentIndex++).iterator();
             }
-            return false;
+            return true;
         }
 
         @Override
         public E next() {
-            if (!hasNext() && currentIndex >= capacity ) {
+            if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            return table[currentIndex].get(ll_index++);
+            return chain.next();
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Covers the virtual bucket indices [index, fence), numbered as in
+     * HashTableIterator, and splits by halving that range.
+     */
+    private class BucketSpliterator implements Spliterator<E> {
+        private final Collection<E>[] old;
+        private final Collection<E>[] current;
+        private int index;
+        private final int fence;
+        private long estimate;
+        private final int expectedModCount;
+        private Iterator<E> chain;
+
+        BucketSpliterator(Collection<E>[] old, Collection<E>[] current, int index, int fence,
+                long estimate, int expectedModCount) {
+            this.old = old;
+            this.current = current;
+            this.index = index;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            // checked before reading a bucket, as a migration since the last
+            // call may have emptied it
+            checkForComodification();
+            while (chain == null || !chain.hasNext()) {
+                if (index >= fence) {
+                    return false;
+                }
+                chain = bucketAt(old, current, index++).iterator();
+            }
+            action.accept(chain.next());
+            return true;
         }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            while (tryAdvance(action)) {
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int mid = index + (fence - index) / 2;
+            if (chain != null || mid <= index) {
+                return null;
+            }
+            estimate >>>= 1;
+            Spliterator<E> prefix = new BucketSpliterator(old, current, index, mid, estimate,
+                    expectedModCount);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    // negative indices address the old array, counting from its end
+    private static <E> Collection<E> bucketAt(Collection<E>[] old, Collection<E>[] current, int index) {
+        return index < 0 ? old[old.length + index] : current[index];
     }
 }
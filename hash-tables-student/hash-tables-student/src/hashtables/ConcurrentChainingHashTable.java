@@ -0,0 +1,250 @@
+package hashtables;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe implementation of HashTable.
+ *
+ * The table is split into a power-of-two number of stripes. Each stripe is an
+ * ordinary ChainingHashTable guarding its own range of the hash space with its
+ * own lock, so threads working on different stripes never contend. The stripe
+ * for an element is picked from the low bits of its (spread) hash code.
+ *
+ * Resizing is cooperative: each stripe grows on its own, under its own lock,
+ * when its load factor exceeds 0.75, and ChainingHashTable spreads that growth
+ * over the stripe's subsequent writes. No operation ever locks the whole table.
+ *
+ * Every operation on an element holds its stripe's lock throughout, so
+ * addIfAbsent() and removeAndGet() are atomic: of several threads racing to
+ * insert (or remove) the same element, exactly one succeeds.
+ *
+ * The size is kept in a LongAdder so that writers on different stripes do not
+ * contend on a shared counter. capacity() is the total capacity of all
+ * stripes.
+ *
+ * Iteration is weakly consistent: each stripe is copied under its lock as the
+ * iterator reaches it, so the iterator never throws, but it may or may not
+ * reflect changes made after it was created.
+ *
+ * Statistics are collected by each stripe, and stats() adds up the stripes'
+ * snapshots, taking each under its lock in turn; so, like iteration, it is
+ * weakly consistent.
+ */
+public class ConcurrentChainingHashTable<E> implements HashTable<E> {
+    private final ChainingHashTable<E>[] stripes;
+    private final ReentrantLock[] locks;
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Instantiate a new hash table, with one stripe per available processor
+     * (rounded up to a power of two, and at least 16).
+     */
+    public ConcurrentChainingHashTable() {
+        this(7, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Instantiate a new hash table with capacity for at least n elements,
+     * striped for up to concurrencyLevel concurrently writing threads.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentChainingHashTable(int n, int concurrencyLevel) {
+        int stripeCount = 16;
+        while (stripeCount < concurrencyLevel) {
+            stripeCount *= 2;
+        }
+        stripes = (ChainingHashTable<E>[]) new ChainingHashTable[stripeCount];
+        locks = new ReentrantLock[stripeCount];
+        int perStripe = Math.max(1, n / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ChainingHashTable<>(perStripe);
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public int capacity() {
+        int capacity = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].lock();
+            try {
+                capacity += stripes[i].capacity();
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        return (int) size.sum();
+    }
+
+    @Override
+    public double loadFactor() {
+        return (double) size() / capacity();
+    }
+
+    @Override
+    public boolean add(E e) {
+        int stripe = stripeFor(e);
+        boolean added;
+        locks[stripe].lock();
+        try {
+            added = stripes[stripe].add(e);
+        } finally {
+            locks[stripe].unlock();
+        }
+        if (added) {
+            size.increment();
+        }
+        return added;
+    }
+
+    @Override
+    public E addIfAbsent(E e) {
+        int stripe = stripeFor(e);
+        locks[stripe].lock();
+        try {
+            E existing = stripes[stripe].addIfAbsent(e);
+            if (existing == null) {
+                size.increment();
+            }
+            return existing;
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    @Override
+    public E get(E e) {
+        int stripe = stripeFor(e);
+        locks[stripe].lock();
+        try {
+            return stripes[stripe].get(e);
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(E e) {
+        int stripe = stripeFor(e);
+        boolean removed;
+        locks[stripe].lock();
+        try {
+            removed = stripes[stripe].remove(e);
+        } finally {
+            locks[stripe].unlock();
+        }
+        if (removed) {
+            size.decrement();
+        }
+        return removed;
+    }
+
+    @Override
+    public E removeAndGet(E e) {
+        int stripe = stripeFor(e);
+        locks[stripe].lock();
+        try {
+            E removed = stripes[stripe].removeAndGet(e);
+            if (removed != null) {
+                size.decrement();
+            }
+            return removed;
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(E e) {
+        int stripe = stripeFor(e);
+        locks[stripe].lock();
+        try {
+            return stripes[stripe].contains(e);
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    @Override
+    public void setStatsEnabled(boolean enabled) {
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].lock();
+            try {
+                stripes[i].setStatsEnabled(enabled);
+            } finally {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    @Override
+    public HashTableStats stats() {
+        List<HashTableStats> parts = new ArrayList<>(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].lock();
+            try {
+                parts.add(stripes[i].stats());
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        return HashTableStats.sum(parts);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new StripeIterator();
+    }
+
+    private int stripeFor(E e) {
+        int h = e.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    private class StripeIterator implements Iterator<E> {
+        private int nextStripe = 0;
+        private Iterator<E> current = null;
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (nextStripe >= stripes.length) {
+                    return false;
+                }
+                current = copyStripe(nextStripe++).iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        private List<E> copyStripe(int stripe) {
+            locks[stripe].lock();
+            try {
+                List<E> copy = new ArrayList<>(stripes[stripe].size());
+                for (E element : stripes[stripe]) {
+                    copy.add(element);
+                }
+                return copy;
+            } finally {
+                locks[stripe].unlock();
+            }
+        }
+    }
+}
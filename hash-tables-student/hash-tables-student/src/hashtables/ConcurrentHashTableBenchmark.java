@@ -0,0 +1,130 @@
+package hashtables;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures multi-threaded throughput of ConcurrentChainingHashTable against a
+ * single ChainingHashTable behind one global lock, for 1, 2, 4, ... up to N
+ * threads (N defaults to the number of available processors, or can be given
+ * as the first argument).
+ *
+ * Each thread performs a fixed mix of operations (50% contains, 30% add, 20%
+ * remove) on random keys drawn from a shared range.
+ */
+public class ConcurrentHashTableBenchmark {
+    private static final int OPERATIONS_PER_THREAD = 2_000_000;
+    private static final int KEY_RANGE = 1 << 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+
+        System.out.println("threads  synchronized (ops/ms)  striped (ops/ms)  speedup");
+        for (int t = 1; t <= maxThreads; t *= 2) {
+            final int threads = t;
+            double locked = run(threads, () -> new SynchronizedHashTable<>(new ChainingHashTable<>()));
+            double striped = run(threads, () -> new ConcurrentChainingHashTable<>(7, threads));
+            System.out.printf("%7d  %21.0f  %16.0f  %7.2f%n", threads, locked, striped, striped / locked);
+        }
+    }
+
+    private static double run(int threads, Supplier<HashTable<Integer>> factory)
+            throws InterruptedException {
+        // one untimed warm-up round, then the measured round
+        runOnce(threads, factory.get());
+        return runOnce(threads, factory.get());
+    }
+
+    private static double runOnce(int threads, HashTable<Integer> table) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    Integer key = random.nextInt(KEY_RANGE);
+                    int op = random.nextInt(10);
+                    if (op < 5) {
+                        table.contains(key);
+                    } else if (op < 8) {
+                        table.add(key);
+                    } else {
+                        table.remove(key);
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        return (double) threads * OPERATIONS_PER_THREAD / millis;
+    }
+
+    /**
+     * The baseline: every operation on the wrapped table holds one lock.
+     */
+    private static class SynchronizedHashTable<E> implements HashTable<E> {
+        private final HashTable<E> table;
+
+        SynchronizedHashTable(HashTable<E> table) {
+            this.table = table;
+        }
+
+        @Override
+        public synchronized int capacity() {
+            return table.capacity();
+        }
+
+        @Override
+        public synchronized int size() {
+            return table.size();
+        }
+
+        @Override
+        public synchronized double loadFactor() {
+            return table.loadFactor();
+        }
+
+        @Override
+        public synchronized boolean add(E e) {
+            return table.add(e);
+        }
+
+        @Override
+        public synchronized E get(E e) {
+            return table.get(e);
+        }
+
+        @Override
+        public synchronized boolean remove(E e) {
+            return table.remove(e);
+        }
+
+        @Override
+        public synchronized boolean contains(E e) {
+            return table.contains(e);
+        }
+
+        @Override
+        public synchronized void setStatsEnabled(boolean enabled) {
+            table.setStatsEnabled(enabled);
+        }
+
+        @Override
+        public synchronized HashTableStats stats() {
+            return table.stats();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return table.iterator();
+        }
+    }
+}
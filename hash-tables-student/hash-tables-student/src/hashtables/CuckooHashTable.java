@@ -0,0 +1,399 @@
+package hashtables;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * An implementation of HashTable with worst-case constant-time lookups.
+ *
+ * This implementation uses bucketized cuckoo hashing. The slots are divided
+ * into two tables, each an array of buckets of four slots, and each table has
+ * its own seeded hash function. Every element lives in one of exactly two
+ * buckets: the one its first hash picks in the first table, or the one its
+ * second hash picks in the second. A lookup therefore examines at most eight
+ * slots, each group of four adjacent in memory, plus a small stash, no matter
+ * how full the table is or how it was built.
+ *
+ * To insert an element whose two buckets are both full, it evicts a (pseudo-
+ * randomly chosen) occupant of one of them, which moves to its own alternate
+ * bucket, possibly evicting another element in turn. If this goes on for too
+ * long (usually because of a cycle), the element left over goes into the
+ * stash, which holds at most four elements. When the stash is full, the
+ * whole table is rehashed with new hash seeds, and if several attempts at
+ * that fail, the table is doubled in size.
+ *
+ * Elements with equal hash codes always share both buckets, so no choice of
+ * seeds separates them. If more of them are added than the buckets and stash
+ * can hold, the stash is allowed to grow beyond four until the table next
+ * grows, and lookups of those elements are no longer constant-time.
+ *
+ * The capacity is the total number of slots, which is always a multiple of
+ * eight. When the load factor exceeds 0.75, the next add() doubles it.
+ *
+ * Iterators are fail-fast, as in ChainingHashTable.
+ *
+ * Statistics work as in ChainingHashTable. The histogram counts elements by
+ * where they live: 0 for the first bucket, 1 for the second and 2 for the
+ * stash. Only rebuilds that double the table count as resizes, but the time
+ * spent rehashing with new seeds is included in the resize time.
+ */
+public class CuckooHashTable<E> implements HashTable<E> {
+    private static final int BUCKET_SIZE = 4;
+    private static final int STASH_SIZE = 4;
+    private static final int MAX_KICKS = 500;
+    private static final int MAX_REHASHES = 4;
+
+    // table t, bucket b occupies slots [(t * buckets + b) * BUCKET_SIZE, + BUCKET_SIZE)
+    private Object[] slots;
+    private int buckets;
+    private int seed0;
+    private int seed1;
+    private final List<Object> stash = new ArrayList<>();
+    private int stashLimit = STASH_SIZE;
+    private int size;
+    // count of structural modifications, checked by iterators
+    private int modCount;
+    private StatsRecorder stats;
+    private final Random random = new Random(0x5eed);
+
+    /**
+     * Instantiate a new hash table with 8 slots.
+     */
+    public CuckooHashTable() {
+        this(7);
+    }
+
+    /**
+     * Instantiate a new hash table with at least n slots.
+     */
+    public CuckooHashTable(int n) {
+        buckets = 1;
+        while (2 * buckets * BUCKET_SIZE < n) {
+            buckets *= 2;
+        }
+        slots = new Object[2 * buckets * BUCKET_SIZE];
+        seed0 = random.nextInt();
+        seed1 = random.nextInt();
+    }
+
+    @Override
+    public int capacity() {
+        return slots.length;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double loadFactor() {
+        return (double) size / slots.length;
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (loadFactor() > 0.75) {
+            rebuild(buckets * 2, null);
+        }
+        int found = find(e);
+        if (found >= 0) {
+            slots[found] = e;
+            return false;
+        }
+        if (found < -1) {
+            stash.set(-found - 2, e);
+            return false;
+        }
+        Object homeless = place(e);
+        if (homeless != null) {
+            if (stash.size() < stashLimit) {
+                stash.add(homeless);
+            } else {
+                rehash(homeless);
+            }
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public E get(E e) {
+        int found = find(e);
+        if (stats != null) {
+            stats.lookup(probes(e, found), found != -1);
+        }
+        if (found >= 0) {
+            return elementAt(found);
+        }
+        if (found < -1) {
+            @SuppressWarnings("unchecked")
+            E stashed = (E) stash.get(-found - 2);
+            return stashed;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean remove(E e) {
+        int found = find(e);
+        if (found == -1) {
+            return false;
+        }
+        if (found >= 0) {
+            slots[found] = null;
+            unstash();
+        } else {
+            stash.remove(-found - 2);
+        }
+        size--;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean contains(E e) {
+        return get(e) != null;
+    }
+
+    @Override
+    public void setStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            stats = null;
+        } else if (stats == null) {
+            stats = new StatsRecorder();
+        }
+    }
+
+    @Override
+    public HashTableStats stats() {
+        long[] histogram = new long[stash.isEmpty() ? 2 : 3];
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                histogram[i < buckets * BUCKET_SIZE ? 0 : 1]++;
+            }
+        }
+        histogram[histogram.length - 1] += stash.size();
+        StatsRecorder recorder = stats != null ? stats : new StatsRecorder();
+        return recorder.snapshot(size, slots.length, histogram);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new CuckooIterator();
+    }
+
+    /**
+     * Return the slot holding an element equal to e; or -(i + 2) if it is at
+     * index i in the stash; or -1 if there is none.
+     */
+    private int find(Object e) {
+        int hashCode = e.hashCode();
+        int start = bucketStart(0, hash(hashCode, seed0));
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (e.equals(slots[i])) {
+                return i;
+            }
+        }
+        start = bucketStart(1, hash(hashCode, seed1));
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (e.equals(slots[i])) {
+                return i;
+            }
+        }
+        for (int i = 0; i < stash.size(); i++) {
+            if (e.equals(stash.get(i))) {
+                return -i - 2;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the number of elements find(e) examined to return found.
+     */
+    private int probes(Object e, int found) {
+        if (found == -1) {
+            return 2 * BUCKET_SIZE + stash.size();
+        }
+        if (found < -1) {
+            return 2 * BUCKET_SIZE + -found - 1;
+        }
+        int hashCode = e.hashCode();
+        int start = bucketStart(0, hash(hashCode, seed0));
+        if (found >= start && found < start + BUCKET_SIZE) {
+            return found - start + 1;
+        }
+        return BUCKET_SIZE + found - bucketStart(1, hash(hashCode, seed1)) + 1;
+    }
+
+    /**
+     * Place e (known not to be present) in one of its buckets, evicting
+     * other elements into their alternate buckets as needed.
+     *
+     * @return null on success, or the element left without a slot after
+     *         MAX_KICKS evictions
+     */
+    private Object place(Object e) {
+        Object current = e;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int hashCode = current.hashCode();
+            int start0 = bucketStart(0, hash(hashCode, seed0));
+            int start1 = bucketStart(1, hash(hashCode, seed1));
+            int free = freeSlot(start0);
+            if (free < 0) {
+                free = freeSlot(start1);
+            }
+            if (free >= 0) {
+                slots[free] = current;
+                return null;
+            }
+            int victim = ((kick & 1) == 0 ? start0 : start1) + random.nextInt(BUCKET_SIZE);
+            Object evicted = slots[victim];
+            slots[victim] = current;
+            current = evicted;
+        }
+        return current;
+    }
+
+    /**
+     * Move stashed elements whose buckets have room back into the table.
+     */
+    private void unstash() {
+        for (int i = stash.size() - 1; i >= 0; i--) {
+            Object e = stash.get(i);
+            int hashCode = e.hashCode();
+            int free = freeSlot(bucketStart(0, hash(hashCode, seed0)));
+            if (free < 0) {
+                free = freeSlot(bucketStart(1, hash(hashCode, seed1)));
+            }
+            if (free >= 0) {
+                slots[free] = e;
+                stash.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Rebuild the table, with new seeds, until every element and pending fit
+     * within the stash limit, doubling the table if several tries fail.
+     */
+    private void rehash(Object pending) {
+        for (int attempt = 0; attempt < MAX_REHASHES; attempt++) {
+            seed0 = random.nextInt();
+            seed1 = random.nextInt();
+            if (rebuild(buckets, pending)) {
+                return;
+            }
+            // a failed rebuild still holds pending, in its stash
+            pending = null;
+        }
+        rebuild(buckets * 2, null);
+    }
+
+    /**
+     * Reinsert every element, and pending if it is non-null, into a table
+     * with the given number of buckets per half. The new table always
+     * replaces the old; if its stash had to grow past STASH_SIZE, the stash
+     * is left unbounded until the next rebuild, so that adds of colliding
+     * elements do not rehash over and over again.
+     *
+     * @return true iff the stash stayed within STASH_SIZE
+     */
+    private boolean rebuild(int newBuckets, Object pending) {
+        long start = stats != null ? System.nanoTime() : 0;
+        if (stats != null && newBuckets != buckets) {
+            stats.resized();
+        }
+        Object[] oldSlots = slots;
+        List<Object> oldStash = new ArrayList<>(stash);
+        slots = new Object[2 * newBuckets * BUCKET_SIZE];
+        buckets = newBuckets;
+        modCount++;
+        stash.clear();
+        for (Object e : oldSlots) {
+            if (e != null) {
+                stashIfHomeless(place(e));
+            }
+        }
+        for (Object e : oldStash) {
+            stashIfHomeless(place(e));
+        }
+        if (pending != null) {
+            stashIfHomeless(place(pending));
+        }
+        boolean fits = stash.size() <= STASH_SIZE;
+        stashLimit = fits ? STASH_SIZE : Integer.MAX_VALUE;
+        if (stats != null) {
+            stats.resizing(start);
+        }
+        return fits;
+    }
+
+    private void stashIfHomeless(Object e) {
+        if (e != null) {
+            stash.add(e);
+        }
+    }
+
+    private int freeSlot(int start) {
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (slots[i] == null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int bucketStart(int table, int hash) {
+        // buckets is a power of two
+        return (table * buckets + (hash & (buckets - 1))) * BUCKET_SIZE;
+    }
+
+    private static int hash(int hashCode, int seed) {
+        int h = (hashCode ^ seed) * 0x9e3779b9;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementAt(int index) {
+        return (E) slots[index];
+    }
+
+    private class CuckooIterator implements Iterator<E> {
+        private int currentIndex = 0;
+        private int stashIndex = 0;
+        private final int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (currentIndex < slots.length && slots[currentIndex] == null) {
+                currentIndex++;
+            }
+            return currentIndex < slots.length || stashIndex < stash.size();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (currentIndex < slots.length) {
+                return elementAt(currentIndex++);
+            }
+            return (E) stash.get(stashIndex++);
+        }
+    }
+}
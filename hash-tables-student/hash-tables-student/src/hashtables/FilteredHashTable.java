@@ -0,0 +1,156 @@
+package hashtables;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+
+/**
+ * A HashTable that wraps another, keeping a BloomFilter of its elements in
+ * front of it.
+ *
+ * Lookups first consult the filter. Since a Bloom filter has no false
+ * negatives, an element the filter has never seen cannot be in the table, and
+ * get() and contains() return straight away without touching the (possibly
+ * much larger, and not cached) table. Only elements that might be present
+ * cost a walk of their bucket.
+ *
+ * Bits cannot be cleared from a Bloom filter, so removed elements stay in the
+ * filter, and once more elements have been added than the filter was sized
+ * for its false positive rate climbs. To keep the filter at its configured
+ * rate, it is rebuilt from the table's elements, with room for twice as many,
+ * as soon as the number of elements inserted into it (those it was built
+ * with, and those added since) exceeds its expected number of insertions.
+ * That is amortized constant time per addition, like the table's own
+ * resizing. Removals set no bits, so they never trigger a rebuild.
+ *
+ * Every other operation is passed through to the wrapped table unchanged. The
+ * wrapped table must not be modified except through this one.
+ */
+public class FilteredHashTable<E> implements HashTable<E> {
+    private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_EXPECTED_INSERTIONS = 64;
+
+    private final HashTable<E> table;
+    private final double falsePositiveRate;
+    private BloomFilter<E> filter;
+    private long expectedInsertions;
+    private long insertions;
+
+    /**
+     * Wrap table, with a filter whose false positive rate is 1%.
+     */
+    public FilteredHashTable(HashTable<E> table) {
+        this(table, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Wrap table, with a filter whose false positive rate is
+     * falsePositiveRate. Any elements already in table are added to the
+     * filter.
+     */
+    public FilteredHashTable(HashTable<E> table, double falsePositiveRate) {
+        this.table = table;
+        this.falsePositiveRate = falsePositiveRate;
+        rebuildFilter();
+    }
+
+    @Override
+    public int capacity() {
+        return table.capacity();
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public double loadFactor() {
+        return table.loadFactor();
+    }
+
+    @Override
+    public boolean add(E e) {
+        boolean added = table.add(e);
+        if (added) {
+            filter.add(e);
+            if (++insertions > expectedInsertions) {
+                rebuildFilter();
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public E get(E e) {
+        if (!filter.mightContain(e)) {
+            return null;
+        }
+        return table.get(e);
+    }
+
+    @Override
+    public boolean remove(E e) {
+        if (!filter.mightContain(e)) {
+            return false;
+        }
+        return table.remove(e);
+    }
+
+    @Override
+    public E removeAndGet(E e) {
+        if (!filter.mightContain(e)) {
+            return null;
+        }
+        return table.removeAndGet(e);
+    }
+
+    @Override
+    public boolean contains(E e) {
+        return filter.mightContain(e) && table.contains(e);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return table.iterator();
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return table.spliterator();
+    }
+
+    /**
+     * Statistics are those of the wrapped table, so they count only the
+     * lookups the filter let through.
+     */
+    @Override
+    public void setStatsEnabled(boolean enabled) {
+        table.setStatsEnabled(enabled);
+    }
+
+    @Override
+    public HashTableStats stats() {
+        return table.stats();
+    }
+
+    /**
+     * Return the filter currently in front of the table. It may be merged
+     * into other filters or written out with BloomFilter.writeTo(), but
+     * it is replaced whenever it is rebuilt.
+     *
+     * @return the current filter
+     */
+    public BloomFilter<E> filter() {
+        return filter;
+    }
+
+    private void rebuildFilter() {
+        expectedInsertions = Math.max(MIN_EXPECTED_INSERTIONS, 2L * table.size());
+        BloomFilter<E> rebuilt = new BloomFilter<>(expectedInsertions, falsePositiveRate);
+        for (E e : table) {
+            rebuilt.add(e);
+        }
+        filter = rebuilt;
+        insertions = table.size();
+    }
+}
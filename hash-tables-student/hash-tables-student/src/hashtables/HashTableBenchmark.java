@@ -0,0 +1,70 @@
+package hashtables;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures single-threaded throughput of the HashTable implementations on
+ * the operations that dominate a deduplication pass: adding keys, looking up
+ * keys that are present (hits) and looking up keys that are not (misses).
+ *
+ * The number of keys defaults to 1,000,000, or can be given as the first
+ * argument. Keys are distinct random Integers; misses use keys drawn from a
+ * disjoint range.
+ */
+public class HashTableBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Integer[] keys = new Integer[n];
+        Integer[] absent = new Integer[n];
+        Random random = new Random(0);
+        for (int i = 0; i < n; i++) {
+            // even keys are added, odd keys are missed
+            keys[i] = random.nextInt(Integer.MAX_VALUE / 2) * 2;
+            absent[i] = random.nextInt(Integer.MAX_VALUE / 2) * 2 + 1;
+        }
+
+        System.out.println("table                 add (ns/op)  hit (ns/op)  miss (ns/op)");
+        run("ChainingHashTable", ChainingHashTable::new, keys, absent);
+        run("RobinHoodHashTable", RobinHoodHashTable::new, keys, absent);
+        run("CuckooHashTable", CuckooHashTable::new, keys, absent);
+        run("SwissHashTable", SwissHashTable::new, keys, absent);
+    }
+
+    private static void run(String name, Supplier<HashTable<Integer>> factory,
+            Integer[] keys, Integer[] absent) {
+        double add = Double.MAX_VALUE;
+        double hit = Double.MAX_VALUE;
+        double miss = Double.MAX_VALUE;
+        int found = 0;
+        // report the best round; the first ones double as warm-up
+        for (int round = 0; round < ROUNDS; round++) {
+            HashTable<Integer> table = factory.get();
+            long start = System.nanoTime();
+            for (Integer key : keys) {
+                table.add(key);
+            }
+            add = Math.min(add, (double) (System.nanoTime() - start) / keys.length);
+
+            start = System.nanoTime();
+            for (Integer key : keys) {
+                if (table.contains(key)) {
+                    found++;
+                }
+            }
+            hit = Math.min(hit, (double) (System.nanoTime() - start) / keys.length);
+
+            start = System.nanoTime();
+            for (Integer key : absent) {
+                if (table.contains(key)) {
+                    found++;
+                }
+            }
+            miss = Math.min(miss, (double) (System.nanoTime() - start) / absent.length);
+        }
+        // print found so the lookups cannot be optimized away
+        System.out.printf("%-20s  %11.1f  %11.1f  %12.1f  (%d found)%n", name, add, hit, miss, found);
+    }
+}
@@ -0,0 +1,134 @@
+package hashtables;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Exposes the statistics of a HashTable as a JMX MXBean, so that they can be
+ * watched with jconsole or any other JMX client.
+ *
+ * Every attribute is read from one cached stats() snapshot, which refresh()
+ * replaces. JMX reads attributes from its own threads, but stats() may scan
+ * the whole table, and HashTables are not thread-safe, so the monitor never
+ * calls stats() itself from a JMX thread: the thread that owns the table (or
+ * any thread holding whatever lock guards it) calls refresh() whenever fresh
+ * figures are wanted, for instance once per batch of work. The snapshot is
+ * published through a volatile field, so a JMX read always sees a complete,
+ * consistent snapshot, and a full read of the MBean costs no scans at all.
+ */
+public class HashTableMonitor implements HashTableStatsMXBean {
+    private final HashTable<?> table;
+    private volatile HashTableStats snapshot;
+    private ObjectName objectName;
+
+    /**
+     * Create a monitor for table, taking its first snapshot. Call this from
+     * the thread that owns the table.
+     */
+    public HashTableMonitor(HashTable<?> table) {
+        this.table = table;
+        refresh();
+    }
+
+    /**
+     * Enable statistics on table and register a monitor for it with the
+     * platform MBean server, as hashtables:type=HashTable,name=name. Call
+     * this from the thread that owns the table.
+     *
+     * @param table the table to monitor
+     * @param name  a name identifying the table
+     * @return the monitor, registered under objectName()
+     * @throws JMException if the monitor could not be registered, for
+     *                     instance because the name is taken
+     */
+    public static HashTableMonitor register(HashTable<?> table, String name) throws JMException {
+        table.setStatsEnabled(true);
+        HashTableMonitor monitor = new HashTableMonitor(table);
+        monitor.objectName = new ObjectName("hashtables:type=HashTable,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, monitor.objectName);
+        return monitor;
+    }
+
+    /**
+     * Unregister a monitor registered by register().
+     *
+     * @param objectName the name returned by register()
+     * @throws JMException if there is no such monitor
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+
+    /**
+     * @return the name this monitor was registered under by register(), or
+     *         null if it was not
+     */
+    public ObjectName objectName() {
+        return objectName;
+    }
+
+    /**
+     * Replace the snapshot that JMX reads with a fresh one. Call this only
+     * from the thread that owns the table, or while holding its lock.
+     */
+    public void refresh() {
+        snapshot = table.stats();
+    }
+
+    @Override
+    public int getSize() {
+        return snapshot.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return snapshot.capacity();
+    }
+
+    @Override
+    public double getLoadFactor() {
+        return snapshot.loadFactor();
+    }
+
+    @Override
+    public int getMaxChainLength() {
+        return snapshot.maxChainLength();
+    }
+
+    @Override
+    public long[] getChainLengthHistogram() {
+        return snapshot.chainLengthHistogram();
+    }
+
+    @Override
+    public long getLookupCount() {
+        return snapshot.lookupCount();
+    }
+
+    @Override
+    public long getHitCount() {
+        return snapshot.hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return snapshot.missCount();
+    }
+
+    @Override
+    public double getAverageProbes() {
+        return snapshot.averageProbes();
+    }
+
+    @Override
+    public long getResizeCount() {
+        return snapshot.resizeCount();
+    }
+
+    @Override
+    public long getResizeNanos() {
+        return snapshot.resizeNanos();
+    }
+}
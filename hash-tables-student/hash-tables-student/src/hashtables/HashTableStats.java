@@ -0,0 +1,156 @@
+package hashtables;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable snapshot of the statistics of a HashTable, as returned by
+ * HashTable.stats().
+ *
+ * The structural statistics (size, capacity and the chain length histogram)
+ * describe the table when the snapshot was taken. The operation counts
+ * (lookups, probes and resizes) cover the time since statistics were last
+ * enabled, and are zero if they are not.
+ */
+public class HashTableStats {
+    private final int size;
+    private final int capacity;
+    private final long[] chainLengths;
+    private final long lookups;
+    private final long hits;
+    private final long probes;
+    private final long resizeCount;
+    private final long resizeNanos;
+
+    /**
+     * @param size         the number of elements
+     * @param capacity     the capacity
+     * @param chainLengths chainLengths[n] is the number of buckets holding n
+     *                     elements (or, for open addressing, the number of
+     *                     elements n probes from their home slot)
+     * @param lookups      the number of get() and contains() calls
+     * @param hits         how many of those found an element
+     * @param probes       the total number of elements they examined
+     * @param resizeCount  the number of resizes
+     * @param resizeNanos  the total time spent resizing, in nanoseconds
+     */
+    public HashTableStats(int size, int capacity, long[] chainLengths, long lookups, long hits,
+            long probes, long resizeCount, long resizeNanos) {
+        this.size = size;
+        this.capacity = capacity;
+        this.chainLengths = chainLengths.clone();
+        this.lookups = lookups;
+        this.hits = hits;
+        this.probes = probes;
+        this.resizeCount = resizeCount;
+        this.resizeNanos = resizeNanos;
+    }
+
+    /**
+     * Combine the statistics of several tables (such as the stripes of a
+     * ConcurrentChainingHashTable) into those of one table holding them all.
+     */
+    static HashTableStats sum(List<HashTableStats> parts) {
+        int size = 0;
+        int capacity = 0;
+        long[] chainLengths = new long[1];
+        long lookups = 0;
+        long hits = 0;
+        long probes = 0;
+        long resizeCount = 0;
+        long resizeNanos = 0;
+        for (HashTableStats part : parts) {
+            size += part.size;
+            capacity += part.capacity;
+            if (part.chainLengths.length > chainLengths.length) {
+                chainLengths = Arrays.copyOf(chainLengths, part.chainLengths.length);
+            }
+            for (int n = 0; n < part.chainLengths.length; n++) {
+                chainLengths[n] += part.chainLengths[n];
+            }
+            lookups += part.lookups;
+            hits += part.hits;
+            probes += part.probes;
+            resizeCount += part.resizeCount;
+            resizeNanos += part.resizeNanos;
+        }
+        return new HashTableStats(size, capacity, chainLengths, lookups, hits, probes,
+                resizeCount, resizeNanos);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public double loadFactor() {
+        return (double) size / capacity;
+    }
+
+    /**
+     * @return a histogram whose element n is the number of buckets with
+     *         chains of length n (for open addressing, the number of
+     *         elements n probes from their home slot)
+     */
+    public long[] chainLengthHistogram() {
+        return chainLengths.clone();
+    }
+
+    /**
+     * @return the length of the longest chain (for open addressing, the
+     *         longest probe distance)
+     */
+    public int maxChainLength() {
+        for (int n = chainLengths.length - 1; n > 0; n--) {
+            if (chainLengths[n] > 0) {
+                return n;
+            }
+        }
+        return 0;
+    }
+
+    public long lookupCount() {
+        return lookups;
+    }
+
+    public long hitCount() {
+        return hits;
+    }
+
+    public long missCount() {
+        return lookups - hits;
+    }
+
+    /**
+     * @return the average number of elements examined per lookup, or 0 if
+     *         there have been no lookups
+     */
+    public double averageProbes() {
+        return lookups == 0 ? 0 : (double) probes / lookups;
+    }
+
+    public long resizeCount() {
+        return resizeCount;
+    }
+
+    /**
+     * @return the total time spent resizing (including incremental
+     *         migration), in nanoseconds
+     */
+    public long resizeNanos() {
+        return resizeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "HashTableStats{size=" + size + ", capacity=" + capacity
+                + ", maxChainLength=" + maxChainLength()
+                + ", chainLengthHistogram=" + Arrays.toString(chainLengths)
+                + ", lookupCount=" + lookups + ", hitCount=" + hits + ", missCount=" + missCount()
+                + ", averageProbes=" + averageProbes()
+                + ", resizeCount=" + resizeCount + ", resizeNanos=" + resizeNanos + "}";
+    }
+}
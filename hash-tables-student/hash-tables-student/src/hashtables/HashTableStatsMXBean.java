@@ -0,0 +1,28 @@
+package hashtables;
+
+/**
+ * The JMX view of a HashTable's statistics; see HashTableMonitor.
+ */
+public interface HashTableStatsMXBean {
+    int getSize();
+
+    int getCapacity();
+
+    double getLoadFactor();
+
+    int getMaxChainLength();
+
+    long[] getChainLengthHistogram();
+
+    long getLookupCount();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getAverageProbes();
+
+    long getResizeCount();
+
+    long getResizeNanos();
+}
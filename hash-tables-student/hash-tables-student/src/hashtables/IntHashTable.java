@@ -0,0 +1,215 @@
+package hashtables;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A hash table of int values, specialized so that no element is ever boxed.
+ *
+ * This implementation uses open addressing with linear probing: the values
+ * are stored directly in an int[], and a separate occupancy bitset records
+ * which slots are in use. Since emptiness is tracked outside the value array,
+ * every int (including 0 and -1) can be stored; no value is reserved as an
+ * "empty" marker. Removal uses backward-shift deletion, so no tombstones are
+ * left behind. add(), contains() and remove() allocate nothing.
+ *
+ * Capacity and load factor behave exactly as in HashTable implementations
+ * such as ChainingHashTable: the capacity is 2^n - 1 for some positive integer
+ * n, and when the load factor exceeds 0.75, the next add() triggers a resize
+ * by incrementing n (by one).
+ */
+public class IntHashTable {
+    private int[] slots;
+    private long[] used;
+    private int size;
+    private int capacity;
+
+    /**
+     * Instantiate a new hash table. The initial capacity should be 7.
+     */
+    public IntHashTable() {
+        this(7);
+    }
+
+    /**
+     * Instantiate a new hash table. The initial capacity should be
+     * at least sufficient to hold n elements, but must be one less
+     * than a power of two.
+     */
+    public IntHashTable(int n) {
+        capacity = (int) Math.pow(2, (int) (Math.log(n) / Math.log(2)) + 1) - 1;
+        slots = new int[capacity];
+        used = new long[(capacity + 63) >>> 6];
+        size = 0;
+    }
+
+    /**
+     * Return the capacity of the hash table, that is, the length of the
+     * underlying array.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Return the number of elements stored in the hash table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the ratio of the size to the capacity.
+     */
+    public double loadFactor() {
+        return (double) size / capacity;
+    }
+
+    /**
+     * Add e to the hash table.
+     *
+     * @return true if e is newly inserted, false if it was already present
+     */
+    public boolean add(int e) {
+        if (loadFactor() > 0.75) {
+            resize();
+        }
+        int index = getIndex(e);
+        while (isUsed(index)) {
+            if (slots[index] == e) {
+                return false;
+            }
+            index = next(index);
+        }
+        slots[index] = e;
+        setUsed(index);
+        size++;
+        return true;
+    }
+
+    /**
+     * Return true iff e is stored in the hash table.
+     */
+    public boolean contains(int e) {
+        return find(e) >= 0;
+    }
+
+    /**
+     * Remove e from the table, returning true iff it was present.
+     */
+    public boolean remove(int e) {
+        int index = find(e);
+        if (index < 0) {
+            return false;
+        }
+        deleteSlot(index);
+        size--;
+        return true;
+    }
+
+    /**
+     * Return an iterator over the elements of the hash table, in no
+     * particular order.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntHashTableIterator();
+    }
+
+    private int find(int e) {
+        int index = getIndex(e);
+        // a completely full table has no empty slot to stop on
+        for (int probes = 0; probes < capacity && isUsed(index); probes++) {
+            if (slots[index] == e) {
+                return index;
+            }
+            index = next(index);
+        }
+        return -1;
+    }
+
+    /**
+     * Empty the slot at hole, moving back any later element of its probe run
+     * that can no longer be reached past the hole.
+     */
+    private void deleteSlot(int hole) {
+        int index = next(hole);
+        for (int probes = 1; probes < capacity && isUsed(index); probes++) {
+            int home = getIndex(slots[index]);
+            // move the element unless its home lies cyclically in (hole, index]
+            boolean reachable = hole <= index
+                    ? hole < home && home <= index
+                    : hole < home || home <= index;
+            if (!reachable) {
+                slots[hole] = slots[index];
+                hole = index;
+            }
+            index = next(index);
+        }
+        clearUsed(hole);
+    }
+
+    private void resize() {
+        int[] oldSlots = slots;
+        long[] oldUsed = used;
+        capacity = (capacity + 1) * 2 - 1;
+        slots = new int[capacity];
+        used = new long[(capacity + 63) >>> 6];
+        for (int i = 0; i < oldSlots.length; i++) {
+            if ((oldUsed[i >>> 6] & (1L << i)) != 0) {
+                int index = getIndex(oldSlots[i]);
+                while (isUsed(index)) {
+                    index = next(index);
+                }
+                slots[index] = oldSlots[i];
+                setUsed(index);
+            }
+        }
+    }
+
+    private int getIndex(int e) {
+        // mix the bits (murmur3 finalizer), then map onto [0, capacity)
+        int h = e;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (int) (((h & 0xffffffffL) * capacity) >>> 32);
+    }
+
+    private int next(int index) {
+        return index + 1 == capacity ? 0 : index + 1;
+    }
+
+    private boolean isUsed(int index) {
+        return (used[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void setUsed(int index) {
+        used[index >>> 6] |= 1L << index;
+    }
+
+    private void clearUsed(int index) {
+        used[index >>> 6] &= ~(1L << index);
+    }
+
+    private class IntHashTableIterator implements PrimitiveIterator.OfInt {
+        private int currentIndex = 0;
+
+        @Override
+        public boolean hasNext() {
+            while (currentIndex < capacity && !isUsed(currentIndex)) {
+                currentIndex++;
+            }
+            return currentIndex < capacity;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return slots[currentIndex++];
+        }
+    }
+}
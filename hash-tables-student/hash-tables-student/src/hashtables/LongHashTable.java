@@ -0,0 +1,213 @@
+package hashtables;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A hash table of long values, specialized so that no element is ever boxed.
+ *
+ * This is the long counterpart of IntHashTable: open addressing with linear
+ * probing over a long[], a separate occupancy bitset (so every long value can
+ * be stored), and backward-shift deletion. add(), contains() and remove()
+ * allocate nothing.
+ *
+ * Capacity and load factor behave exactly as in HashTable implementations
+ * such as ChainingHashTable: the capacity is 2^n - 1 for some positive integer
+ * n, and when the load factor exceeds 0.75, the next add() triggers a resize
+ * by incrementing n (by one).
+ */
+public class LongHashTable {
+    private long[] slots;
+    private long[] used;
+    private int size;
+    private int capacity;
+
+    /**
+     * Instantiate a new hash table. The initial capacity should be 7.
+     */
+    public LongHashTable() {
+        this(7);
+    }
+
+    /**
+     * Instantiate a new hash table. The initial capacity should be
+     * at least sufficient to hold n elements, but must be one less
+     * than a power of two.
+     */
+    public LongHashTable(int n) {
+        capacity = (int) Math.pow(2, (int) (Math.log(n) / Math.log(2)) + 1) - 1;
+        slots = new long[capacity];
+        used = new long[(capacity + 63) >>> 6];
+        size = 0;
+    }
+
+    /**
+     * Return the capacity of the hash table, that is, the length of the
+     * underlying array.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Return the number of elements stored in the hash table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the ratio of the size to the capacity.
+     */
+    public double loadFactor() {
+        return (double) size / capacity;
+    }
+
+    /**
+     * Add e to the hash table.
+     *
+     * @return true if e is newly inserted, false if it was already present
+     */
+    public boolean add(long e) {
+        if (loadFactor() > 0.75) {
+            resize();
+        }
+        int index = getIndex(e);
+        while (isUsed(index)) {
+            if (slots[index] == e) {
+                return false;
+            }
+            index = next(index);
+        }
+        slots[index] = e;
+        setUsed(index);
+        size++;
+        return true;
+    }
+
+    /**
+     * Return true iff e is stored in the hash table.
+     */
+    public boolean contains(long e) {
+        return find(e) >= 0;
+    }
+
+    /**
+     * Remove e from the table, returning true iff it was present.
+     */
+    public boolean remove(long e) {
+        int index = find(e);
+        if (index < 0) {
+            return false;
+        }
+        deleteSlot(index);
+        size--;
+        return true;
+    }
+
+    /**
+     * Return an iterator over the elements of the hash table, in no
+     * particular order.
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new LongHashTableIterator();
+    }
+
+    private int find(long e) {
+        int index = getIndex(e);
+        // a completely full table has no empty slot to stop on
+        for (int probes = 0; probes < capacity && isUsed(index); probes++) {
+            if (slots[index] == e) {
+                return index;
+            }
+            index = next(index);
+        }
+        return -1;
+    }
+
+    /**
+     * Empty the slot at hole, moving back any later element of its probe run
+     * that can no longer be reached past the hole.
+     */
+    private void deleteSlot(int hole) {
+        int index = next(hole);
+        for (int probes = 1; probes < capacity && isUsed(index); probes++) {
+            int home = getIndex(slots[index]);
+            // move the element unless its home lies cyclically in (hole, index]
+            boolean reachable = hole <= index
+                    ? hole < home && home <= index
+                    : hole < home || home <= index;
+            if (!reachable) {
+                slots[hole] = slots[index];
+                hole = index;
+            }
+            index = next(index);
+        }
+        clearUsed(hole);
+    }
+
+    private void resize() {
+        long[] oldSlots = slots;
+        long[] oldUsed = used;
+        capacity = (capacity + 1) * 2 - 1;
+        slots = new long[capacity];
+        used = new long[(capacity + 63) >>> 6];
+        for (int i = 0; i < oldSlots.length; i++) {
+            if ((oldUsed[i >>> 6] & (1L << i)) != 0) {
+                int index = getIndex(oldSlots[i]);
+                while (isUsed(index)) {
+                    index = next(index);
+                }
+                slots[index] = oldSlots[i];
+                setUsed(index);
+            }
+        }
+    }
+
+    private int getIndex(long e) {
+        // mix the bits (murmur3 64-bit finalizer), then map onto [0, capacity)
+        long h = e;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) (((h >>> 32) * capacity) >>> 32);
+    }
+
+    private int next(int index) {
+        return index + 1 == capacity ? 0 : index + 1;
+    }
+
+    private boolean isUsed(int index) {
+        return (used[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void setUsed(int index) {
+        used[index >>> 6] |= 1L << index;
+    }
+
+    private void clearUsed(int index) {
+        used[index >>> 6] &= ~(1L << index);
+    }
+
+    private class LongHashTableIterator implements PrimitiveIterator.OfLong {
+        private int currentIndex = 0;
+
+        @Override
+        public boolean hasNext() {
+            while (currentIndex < capacity && !isUsed(currentIndex)) {
+                currentIndex++;
+            }
+            return currentIndex < capacity;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return slots[currentIndex++];
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package hashtables;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An implementation of HashTable.
+ *
+ * This implementation uses open addressing with linear probing and Robin Hood
+ * displacement to resolve collisions. Elements are stored directly in a flat
+ * array of slots, and a parallel array records how far each element sits from
+ * the slot it hashes to (its probe distance). When inserting, an element that
+ * has probed further than the current occupant of a slot takes that slot, and
+ * the occupant continues probing in its place. This keeps probe distances
+ * short and roughly equal, and lets a lookup stop as soon as it reaches a slot
+ * whose occupant is "richer" (closer to home) than the element being searched
+ * for would be.
+ *
+ * Removal uses backward-shift deletion, so no tombstones are ever left behind.
+ *
+ * Capacity and load factor behave exactly as in ChainingHashTable: the
+ * capacity is 2^n - 1 for some positive integer n, and when the load factor
+ * exceeds 0.75, the next add() triggers a resize by incrementing n (by one).
+ *
+ * Iterators are fail-fast, as in ChainingHashTable.
+ *
+ * Statistics work as in ChainingHashTable. The histogram counts elements by
+ * their probe distance, which is already stored for every slot, and a lookup
+ * examines one element per slot it probes.
+ */
+public class RobinHoodHashTable<E> implements HashTable<E> {
+    private Object[] slots;
+    // probe distance + 1 of the element in each slot; 0 marks an empty slot
+    private int[] distances;
+    private int size;
+    private int capacity;
+    // count of structural modifications, checked by iterators
+    private int modCount;
+    private StatsRecorder stats;
+
+    /**
+     * Instantiate a new hash table. The initial capacity should be 7.
+     */
+    public RobinHoodHashTable() {
+        this(7);
+    }
+
+    /**
+     * Instantiate a new hash table. The initial capacity should be
+     * at least sufficient to hold n elements, but must be one less
+     * than a power of two.
+     */
+    public RobinHoodHashTable(int n) {
+        capacity = (int) Math.pow(2, (int) (Math.log(n) / Math.log(2)) + 1) - 1;
+        slots = new Object[capacity];
+        distances = new int[capacity];
+        size = 0;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double loadFactor() {
+        return (double) size / capacity;
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (loadFactor() > 0.75) {
+            resize();
+        }
+        int found = find(e);
+        if (found >= 0) {
+            slots[found] = e;
+            return false;
+        }
+        insert(e);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public E get(E e) {
+        int found = find(e);
+        if (stats != null) {
+            stats.lookup(probes(e, found), found >= 0);
+        }
+        return found >= 0 ? elementAt(found) : null;
+    }
+
+    @Override
+    public boolean remove(E e) {
+        int found = find(e);
+        if (found < 0) {
+            return false;
+        }
+        // shift the following run of displaced elements back by one slot; as
+        // in find(), a full table has no empty slot to stop on, so the run
+        // is bounded by the capacity
+        int hole = found;
+        int next = (hole + 1) % capacity;
+        for (int shifted = 1; shifted < capacity && distances[next] > 1; shifted++) {
+            slots[hole] = slots[next];
+            distances[hole] = distances[next] - 1;
+            hole = next;
+            next = (next + 1) % capacity;
+        }
+        slots[hole] = null;
+        distances[hole] = 0;
+        size--;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean contains(E e) {
+        return get(e) != null;
+    }
+
+    @Override
+    public void setStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            stats = null;
+        } else if (stats == null) {
+            stats = new StatsRecorder();
+        }
+    }
+
+    @Override
+    public HashTableStats stats() {
+        long[] histogram = new long[1];
+        for (int distance : distances) {
+            if (distance > 0) {
+                histogram = StatsRecorder.count(histogram, distance - 1);
+            }
+        }
+        StatsRecorder recorder = stats != null ? stats : new StatsRecorder();
+        return recorder.snapshot(size, capacity, histogram);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new RobinHoodIterator();
+    }
+
+    /**
+     * Return the slot holding an element equal to e, or -1 if there is none.
+     */
+    private int find(E e) {
+        int index = getIndex(e);
+        // a table that is completely full has no empty slot to stop on
+        for (int distance = 1; distance <= capacity; distance++) {
+            if (distances[index] < distance) {
+                return -1;
+            }
+            if (e.equals(slots[index])) {
+                return index;
+            }
+            index = (index + 1) % capacity;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the number of elements find(e) examined to return found.
+     */
+    private int probes(E e, int found) {
+        if (found >= 0) {
+            return distances[found];
+        }
+        int index = getIndex(e);
+        int distance = 1;
+        while (distance <= capacity && distances[index] >= distance) {
+            index = (index + 1) % capacity;
+            distance++;
+        }
+        return distance - 1;
+    }
+
+    /**
+     * Place e (known not to be present) into the table, displacing richer
+     * elements along its probe sequence.
+     */
+    private void insert(Object e) {
+        Object current = e;
+        int distance = 1;
+        int index = getIndex(e);
+        while (distances[index] != 0) {
+            if (distances[index] < distance) {
+                Object displaced = slots[index];
+                int displacedDistance = distances[index];
+                slots[index] = current;
+                distances[index] = distance;
+                current = displaced;
+                distance = displacedDistance;
+            }
+            index = (index + 1) % capacity;
+            distance++;
+        }
+        slots[index] = current;
+        distances[index] = distance;
+    }
+
+    private void resize() {
+        long start = stats != null ? System.nanoTime() : 0;
+        Object[] oldSlots = slots;
+        capacity = (capacity + 1) * 2 - 1;
+        modCount++;
+        slots = new Object[capacity];
+        distances = new int[capacity];
+        for (Object element : oldSlots) {
+            if (element != null) {
+                insert(element);
+            }
+        }
+        if (stats != null) {
+            stats.resized();
+            stats.resizing(start);
+        }
+    }
+
+    private int getIndex(Object e) {
+        return (e.hashCode() & 0x7fffffff) % capacity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementAt(int index) {
+        return (E) slots[index];
+    }
+
+    private class RobinHoodIterator implements Iterator<E> {
+        private int currentIndex = 0;
+        private final int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (currentIndex < slots.length && distances[currentIndex] == 0) {
+                currentIndex++;
+            }
+            return currentIndex < slots.length;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return elementAt(currentIndex++);
+        }
+    }
+}
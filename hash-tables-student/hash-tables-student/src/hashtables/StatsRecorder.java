@@ -0,0 +1,51 @@
+package hashtables;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the operation counts behind HashTableStats. A table whose
+ * statistics are disabled holds no recorder at all (null), so the only
+ * cost it pays is a null check per operation.
+ */
+class StatsRecorder {
+    long lookups;
+    long hits;
+    long probes;
+    long resizeCount;
+    long resizeNanos;
+
+    void lookup(int probeCount, boolean hit) {
+        lookups++;
+        probes += probeCount;
+        if (hit) {
+            hits++;
+        }
+    }
+
+    void resized() {
+        resizeCount++;
+    }
+
+    void resizing(long startNanos) {
+        resizeNanos += System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Count one more bucket of length n (or element n probes from home) in
+     * histogram, growing it if needed.
+     *
+     * @return the histogram, or its grown copy
+     */
+    static long[] count(long[] histogram, int n) {
+        if (n >= histogram.length) {
+            histogram = Arrays.copyOf(histogram, n + 1);
+        }
+        histogram[n]++;
+        return histogram;
+    }
+
+    HashTableStats snapshot(int size, int capacity, long[] chainLengths) {
+        return new HashTableStats(size, capacity, chainLengths, lookups, hits, probes,
+                resizeCount, resizeNanos);
+    }
+}
@@ -0,0 +1,373 @@
+package hashtables;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An implementation of HashTable modeled on Abseil's SwissTable.
+ *
+ * Elements are stored in a flat array of slots, using open addressing.
+ * Alongside the slots is an array of control bytes, one per slot, which say
+ * whether the slot is EMPTY, DELETED (a tombstone), or full. A full slot's
+ * control byte holds H2, the low 7 bits of the element's (mixed) hash code;
+ * the remaining bits, H1, choose where probing starts.
+ *
+ * Probing works on groups of eight consecutive control bytes, read as a
+ * single long. Bitwise arithmetic on that long ("SIMD within a register")
+ * finds, all at once, the bytes in the group that match H2, or that are
+ * EMPTY. Only slots whose H2 matches have equals() called on them, which in
+ * practice is almost always just the one being looked for; and a lookup
+ * stops at the first group containing an EMPTY byte. Successive groups are
+ * visited by triangular (quadratic) probing, which reaches every group.
+ *
+ * The control array has one more byte than there are slots, a SENTINEL, and
+ * after it a copy of the first seven control bytes, so that a group starting
+ * near the end of the array can be read without wrapping around.
+ *
+ * Removing an element leaves a DELETED byte, so that probes for other
+ * elements continue past it. New elements reuse DELETED slots; and when
+ * elements and tombstones together fill 7/8 of the slots, the table is
+ * rebuilt at the same capacity, dropping the tombstones.
+ *
+ * Capacity and load factor behave exactly as in ChainingHashTable: the
+ * capacity is 2^n - 1 for some positive integer n, and when the load factor
+ * exceeds 0.75, the next add() triggers a resize by incrementing n (by one).
+ * As the capacity is one less than a power of two, it also serves as the
+ * mask for probe positions. Iterators are fail-fast, as in
+ * ChainingHashTable.
+ *
+ * Statistics work as in ChainingHashTable. The histogram counts elements by
+ * the number of groups probed before the one holding them, and a lookup
+ * examines only the elements it calls equals() on. Only rebuilds that change
+ * the capacity count as resizes, but the time spent dropping tombstones is
+ * included in the resize time.
+ */
+public class SwissHashTable<E> implements HashTable<E> {
+    private static final int GROUP_WIDTH = 8;
+
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte DELETED = (byte) 0xFE;
+    private static final byte SENTINEL = (byte) 0xFF;
+
+    private static final long LSBS = 0x0101010101010101L;
+    private static final long MSBS = 0x8080808080808080L;
+
+    private static final VarHandle GROUP =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private byte[] control;
+    private Object[] slots;
+    private int size;
+    private int capacity;
+    private int tombstones;
+    // count of structural modifications, checked by iterators
+    private int modCount;
+    private StatsRecorder stats;
+
+    /**
+     * Instantiate a new hash table. The initial capacity should be 7.
+     */
+    public SwissHashTable() {
+        this(7);
+    }
+
+    /**
+     * Instantiate a new hash table. The initial capacity should be
+     * at least sufficient to hold n elements, but must be one less
+     * than a power of two.
+     */
+    public SwissHashTable(int n) {
+        allocate((int) Math.pow(2, (int) (Math.log(n) / Math.log(2)) + 1) - 1);
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double loadFactor() {
+        return (double) size / capacity;
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (loadFactor() > 0.75) {
+            rebuild((capacity + 1) * 2 - 1);
+        }
+        int hash = hash(e);
+        int found = find(e, hash);
+        if (found >= 0) {
+            slots[found] = e;
+            return false;
+        }
+        if ((long) (size + tombstones + 1) * 8 > (long) capacity * 7 && tombstones > 0) {
+            rebuild(capacity);
+        }
+        insert(e, hash);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public E get(E e) {
+        int hash = hash(e);
+        int found = find(e, hash);
+        if (stats != null) {
+            stats.lookup(probes(e, hash), found >= 0);
+        }
+        return found >= 0 ? elementAt(found) : null;
+    }
+
+    @Override
+    public boolean remove(E e) {
+        int found = find(e, hash(e));
+        if (found < 0) {
+            return false;
+        }
+        setControl(found, DELETED);
+        slots[found] = null;
+        tombstones++;
+        size--;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean contains(E e) {
+        return get(e) != null;
+    }
+
+    @Override
+    public void setStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            stats = null;
+        } else if (stats == null) {
+            stats = new StatsRecorder();
+        }
+    }
+
+    @Override
+    public HashTableStats stats() {
+        long[] histogram = new long[1];
+        for (int i = 0; i < capacity; i++) {
+            if (control[i] >= 0) {
+                histogram = StatsRecorder.count(histogram, groupsBefore(i, hash(slots[i])));
+            }
+        }
+        StatsRecorder recorder = stats != null ? stats : new StatsRecorder();
+        return recorder.snapshot(size, capacity, histogram);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new SwissIterator();
+    }
+
+    /**
+     * Return the slot holding an element equal to e, or -1 if there is none.
+     */
+    private int find(Object e, int hash) {
+        long h2Bytes = LSBS * (hash & 0x7f);
+        int position = (hash >>> 7) & capacity;
+        // a full table has no EMPTY byte to stop on, but this many groups
+        // cover every slot
+        for (int probe = 0, step = 0; probe <= (capacity >>> 3); probe++) {
+            long group = (long) GROUP.get(control, position);
+            for (long match = matchByte(group, h2Bytes); match != 0; match &= match - 1) {
+                int index = (position + (Long.numberOfTrailingZeros(match) >>> 3)) & capacity;
+                if (e.equals(slots[index])) {
+                    return index;
+                }
+            }
+            if (matchEmpty(group) != 0) {
+                return -1;
+            }
+            step += GROUP_WIDTH;
+            position = (position + step) & capacity;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the number of elements find(e, hash) calls equals() on.
+     */
+    private int probes(Object e, int hash) {
+        long h2Bytes = LSBS * (hash & 0x7f);
+        int position = (hash >>> 7) & capacity;
+        int probes = 0;
+        for (int probe = 0, step = 0; probe <= (capacity >>> 3); probe++) {
+            long group = (long) GROUP.get(control, position);
+            for (long match = matchByte(group, h2Bytes); match != 0; match &= match - 1) {
+                probes++;
+                int index = (position + (Long.numberOfTrailingZeros(match) >>> 3)) & capacity;
+                if (e.equals(slots[index])) {
+                    return probes;
+                }
+            }
+            if (matchEmpty(group) != 0) {
+                return probes;
+            }
+            step += GROUP_WIDTH;
+            position = (position + step) & capacity;
+        }
+        return probes;
+    }
+
+    /**
+     * Return the number of groups a lookup probes before reaching the one
+     * that holds slot index, on the probe sequence for hash.
+     */
+    private int groupsBefore(int index, int hash) {
+        int position = (hash >>> 7) & capacity;
+        int probe = 0;
+        for (int step = 0; ((index - position) & capacity) >= GROUP_WIDTH; probe++) {
+            step += GROUP_WIDTH;
+            position = (position + step) & capacity;
+        }
+        return probe;
+    }
+
+    /**
+     * Place e (known not to be present) in the first EMPTY or DELETED slot
+     * on its probe sequence.
+     */
+    private void insert(Object e, int hash) {
+        int position = (hash >>> 7) & capacity;
+        for (int step = 0;; ) {
+            long group = (long) GROUP.get(control, position);
+            long free = matchEmptyOrDeleted(group);
+            if (free != 0) {
+                int index = (position + (Long.numberOfTrailingZeros(free) >>> 3)) & capacity;
+                if (control[index] == DELETED) {
+                    tombstones--;
+                }
+                setControl(index, (byte) (hash & 0x7f));
+                slots[index] = e;
+                return;
+            }
+            step += GROUP_WIDTH;
+            position = (position + step) & capacity;
+        }
+    }
+
+    /**
+     * Reinsert every element into fresh arrays of the given capacity, which
+     * drops all tombstones.
+     */
+    private void rebuild(int newCapacity) {
+        long start = stats != null ? System.nanoTime() : 0;
+        boolean resizing = newCapacity != capacity;
+        Object[] oldSlots = slots;
+        byte[] oldControl = control;
+        allocate(newCapacity);
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldControl[i] >= 0) {
+                insert(oldSlots[i], hash(oldSlots[i]));
+            }
+        }
+        modCount++;
+        if (stats != null) {
+            if (resizing) {
+                stats.resized();
+            }
+            stats.resizing(start);
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        // the extra slot, at the sentinel's position, is always null
+        slots = new Object[capacity + 1];
+        control = new byte[capacity + GROUP_WIDTH];
+        Arrays.fill(control, EMPTY);
+        control[capacity] = SENTINEL;
+        // clones of nonexistent slots (in tables smaller than a group)
+        for (int i = capacity; i < GROUP_WIDTH - 1; i++) {
+            control[capacity + 1 + i] = SENTINEL;
+        }
+        tombstones = 0;
+    }
+
+    /**
+     * Set the control byte for slot index, and its clone after the
+     * sentinel if it has one.
+     */
+    private void setControl(int index, byte value) {
+        control[index] = value;
+        if (index < GROUP_WIDTH - 1) {
+            control[capacity + 1 + index] = value;
+        }
+    }
+
+    /**
+     * Return a mask with the high bit set in each byte of group equal to the
+     * byte repeated in bytes. There may be false positives, but only in a
+     * byte following a true match.
+     */
+    private static long matchByte(long group, long bytes) {
+        long x = group ^ bytes;
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    // EMPTY is the only special byte with bit 1 clear
+    private static long matchEmpty(long group) {
+        return group & ~(group << 6) & MSBS;
+    }
+
+    // EMPTY and DELETED are the only special bytes with bit 0 clear
+    private static long matchEmptyOrDeleted(long group) {
+        return group & ~(group << 7) & MSBS;
+    }
+
+    private static int hash(Object e) {
+        int h = e.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementAt(int index) {
+        return (E) slots[index];
+    }
+
+    private class SwissIterator implements Iterator<E> {
+        private int currentIndex = 0;
+        private final int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // full slots have a control byte with the high bit clear
+            while (currentIndex < capacity && control[currentIndex] < 0) {
+                currentIndex++;
+            }
+            return currentIndex < capacity;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return elementAt(currentIndex++);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package hashtables;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * A bucket of a ChainingHashTable that has grown too long to scan linearly.
+ *
+ * Elements are grouped by hash code in a balanced search tree (a TreeMap), so
+ * elements whose hash codes differ are told apart in O(log n). Within a group
+ * of equal hash codes, elements of the group's first Comparable class are
+ * kept in a second TreeMap ordered by compareTo(); all the others (elements
+ * that are not Comparable, are of some other class, or compare as 0 to an
+ * element they are not equal to) are kept in a short list, which is searched
+ * with equals(). This "tie" list is what lets keys that are not mutually
+ * comparable live in the tree at all.
+ *
+ * compareTo() only ever places an element; a lookup that misses in the
+ * sorted tree still searches the tie list, and an element of a different
+ * class than the sorted ones is compared with equals() against all of them,
+ * so that elements equal across classes (an ArrayList and a LinkedList, say)
+ * are always found.
+ *
+ * So long as keys are Comparable or their hash codes differ, a lookup costs
+ * O(log n) rather than O(n), no matter how many keys collide on the bucket.
+ */
+class TreeBin<E> extends AbstractCollection<E> {
+    private final TreeMap<Integer, HashGroup<E>> tree = new TreeMap<>();
+    private int size;
+
+    /**
+     * Create a tree bin holding the (distinct) elements of chain.
+     */
+    TreeBin(Collection<E> chain) {
+        for (E element : chain) {
+            add(element);
+        }
+    }
+
+    /**
+     * Return the element of this bin that is equals() to e, or null if none.
+     */
+    E find(Object e) {
+        HashGroup<E> group = tree.get(e.hashCode());
+        return group != null ? group.find(e) : null;
+    }
+
+    /**
+     * Overwrite the element of this bin that is equals() to e, if any,
+     * returning true iff there was one.
+     */
+    boolean replace(E e) {
+        HashGroup<E> group = tree.get(e.hashCode());
+        return group != null && group.replace(e);
+    }
+
+    /**
+     * Add e, which must not already be present in this bin.
+     */
+    @Override
+    public boolean add(E e) {
+        tree.computeIfAbsent(e.hashCode(), h -> new HashGroup<>()).add(e);
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return find(o) != null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return removeAndGet(o) != null;
+    }
+
+    /**
+     * Remove the element of this bin that is equals() to e, returning it, or
+     * null if there is none.
+     */
+    E removeAndGet(Object e) {
+        int hash = e.hashCode();
+        HashGroup<E> group = tree.get(hash);
+        if (group == null) {
+            return null;
+        }
+        E removed = group.removeAndGet(e);
+        if (removed != null) {
+            if (group.isEmpty()) {
+                tree.remove(hash);
+            }
+            size--;
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final Iterator<HashGroup<E>> groups = tree.values().iterator();
+            private Iterator<E> ties;
+            private Iterator<E> current;
+
+            @Override
+            public boolean hasNext() {
+                while (current == null || !current.hasNext()) {
+                    if (ties != null) {
+                        current = ties;
+                        ties = null;
+                    } else if (groups.hasNext()) {
+                        HashGroup<E> group = groups.next();
+                        ties = group.ties.iterator();
+                        current = group.sorted.values().iterator();
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * The elements of a tree bin that share one hash code.
+     */
+    private static class HashGroup<E> {
+        // elements of sortedClass, by compareTo(); each maps to itself
+        private final TreeMap<E, E> sorted = new TreeMap<>();
+        private Class<?> sortedClass;
+        private final LinkedList<E> ties = new LinkedList<>();
+
+        E find(Object e) {
+            E found = findSorted(e);
+            if (found != null) {
+                return found;
+            }
+            for (E element : ties) {
+                if (element.equals(e)) {
+                    return element;
+                }
+            }
+            return null;
+        }
+
+        boolean replace(E e) {
+            E found = findSorted(e);
+            if (found != null) {
+                removeSorted(found);
+                add(e);
+                return true;
+            }
+            for (ListIterator<E> it = ties.listIterator(); it.hasNext();) {
+                if (it.next().equals(e)) {
+                    it.set(e);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(E e) {
+            if (e instanceof Comparable && (sortedClass == null || e.getClass() == sortedClass)) {
+                try {
+                    if (sorted.putIfAbsent(e, e) == null) {
+                        sortedClass = e.getClass();
+                        return;
+                    }
+                } catch (ClassCastException notMutuallyComparable) {
+                    // Comparable to some other type; fall through to the tie list
+                }
+            }
+            ties.add(e);
+        }
+
+        E removeAndGet(Object e) {
+            E found = findSorted(e);
+            if (found != null) {
+                removeSorted(found);
+                return found;
+            }
+            for (Iterator<E> it = ties.iterator(); it.hasNext();) {
+                E element = it.next();
+                if (element.equals(e)) {
+                    it.remove();
+                    return element;
+                }
+            }
+            return null;
+        }
+
+        boolean isEmpty() {
+            return sorted.isEmpty() && ties.isEmpty();
+        }
+
+        /**
+         * Return the sorted element equals() to e, or null if none: found by
+         * compareTo() if e is of the sorted class, else by scanning them all.
+         */
+        @SuppressWarnings("unchecked")
+        private E findSorted(Object e) {
+            if (e.getClass() == sortedClass) {
+                try {
+                    E found = sorted.get((E) e);
+                    return found != null && found.equals(e) ? found : null;
+                } catch (ClassCastException notMutuallyComparable) {
+                    return null;
+                }
+            }
+            for (E element : sorted.values()) {
+                if (element.equals(e)) {
+                    return element;
+                }
+            }
+            return null;
+        }
+
+        private void removeSorted(E element) {
+            sorted.remove(element);
+            if (sorted.isEmpty()) {
+                sortedClass = null;
+            }
+        }
+    }
+}
@@ -4,7 +4,10 @@
 
 package hashmaps;
 
+import java.util.Map;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * An interface specifying a sample key-value mapping.
@@ -68,4 +71,117 @@ public interface SimpleMap<K, V> {
      */
     public Set<K> keys();
 
+    /**
+     * Insert every key-value pair of entries into the map, as if by put().
+     * 
+     * @param entries the pairs to insert; their keys must be non-null
+     */
+    public default void putAll(Map<? extends K, ? extends V> entries) {
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * If the key is not in the map (or is mapped to null), associate it with
+     * the given value and return null; otherwise return the current value.
+     * 
+     * @param k the (non-null) key
+     * @param v the value to associate with the key if it is absent
+     * @return the current value associated with k, or null if there was none
+     */
+    public default V putIfAbsent(K k, V v) {
+        V current = get(k);
+        if (current == null) {
+            put(k, v);
+        }
+        return current;
+    }
+
+    /**
+     * If the key is not in the map (or is mapped to null), compute a value
+     * for it with mappingFunction and, unless that is null, insert it.
+     * 
+     * mappingFunction must not modify this map.
+     * 
+     * @param k               the (non-null) key
+     * @param mappingFunction computes a value from the key
+     * @return the current (existing or computed) value associated with k, or
+     *         null if there is none
+     */
+    public default V computeIfAbsent(K k, Function<? super K, ? extends V> mappingFunction) {
+        V current = get(k);
+        if (current == null) {
+            current = mappingFunction.apply(k);
+            if (current != null) {
+                put(k, current);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Compute a new value for the key from the key and its current value
+     * (null if it is absent). If the new value is null, remove the key;
+     * otherwise associate the key with it.
+     * 
+     * remappingFunction must not modify this map.
+     * 
+     * @param k                 the (non-null) key
+     * @param remappingFunction computes the new value from the key and the
+     *                          current value
+     * @return the new value associated with k, or null if there is none
+     */
+    public default V compute(K k, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        V current = get(k);
+        V updated = remappingFunction.apply(k, current);
+        if (updated != null) {
+            put(k, updated);
+        } else {
+            remove(k);
+        }
+        return updated;
+    }
+
+    /**
+     * If the key is not in the map (or is mapped to null), associate it with
+     * the given value. Otherwise, combine the current value with the given
+     * value using remappingFunction, and associate the key with the result,
+     * or remove the key if the result is null.
+     * 
+     * remappingFunction must not modify this map.
+     * 
+     * @param k                 the (non-null) key
+     * @param v                 the (non-null) value to merge in
+     * @param remappingFunction combines the current value and v
+     * @return the new value associated with k, or null if there is none
+     */
+    public default V merge(K k, V v, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        V current = get(k);
+        V updated = current == null ? v : remappingFunction.apply(current, v);
+        if (updated == null) {
+            remove(k);
+        } else {
+            put(k, updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Add delta to the count associated with the key, treating an absent (or
+     * null) count as zero, and return the new count.
+     * 
+     * This is for maps of counts, whose values are Longs: the count is
+     * stored as a Long whatever V is declared to be. The default is a merge()
+     * with Long::sum; implementations may update the count in place.
+     * 
+     * @param k     the (non-null) key
+     * @param delta the amount to add
+     * @return the new count associated with k
+     * @throws ClassCastException if the current value is not a Long
+     */
+    @SuppressWarnings("unchecked")
+    public default long increment(K k, long delta) {
+        return ((SimpleMap<K, Long>) this).merge(k, delta, Long::sum);
+    }
 }
@@ -9,11 +9,12 @@ package hashmaps;
  * 
  * The SimpleMapEntry associates a given key and value as a pair.
  * SimpleMapEntries are considered equal on the basis of their keys -- their
- * value is ignored.
+ * value is ignored. The value may therefore be updated in place, without
+ * moving the entry within a hash table.
  */
 public class SimpleMapEntry<K, V> {
     final K k;
-    final V v;
+    V v;
 
     @Override
     public String toString() {
@@ -4,6 +4,11 @@
 
 package hashtables;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * An interface specifying a hash table, that is, an array-based 
  * constant-time data structure to track the membership of 
@@ -83,4 +88,124 @@ public interface HashTable<E> extends Iterable<E> {
      * @return true iff the element e is stored in the hash table
      */
     boolean contains(E e);
+
+    /**
+     * Remove the element that is `equals()` to e from the hash table, and
+     * return it.
+     * 
+     * Unlike remove(), this returns the element that was stored, so that
+     * callers can find and remove an element in one call. Implementations
+     * should do so with a single lookup.
+     * 
+     * @param e the element
+     * @return the element removed from the table, or null if there was none
+     */
+    default E removeAndGet(E e) {
+        E existing = get(e);
+        if (existing != null) {
+            remove(e);
+        }
+        return existing;
+    }
+
+    /**
+     * Add the element e to the hash table, unless an element that is
+     * `equals()` to e is already present.
+     * 
+     * e must be non-null.
+     * 
+     * Unlike add(), this does not overwrite an existing element; it returns
+     * it, so that callers can find or insert an element in one call.
+     * Implementations should do so with a single lookup.
+     * 
+     * @param e the element
+     * @return the element already in the table that is `equals()` to e, or
+     *         null if there was none and e was inserted
+     */
+    default E addIfAbsent(E e) {
+        E existing = get(e);
+        if (existing == null) {
+            add(e);
+        }
+        return existing;
+    }
+
+    /**
+     * Add every element of elements to the hash table, as if by add(). Later
+     * elements overwrite earlier ones that are `equals()` to them.
+     * 
+     * @param elements the (non-null) elements
+     * @return true iff any element was newly inserted
+     */
+    default boolean addAll(Collection<? extends E> elements) {
+        return addAll(elements.iterator(), elements.size());
+    }
+
+    /**
+     * Add every element returned by elements to the hash table, as if by
+     * add(). Later elements overwrite earlier ones that are `equals()` to
+     * them.
+     * 
+     * Implementations may use expectedSize to size the table once, up front,
+     * rather than resizing it repeatedly; it need not be exact.
+     * 
+     * @param elements     an iterator over the (non-null) elements
+     * @param expectedSize about how many elements the iterator returns
+     * @return true iff any element was newly inserted
+     */
+    default boolean addAll(Iterator<? extends E> elements, int expectedSize) {
+        boolean added = false;
+        while (elements.hasNext()) {
+            added |= add(elements.next());
+        }
+        return added;
+    }
+
+    /**
+     * Turn the collection of operation statistics (lookups, probes and
+     * resizes) on or off. Statistics are off by default, and cost next to
+     * nothing while they are. Turning them off discards the counts; turning
+     * them on when they are already on keeps them.
+     * 
+     * The default does nothing, for implementations that do not collect
+     * statistics.
+     * 
+     * @param enabled whether to collect statistics
+     */
+    default void setStatsEnabled(boolean enabled) {
+    }
+
+    /**
+     * Return a snapshot of the statistics of the hash table: its chain (or
+     * probe) length histogram, and the operation counts collected since
+     * setStatsEnabled(true), which are zero if statistics are off.
+     * 
+     * The default, for implementations that do not collect statistics,
+     * reports only the size and capacity, with an empty histogram and no
+     * operation counts.
+     * 
+     * @return a snapshot of the statistics
+     */
+    default HashTableStats stats() {
+        return new HashTableStats(size(), capacity(), new long[0], 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Return a sequential Stream of the elements of the hash table.
+     * 
+     * @return a Stream of the elements
+     */
+    default Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Return a possibly parallel Stream of the elements of the hash table.
+     * How well it splits depends on the implementation's spliterator().
+     * 
+     * @return a possibly parallel Stream of the elements
+     */
+    default Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
 }
\ No newline at end of file
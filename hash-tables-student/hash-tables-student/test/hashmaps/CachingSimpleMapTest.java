@@ -0,0 +1,108 @@
+package hashmaps;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class CachingSimpleMapTest {
+
+    @Test
+    public void testSimpleOperations() throws Exception {
+        CachingSimpleMap<Integer, Integer> m = new CachingSimpleMap<>(10);
+        assertEquals(0, m.size());
+        m.put(1, 10);
+        m.put(2, 20);
+        assertEquals(Integer.valueOf(10), m.get(1));
+        assertEquals(Integer.valueOf(30), m.getOrDefault(3, 30));
+        m.put(1, 11);
+        assertEquals(Integer.valueOf(11), m.get(1));
+        assertEquals(2, m.size());
+        assertEquals(Integer.valueOf(20), m.remove(2));
+        assertEquals(null, m.remove(2));
+        assertEquals(1, m.size());
+        assertEquals(1, m.keys().size());
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        CachingSimpleMap<Integer, Integer> m = new CachingSimpleMap<>(100);
+        for (int i = 0; i < 10000; i++) {
+            m.put(i, i);
+            assertTrue(m.size() <= 100);
+        }
+        assertEquals(100, m.size());
+        assertEquals(100, m.weight());
+        assertEquals(9900, m.stats().evictionCount());
+    }
+
+    @Test
+    public void testWeigher() throws Exception {
+        CachingSimpleMap<Integer, String> m = new CachingSimpleMap<>(100, (k, v) -> v.length(), null);
+        for (int i = 0; i < 1000; i++) {
+            m.put(i, "0123456789");
+            assertTrue(m.weight() <= 100);
+        }
+        assertEquals(10, m.size());
+    }
+
+    @Test
+    public void testFrequentKeysSurviveScan() throws Exception {
+        CachingSimpleMap<Integer, Integer> m = new CachingSimpleMap<>(100);
+        // make keys 0..49 popular
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                if (m.get(i) == null) {
+                    m.put(i, i);
+                }
+            }
+        }
+        // a long scan of keys that are each used once
+        for (int i = 1000; i < 11000; i++) {
+            m.put(i, i);
+        }
+        int survivors = 0;
+        for (int i = 0; i < 50; i++) {
+            if (m.get(i) != null) {
+                survivors++;
+            }
+        }
+        assertTrue("only " + survivors + " popular keys survived", survivors >= 45);
+    }
+
+    @Test
+    public void testExpireAfterWrite() throws Exception {
+        AtomicLong now = new AtomicLong();
+        CachingSimpleMap<String, String> m = new CachingSimpleMap<>(10, (k, v) -> 1,
+                Duration.ofSeconds(1), now::get);
+        m.put("a", "A");
+        now.addAndGet(500_000_000L);
+        m.put("b", "B");
+        assertEquals("A", m.get("a"));
+        now.addAndGet(600_000_000L);
+        assertEquals(null, m.get("a"));
+        assertEquals("B", m.get("b"));
+        assertEquals(1, m.keys().size());
+        now.addAndGet(1_000_000_000L);
+        m.cleanUp();
+        assertEquals(0, m.size());
+        assertEquals(2, m.stats().evictionCount());
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        CachingSimpleMap<Integer, Integer> m = new CachingSimpleMap<>(10);
+        m.put(1, 1);
+        m.get(1);
+        m.get(1);
+        m.get(2);
+        CacheStats stats = m.stats();
+        assertEquals(2, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(3, stats.requestCount());
+        assertEquals(2.0 / 3, stats.hitRate(), 1e-9);
+        assertEquals(0, stats.evictionCount());
+    }
+}
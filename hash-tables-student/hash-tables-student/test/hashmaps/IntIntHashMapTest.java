@@ -0,0 +1,79 @@
+package hashmaps;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IntIntHashMapTest {
+
+    @Test
+    public void testEmpty() throws Exception {
+        IntIntHashMap m = new IntIntHashMap();
+        assertEquals(0, m.size());
+        assertEquals(0, m.get(1));
+        assertEquals(-1, m.getOrDefault(1, -1));
+        assertFalse(m.containsKey(1));
+        assertFalse(m.keys().hasNext());
+    }
+
+    @Test
+    public void testPutGetReplace() throws Exception {
+        IntIntHashMap m = new IntIntHashMap();
+        m.put(1, 10);
+        m.put(0, 0);
+        assertEquals(10, m.get(1));
+        assertTrue(m.containsKey(0));
+        assertEquals(0, m.getOrDefault(0, 20));
+        m.put(1, 20);
+        assertEquals(20, m.get(1));
+        assertEquals(2, m.size());
+        assertTrue(m.remove(1));
+        assertFalse(m.remove(1));
+        assertEquals(1, m.size());
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        IntIntHashMap m = new IntIntHashMap();
+        for (int i = 0; i < 100; i++) {
+            m.put(-i, i);
+        }
+        Set<Integer> keys = new HashSet<>();
+        PrimitiveIterator.OfInt it = m.keys();
+        while (it.hasNext()) {
+            keys.add(it.nextInt());
+        }
+        assertEquals(100, keys.size());
+        assertTrue(keys.contains(-99));
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        final int ACTIONS = 10000;
+        final int BOUND = 300;
+        Random random = new Random(0);
+        HashMap<Integer, Integer> hm = new HashMap<>();
+        IntIntHashMap m = new IntIntHashMap();
+
+        for (int i = 0; i < ACTIONS; i++) {
+            double d = random.nextDouble();
+            int k = random.nextInt(BOUND) - BOUND / 2;
+            if (d < 0.4) {
+                int v = random.nextInt();
+                m.put(k, v);
+                hm.put(k, v);
+            } else if (d < 0.7) {
+                assertEquals(hm.remove(k) != null, m.remove(k));
+            } else {
+                assertEquals((int) hm.getOrDefault(k, BOUND), m.getOrDefault(k, BOUND));
+            }
+            assertEquals(hm.size(), m.size());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package hashmaps;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedHashMapTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file() {
+        return folder.getRoot().toPath().resolve("map.bin");
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        try (MappedHashMap<String, Integer> m = MappedHashMap.open(file(), Codec.STRING, Codec.INTEGER)) {
+            assertEquals(0, m.size());
+            assertEquals(null, m.get("a"));
+            assertEquals(Integer.valueOf(5), m.getOrDefault("a", 5));
+            assertTrue(m.keys().isEmpty());
+        }
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        try (MappedHashMap<String, Integer> m = MappedHashMap.open(file(), Codec.STRING, Codec.INTEGER)) {
+            m.put("one", 1);
+            m.put("two", 2);
+            m.put("nothing", null);
+            assertEquals(3, m.size());
+            assertEquals(Integer.valueOf(1), m.get("one"));
+            assertEquals(null, m.getOrDefault("nothing", 7));
+            m.put("one", 11);
+            assertEquals(Integer.valueOf(11), m.get("one"));
+            assertEquals(3, m.size());
+            assertEquals(Integer.valueOf(2), m.remove("two"));
+            assertEquals(null, m.remove("two"));
+            assertEquals(2, m.size());
+            assertEquals(ByteBuffer.wrap(Codec.INTEGER.encode(11)), m.getBuffer("one"));
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        try (MappedHashMap<String, String> m = MappedHashMap.open(file(), Codec.STRING, Codec.STRING)) {
+            for (int i = 0; i < 5000; i++) {
+                m.put("key" + i, "value" + i);
+            }
+            m.remove("key0");
+        }
+        try (MappedHashMap<String, String> m = MappedHashMap.open(file(), Codec.STRING, Codec.STRING)) {
+            assertEquals(4999, m.size());
+            assertEquals(null, m.get("key0"));
+            assertEquals("value4999", m.get("key4999"));
+            assertEquals(4999, m.keys().size());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAMapFile() throws Exception {
+        Files.write(file(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        MappedHashMap.open(file(), Codec.BYTES, Codec.BYTES);
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        Random random = new Random(0);
+        HashMap<Integer, Long> hm = new HashMap<>();
+        try (MappedHashMap<Integer, Long> m = MappedHashMap.open(file(), Codec.INTEGER, Codec.LONG)) {
+            for (int i = 0; i < 20000; i++) {
+                int k = random.nextInt(3000);
+                double d = random.nextDouble();
+                if (d < 0.5) {
+                    long v = random.nextLong();
+                    m.put(k, v);
+                    hm.put(k, v);
+                } else if (d < 0.7) {
+                    assertEquals(hm.remove(k), m.remove(k));
+                } else {
+                    assertEquals(hm.get(k), m.get(k));
+                }
+                assertEquals(hm.size(), m.size());
+            }
+            assertEquals(hm.keySet(), m.keys());
+        }
+    }
+
+    @Test
+    public void testGrowthStopsAtTheMappingLimit() throws Exception {
+        assertEquals(2 * 4096, MappedHashMap.grownSize(4100, 4096));
+        assertEquals(1L << 20, MappedHashMap.grownSize(1L << 20, 4096));
+        // doubling past 2GB is capped, so files between 1GB and 2GB can grow
+        long gigabyte = 1L << 30;
+        assertEquals(Integer.MAX_VALUE, MappedHashMap.grownSize(gigabyte + 1, gigabyte + 1));
+        assertEquals(Integer.MAX_VALUE, MappedHashMap.grownSize(Integer.MAX_VALUE, 1536L << 20));
+        // only an end beyond the limit itself is too big
+        assertTrue(MappedHashMap.grownSize(Integer.MAX_VALUE + 1L, gigabyte) > Integer.MAX_VALUE);
+    }
+}
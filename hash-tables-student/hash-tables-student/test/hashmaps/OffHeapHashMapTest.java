@@ -0,0 +1,168 @@
+package hashmaps;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OffHeapHashMapTest {
+    @Test
+    public void testEmpty() throws Exception {
+        try (OffHeapHashMap<String, Integer> m = new OffHeapHashMap<>(Codec.STRING, Codec.INTEGER)) {
+            assertEquals(0, m.size());
+            assertEquals(null, m.get("a"));
+            assertEquals(Integer.valueOf(5), m.getOrDefault("a", 5));
+            assertTrue(m.keys().isEmpty());
+            assertEquals(0, m.allocatedBytes());
+        }
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        try (OffHeapHashMap<String, Integer> m = new OffHeapHashMap<>(Codec.STRING, Codec.INTEGER)) {
+            m.put("one", 1);
+            m.put("two", 2);
+            m.put("nothing", null);
+            assertEquals(3, m.size());
+            assertEquals(Integer.valueOf(1), m.get("one"));
+            assertEquals(null, m.getOrDefault("nothing", 7));
+            m.put("one", 11);
+            assertEquals(Integer.valueOf(11), m.get("one"));
+            assertEquals(3, m.size());
+            assertEquals(Integer.valueOf(2), m.remove("two"));
+            assertEquals(null, m.remove("two"));
+            assertEquals(2, m.size());
+            assertEquals(new HashSet<>(Arrays.asList("one", "nothing")), m.keys());
+        }
+    }
+
+    @Test
+    public void testValuesChangingSizeClass() throws Exception {
+        try (OffHeapHashMap<String, byte[]> m = new OffHeapHashMap<>(Codec.STRING, Codec.BYTES, 1024)) {
+            for (int length : new int[] { 1, 100, 3, 500, 0, 200 }) {
+                byte[] value = new byte[length];
+                Arrays.fill(value, (byte) length);
+                m.put("k", value);
+                assertArrayEquals(value, m.get("k"));
+            }
+            assertEquals(1, m.size());
+            assertEquals(256, m.usedBytes());
+        }
+    }
+
+    @Test
+    public void testLargeRecordsGetTheirOwnSlab() throws Exception {
+        try (OffHeapHashMap<String, byte[]> m = new OffHeapHashMap<>(Codec.STRING, Codec.BYTES, 1024)) {
+            byte[] big = new byte[5000];
+            new Random(1).nextBytes(big);
+            m.put("big", big);
+            m.put("small", new byte[] { 1 });
+            assertArrayEquals(big, m.get("big"));
+            long allocated = m.allocatedBytes();
+            assertTrue(allocated >= 5000);
+            m.remove("big");
+            assertEquals(null, m.get("big"));
+            assertTrue(m.allocatedBytes() < allocated - 5000 + 1);
+            m.put("big2", big);
+            assertArrayEquals(big, m.get("big2"));
+            m.compact();
+            assertArrayEquals(big, m.get("big2"));
+            assertArrayEquals(new byte[] { 1 }, m.get("small"));
+        }
+    }
+
+    @Test
+    public void testFreedBlocksAreReused() throws Exception {
+        try (OffHeapHashMap<Integer, Integer> m = new OffHeapHashMap<>(Codec.INTEGER, Codec.INTEGER, 4096)) {
+            for (int i = 0; i < 1000; i++) {
+                m.put(i, i);
+            }
+            long allocated = m.allocatedBytes();
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 1000; i++) {
+                    m.remove(i);
+                }
+                for (int i = 0; i < 1000; i++) {
+                    m.put(i + round, i);
+                }
+            }
+            assertEquals(allocated, m.allocatedBytes());
+        }
+    }
+
+    @Test
+    public void testCompactReleasesFreeBlocks() throws Exception {
+        try (OffHeapHashMap<Integer, String> m = new OffHeapHashMap<>(Codec.INTEGER, Codec.STRING, 4096)) {
+            for (int i = 0; i < 10000; i++) {
+                m.put(i, "value" + i);
+            }
+            for (int i = 0; i < 10000; i++) {
+                if (i % 10 != 0) {
+                    m.remove(i);
+                }
+            }
+            long before = m.allocatedBytes();
+            m.compact();
+            assertTrue(m.allocatedBytes() * 5 < before);
+            assertEquals(1000, m.size());
+            for (int i = 0; i < 10000; i++) {
+                assertEquals(i % 10 == 0 ? "value" + i : null, m.get(i));
+            }
+            m.put(3, "three");
+            assertEquals("three", m.get(3));
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        OffHeapHashMap<String, String> m = new OffHeapHashMap<>(Codec.STRING, Codec.STRING);
+        m.put("a", "b");
+        m.close();
+        assertEquals(0, m.size());
+        assertEquals(0, m.allocatedBytes());
+        assertEquals(null, m.get("a"));
+        m.put("a", "c");
+        assertEquals("c", m.get("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadSlabSize() throws Exception {
+        new OffHeapHashMap<>(Codec.STRING, Codec.STRING, 1000);
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() throws Exception {
+        Random random = new Random(42);
+        Map<String, String> expected = new HashMap<>();
+        try (OffHeapHashMap<String, String> m = new OffHeapHashMap<>(Codec.STRING, Codec.STRING, 1024)) {
+            for (int i = 0; i < 50000; i++) {
+                String key = "k" + random.nextInt(2000);
+                int op = random.nextInt(10);
+                if (op < 5) {
+                    char[] value = new char[random.nextInt(300)];
+                    Arrays.fill(value, (char) ('a' + random.nextInt(26)));
+                    String v = random.nextInt(20) == 0 ? null : new String(value);
+                    m.put(key, v);
+                    expected.put(key, v);
+                } else if (op < 8) {
+                    assertEquals(expected.remove(key), m.remove(key));
+                } else {
+                    assertEquals(expected.get(key), m.get(key));
+                }
+                if (i % 10000 == 0) {
+                    m.compact();
+                }
+            }
+            assertEquals(expected.size(), m.size());
+            assertEquals(expected.keySet(), m.keys());
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                assertEquals(entry.getValue(), m.getOrDefault(entry.getKey(), "absent"));
+            }
+        }
+    }
+}
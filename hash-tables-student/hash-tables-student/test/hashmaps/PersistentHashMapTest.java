@@ -0,0 +1,212 @@
+package hashmaps;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class PersistentHashMapTest {
+
+    /**
+     * A key whose hash code is shared with every key of the same id / 10.
+     */
+    private static class Colliding {
+        final int id;
+
+        Colliding(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id / 10;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Colliding && ((Colliding) obj).id == id;
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        PersistentHashMap<String, Integer> m = new PersistentHashMap<>();
+        assertEquals(0, m.size());
+        assertNull(m.get("a"));
+        assertNull(m.remove("a"));
+        assertTrue(m.keys().isEmpty());
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        PersistentHashMap<String, Integer> m = new PersistentHashMap<>();
+        m.put("a", 1);
+        m.put("b", 2);
+        m.put("a", 3);
+        assertEquals(2, m.size());
+        assertEquals(Integer.valueOf(3), m.get("a"));
+        assertEquals(Integer.valueOf(-1), m.getOrDefault("c", -1));
+        assertEquals(Integer.valueOf(3), m.remove("a"));
+        assertNull(m.get("a"));
+        assertEquals(1, m.size());
+    }
+
+    @Test
+    public void testNullValue() throws Exception {
+        PersistentHashMap<Integer, Integer> m = new PersistentHashMap<>();
+        m.put(1, null);
+        assertEquals(1, m.size());
+        assertNull(m.getOrDefault(1, 20));
+        assertTrue(m.keys().contains(1));
+        assertNull(m.remove(1));
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public void testRandomActions() throws Exception {
+        PersistentHashMap<Integer, Integer> m = new PersistentHashMap<>();
+        Map<Integer, Integer> h = new HashMap<>();
+        Random r = new Random(14);
+        for (int i = 0; i < 200000; i++) {
+            int k = r.nextInt(20000) - 10000;
+            if (r.nextInt(3) > 0) {
+                h.put(k, i);
+                m.put(k, i);
+            } else {
+                assertEquals(h.remove(k), m.remove(k));
+            }
+            assertEquals(h.size(), m.size());
+        }
+        assertEquals(h.keySet(), m.keys());
+        for (Integer k : h.keySet()) {
+            assertEquals(h.get(k), m.get(k));
+        }
+    }
+
+    @Test
+    public void testCollidingKeys() throws Exception {
+        PersistentHashMap<Colliding, Integer> m = new PersistentHashMap<>();
+        Map<Colliding, Integer> h = new HashMap<>();
+        Random r = new Random(15);
+        for (int i = 0; i < 20000; i++) {
+            Colliding k = new Colliding(r.nextInt(300));
+            if (r.nextBoolean()) {
+                h.put(k, i);
+                m.put(k, i);
+            } else {
+                assertEquals(h.remove(k), m.remove(k));
+            }
+        }
+        assertEquals(h.size(), m.size());
+        for (int id = 0; id < 300; id++) {
+            Colliding k = new Colliding(id);
+            assertEquals(h.get(k), m.get(k));
+        }
+    }
+
+    @Test
+    public void testSnapshotIsolation() throws Exception {
+        PersistentHashMap<Integer, String> m = new PersistentHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            m.put(i, "v" + i);
+        }
+        PersistentHashMap<Integer, String> snapshot = m.snapshot();
+        for (int i = 0; i < 1000; i += 2) {
+            m.remove(i);
+        }
+        m.put(5, "changed");
+        m.put(5000, "new");
+
+        assertEquals(1000, snapshot.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("v" + i, snapshot.get(i));
+        }
+        assertNull(snapshot.get(5000));
+
+        // updating the snapshot leaves the original alone
+        snapshot.put(1, "snap");
+        assertEquals("v1", m.get(1));
+        assertEquals(501, m.size());
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        PersistentHashMap<Integer, Integer> batched = new PersistentHashMap<>();
+        PersistentHashMap<Integer, Integer> plain = new PersistentHashMap<>();
+        PersistentHashMap<Integer, Integer> before = batched.snapshot();
+        batched.batch(map -> {
+            for (int i = 0; i < 50000; i++) {
+                map.put(i * 7, i);
+            }
+            for (int i = 0; i < 50000; i += 3) {
+                map.remove(i * 7);
+            }
+        });
+        for (int i = 0; i < 50000; i++) {
+            plain.put(i * 7, i);
+        }
+        for (int i = 0; i < 50000; i += 3) {
+            plain.remove(i * 7);
+        }
+        assertEquals(plain.size(), batched.size());
+        assertEquals(plain.keys(), batched.keys());
+        for (Integer k : plain.keys()) {
+            assertEquals(plain.get(k), batched.get(k));
+        }
+        assertEquals(0, before.size());
+    }
+
+    @Test
+    public void testSnapshotDuringBatch() throws Exception {
+        PersistentHashMap<Integer, Integer> m = new PersistentHashMap<>();
+        AtomicReference<PersistentHashMap<Integer, Integer>> middle = new AtomicReference<>();
+        m.batch(map -> {
+            for (int i = 0; i < 1000; i++) {
+                map.put(i, i);
+            }
+            middle.set(map.snapshot());
+            for (int i = 0; i < 1000; i++) {
+                map.put(i, -i);
+                map.put(i + 1000, i);
+            }
+        });
+        PersistentHashMap<Integer, Integer> snapshot = middle.get();
+        assertEquals(1000, snapshot.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), snapshot.get(i));
+            assertEquals(Integer.valueOf(-i), m.get(i));
+        }
+        assertEquals(2000, m.size());
+    }
+
+    @Test(timeout = 20000)
+    public void testReadersSeeConsistentSnapshots() throws Exception {
+        // the writer keeps keys 0..size-1 present, each mapped to itself
+        PersistentHashMap<Integer, Integer> m = new PersistentHashMap<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                for (int round = 0; round < 200; round++) {
+                    PersistentHashMap<Integer, Integer> snapshot = m.snapshot();
+                    int size = snapshot.size();
+                    for (int k = 0; k < size; k++) {
+                        assertEquals(Integer.valueOf(k), snapshot.get(k));
+                    }
+                    assertNull(snapshot.get(size));
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        for (int k = 0; k < 20000; k++) {
+            m.put(k, k);
+        }
+        reader.join();
+        assertNull(failure.get());
+    }
+}
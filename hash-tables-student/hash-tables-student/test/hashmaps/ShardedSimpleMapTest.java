@@ -0,0 +1,254 @@
+package hashmaps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ShardedSimpleMapTest {
+
+    private static ShardedSimpleMap<Integer, Integer> withShards(int n) {
+        ShardedSimpleMap<Integer, Integer> m = new ShardedSimpleMap<>();
+        for (int i = 0; i < n; i++) {
+            m.addShard("shard" + i, new SimpleHashMap<>());
+        }
+        return m;
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoShards() throws Exception {
+        ShardedSimpleMap<Integer, Integer> m = new ShardedSimpleMap<>();
+        assertNull(m.get(1));
+        m.put(1, 1);
+    }
+
+    @Test
+    public void testBasicOperations() throws Exception {
+        ShardedSimpleMap<Integer, Integer> m = withShards(4);
+        for (int i = 0; i < 1000; i++) {
+            m.put(i, i * i);
+        }
+        assertEquals(1000, m.size());
+        assertEquals(Integer.valueOf(49), m.get(7));
+        assertEquals(Integer.valueOf(-1), m.getOrDefault(1000, -1));
+        assertEquals(Integer.valueOf(49), m.remove(7));
+        assertNull(m.remove(7));
+        assertEquals(999, m.size());
+        assertEquals(999, m.keys().size());
+    }
+
+    @Test
+    public void testKeysAreSpread() throws Exception {
+        ShardedSimpleMap<Integer, Integer> m = new ShardedSimpleMap<>();
+        List<SimpleMap<Integer, Integer>> shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            SimpleMap<Integer, Integer> shard = new SimpleHashMap<>();
+            shards.add(shard);
+            m.addShard("shard" + i, shard);
+        }
+        for (int i = 0; i < 40000; i++) {
+            m.put(i, i);
+        }
+        for (SimpleMap<Integer, Integer> shard : shards) {
+            assertTrue("shard size " + shard.size(), shard.size() > 5000 && shard.size() < 15000);
+        }
+    }
+
+    @Test
+    public void testAddShardMovesOnlyItsKeys() throws Exception {
+        ShardedSimpleMap<Integer, Integer> m = withShards(4);
+        for (int i = 0; i < 20000; i++) {
+            m.put(i, i);
+        }
+        SimpleHashMap<Integer, Integer> added = new SimpleHashMap<>();
+        m.addShard("shard4", added);
+        assertTrue(m.isMigrating());
+
+        // everything stays visible while keys move
+        for (int i = 0; i < 20000; i++) {
+            assertEquals(Integer.valueOf(i), m.get(i));
+        }
+        assertEquals(20000, m.size());
+
+        while (!m.migrateStep(100)) {
+        }
+        assertEquals(20000, m.size());
+        // the new shard takes roughly a fifth of the keys
+        assertTrue("moved " + added.size(), added.size() > 2000 && added.size() < 6000);
+        for (int i = 0; i < 20000; i++) {
+            assertEquals(Integer.valueOf(i), m.get(i));
+        }
+    }
+
+    @Test
+    public void testUpdatesDuringMigration() throws Exception {
+        ShardedSimpleMap<Integer, Integer> m = withShards(3);
+        Map<Integer, Integer> h = new HashMap<>();
+        Random r = new Random(15);
+        for (int i = 0; i < 5000; i++) {
+            m.put(i, i);
+            h.put(i, i);
+        }
+        m.addShard("extra", new SimpleHashMap<>());
+        for (int i = 0; i < 3000; i++) {
+            int k = r.nextInt(6000);
+            if (r.nextBoolean()) {
+                m.put(k, -i);
+                h.put(k, -i);
+            } else {
+                assertEquals(h.remove(k), m.remove(k));
+            }
+            assertEquals(h.size(), m.size());
+        }
+        m.removeShard("shard0");
+        for (int i = 0; i < 3000; i++) {
+            int k = r.nextInt(6000);
+            if (r.nextBoolean()) {
+                m.put(k, i);
+                h.put(k, i);
+            } else {
+                assertEquals(h.remove(k), m.remove(k));
+            }
+            assertEquals(h.get(k), m.get(k));
+        }
+        while (!m.migrateStep(1000)) {
+        }
+        assertEquals(h.size(), m.size());
+        assertEquals(h.keySet(), m.keys());
+        for (Integer k : h.keySet()) {
+            assertEquals(h.get(k), m.get(k));
+        }
+    }
+
+    @Test
+    public void testRemoveShardEmptiesIt() throws Exception {
+        ShardedSimpleMap<Integer, Integer> m = withShards(3);
+        for (int i = 0; i < 3000; i++) {
+            m.put(i, i);
+        }
+        SimpleMap<Integer, Integer> removed = m.removeShard("shard1");
+        while (!m.migrateStep(100)) {
+        }
+        assertEquals(0, removed.size());
+        assertEquals(3000, m.size());
+        assertFalse(m.shardNames().contains("shard1"));
+    }
+
+    @Test
+    public void testPutAllAndGetAll() throws Exception {
+        ShardedSimpleMap<Integer, Integer> m = withShards(8);
+        Map<Integer, Integer> entries = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            entries.put(i, i + 1);
+        }
+        m.putAll(entries);
+        assertEquals(10000, m.size());
+
+        m.addShard("late", new SimpleHashMap<>());
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 12000; i += 3) {
+            keys.add(i);
+        }
+        Map<Integer, Integer> found = m.getAll(keys);
+        for (Integer k : keys) {
+            assertEquals(k < 10000 ? Integer.valueOf(k + 1) : null, found.get(k));
+        }
+        assertEquals(3334, found.size());
+    }
+
+    /**
+     * A shard that counts how often its keys are listed.
+     */
+    private static class CountingShard extends SimpleHashMap<Integer, Integer> {
+        int listings;
+
+        @Override
+        public Set<Integer> keys() {
+            listings++;
+            return super.keys();
+        }
+    }
+
+    @Test
+    public void testChangingShardsListsKeysLazily() throws Exception {
+        ShardedSimpleMap<Integer, Integer> m = new ShardedSimpleMap<>();
+        List<CountingShard> shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            CountingShard shard = new CountingShard();
+            shards.add(shard);
+            m.addShard("shard" + i, shard);
+        }
+        for (int i = 0; i < 10000; i++) {
+            m.put(i, i);
+        }
+        assertFalse(m.isMigrating());
+        for (CountingShard shard : shards) {
+            shard.listings = 0;
+        }
+        m.addShard("shard4", new SimpleHashMap<>());
+        assertTrue(m.isMigrating());
+        for (CountingShard shard : shards) {
+            assertEquals(0, shard.listings);
+        }
+        // one shard at a time, as the migration reaches it
+        assertFalse(m.migrateStep(10));
+        assertEquals(1, shards.get(0).listings + shards.get(1).listings + shards.get(2).listings
+                + shards.get(3).listings);
+        while (!m.migrateStep(100)) {
+        }
+        for (CountingShard shard : shards) {
+            assertEquals(1, shard.listings);
+        }
+    }
+
+    @Test
+    public void testOverlappingShardChanges() throws Exception {
+        ShardedSimpleMap<Integer, Integer> m = withShards(3);
+        Map<Integer, Integer> h = new HashMap<>();
+        Random r = new Random(151);
+        for (int i = 0; i < 4000; i++) {
+            m.put(i, i);
+            h.put(i, i);
+        }
+        String[] changes = { "+a", "+b", "-shard1", "-a", "+c", "-shard0", "+d" };
+        for (String change : changes) {
+            // start each change while the previous ones are still migrating
+            if (change.startsWith("+")) {
+                m.addShard(change.substring(1), new SimpleHashMap<>());
+            } else {
+                m.removeShard(change.substring(1));
+            }
+            assertTrue(m.isMigrating());
+            for (int i = 0; i < 100; i++) {
+                int k = r.nextInt(5000);
+                int op = r.nextInt(3);
+                if (op == 0) {
+                    m.put(k, -i);
+                    h.put(k, -i);
+                } else if (op == 1) {
+                    assertEquals(h.remove(k), m.remove(k));
+                } else {
+                    assertEquals(h.get(k), m.get(k));
+                }
+            }
+            assertEquals(h.size(), m.size());
+            assertTrue(m.isMigrating());
+        }
+        for (Integer k : h.keySet()) {
+            assertEquals(h.get(k), m.get(k));
+        }
+        while (!m.migrateStep(500)) {
+        }
+        assertEquals(h.size(), m.size());
+        assertEquals(h.keySet(), m.keys());
+        for (int k = 0; k < 5000; k++) {
+            assertEquals(h.get(k), m.get(k));
+        }
+    }
+}
@@ -6,9 +6,18 @@ package hashmaps;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.zip.CRC32;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -93,6 +102,179 @@ public class SimpleHashMapTest {
         assertEquals(0, m.size());
     }
 
+    @Test
+    public void testNullValue() throws Exception {
+        SimpleMap<Integer, Integer> m = new SimpleHashMap<>();
+        m.put(1, null);
+        assertEquals(1, m.size());
+        assertEquals(null, m.get(1));
+        assertEquals(null, m.getOrDefault(1, 20));
+        assertEquals(null, m.remove(1));
+        assertEquals(0, m.size());
+    }
+
+    @Test(timeout = 10000)
+    public void testManyKeys() throws Exception {
+        // each lookup is a hash probe, so this finishes quickly
+        final int KEYS = 200000;
+        SimpleMap<Integer, Integer> m = new SimpleHashMap<>();
+        for (int k = 0; k < KEYS; k++) {
+            m.put(k, -k);
+        }
+        for (int k = 0; k < KEYS; k++) {
+            m.put(k, k);
+        }
+        assertEquals(KEYS, m.size());
+        for (int k = 0; k < KEYS; k++) {
+            assertEquals(Integer.valueOf(k), m.get(k));
+        }
+        for (int k = 0; k < KEYS; k += 2) {
+            assertEquals(Integer.valueOf(k), m.remove(k));
+        }
+        assertEquals(KEYS / 2, m.size());
+        assertEquals(Integer.valueOf(-1), m.getOrDefault(KEYS, -1));
+    }
+
+    @Test
+    public void testPutIfAbsent() throws Exception {
+        SimpleMap<String, Integer> m = new SimpleHashMap<>();
+        assertNull(m.putIfAbsent("a", 1));
+        assertEquals(Integer.valueOf(1), m.putIfAbsent("a", 2));
+        assertEquals(Integer.valueOf(1), m.get("a"));
+        m.put("b", null);
+        assertNull(m.putIfAbsent("b", 3));
+        assertEquals(Integer.valueOf(3), m.get("b"));
+        assertEquals(2, m.size());
+    }
+
+    @Test
+    public void testComputeIfAbsent() throws Exception {
+        SimpleMap<String, Integer> m = new SimpleHashMap<>();
+        assertEquals(Integer.valueOf(3), m.computeIfAbsent("abc", String::length));
+        assertEquals(Integer.valueOf(3), m.computeIfAbsent("abc", k -> 99));
+        assertNull(m.computeIfAbsent("none", k -> null));
+        assertEquals(1, m.size());
+        // as in HashMap, a mapping to null is not removed when the function returns null
+        m.put("null", null);
+        assertNull(m.computeIfAbsent("null", k -> null));
+        assertTrue(m.keys().contains("null"));
+        m.remove("null");
+        try {
+            m.computeIfAbsent("boom", k -> {
+                throw new IllegalStateException();
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        // no placeholder is left behind
+        assertEquals(1, m.size());
+        assertFalse(m.keys().contains("boom"));
+    }
+
+    @Test
+    public void testCompute() throws Exception {
+        SimpleMap<String, Integer> m = new SimpleHashMap<>();
+        assertEquals(Integer.valueOf(1), m.compute("a", (k, v) -> v == null ? 1 : v + 1));
+        assertEquals(Integer.valueOf(2), m.compute("a", (k, v) -> v == null ? 1 : v + 1));
+        assertEquals(Integer.valueOf(2), m.get("a"));
+        assertNull(m.compute("a", (k, v) -> null));
+        assertEquals(0, m.size());
+        assertNull(m.compute("b", (k, v) -> null));
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        SimpleMap<String, String> m = new SimpleHashMap<>();
+        assertEquals("x", m.merge("k", "x", String::concat));
+        assertEquals("xy", m.merge("k", "y", String::concat));
+        assertEquals("xy", m.get("k"));
+        assertNull(m.merge("k", "z", (a, b) -> null));
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public void testIncrement() throws Exception {
+        SimpleMap<String, Long> counts = new SimpleHashMap<>();
+        String[] words = "the cat and the hat and the bat".split(" ");
+        for (String word : words) {
+            counts.increment(word, 1);
+        }
+        assertEquals(Long.valueOf(3), counts.get("the"));
+        assertEquals(Long.valueOf(2), counts.get("and"));
+        assertEquals(Long.valueOf(1), counts.get("bat"));
+        assertEquals(-7, counts.increment("cat", -8));
+        counts.put("null", null);
+        assertEquals(4, counts.increment("null", 4));
+        assertEquals(6, counts.size());
+
+        // the default, via merge(), agrees with SimpleHashMap's in-place update
+        SimpleMap<String, Long> viaMerge = new PersistentHashMap<>();
+        for (String word : words) {
+            viaMerge.increment(word, 1);
+        }
+        assertEquals(Long.valueOf(3), viaMerge.get("the"));
+        assertEquals(-7, viaMerge.increment("cat", -8));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testIncrementRejectsOtherCounts() throws Exception {
+        SimpleMap<String, Integer> counts = new SimpleHashMap<>();
+        counts.put("the", 1);
+        counts.increment("the", 1);
+    }
+
+    @Test
+    public void testUpdatesMatchHashMap() throws Exception {
+        // the single-probe overrides agree with java.util.HashMap
+        SimpleMap<Integer, Integer> m = new SimpleHashMap<>();
+        HashMap<Integer, Integer> h = new HashMap<>();
+        Random r = new Random(13);
+        for (int i = 0; i < 50000; i++) {
+            int k = r.nextInt(500);
+            Integer v = r.nextInt(10);
+            BiFunction<Integer, Integer, Integer> sum = (a, b) -> a + b > 40 ? null : a + b;
+            BiFunction<Integer, Integer, Integer> twice = (key, old) -> old == null ? v
+                    : old % 7 == 0 ? null : Integer.valueOf(old * 2);
+            Function<Integer, Integer> orNull = key -> v == 0 ? null : v;
+            switch (r.nextInt(4)) {
+            case 0:
+                assertEquals(h.putIfAbsent(k, v), m.putIfAbsent(k, v));
+                break;
+            case 1:
+                assertEquals(h.merge(k, v, sum), m.merge(k, v, sum));
+                break;
+            case 2:
+                assertEquals(h.compute(k, twice), m.compute(k, twice));
+                break;
+            default:
+                assertEquals(h.computeIfAbsent(k, orNull), m.computeIfAbsent(k, orNull));
+            }
+            assertEquals(h.size(), m.size());
+        }
+        for (Integer k : h.keySet()) {
+            assertEquals(h.get(k), m.get(k));
+        }
+    }
+
+    @Test
+    public void testPutAll() throws Exception {
+        SimpleMap<Integer, String> m = new SimpleHashMap<>();
+        m.put(1, "old");
+        m.put(-1, "kept");
+        HashMap<Integer, String> entries = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            entries.put(i, "v" + i);
+        }
+        m.putAll(entries);
+        assertEquals(50001, m.size());
+        assertEquals("v1", m.get(1));
+        assertEquals("kept", m.get(-1));
+        for (int i = 0; i < 50000; i++) {
+            assertEquals("v" + i, m.get(i));
+        }
+    }
+
     @Test
     public void testManyActions() throws Exception {
         final int ACTIONS = 1000;
@@ -175,4 +357,150 @@ public class SimpleHashMapTest {
         }
     }
 
+    private static <K, V> byte[] snapshot(SimpleHashMap<K, V> m, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        m.writeTo(Channels.newChannel(out), keyCodec, valueCodec);
+        return out.toByteArray();
+    }
+
+    private static <K, V> SimpleHashMap<K, V> restore(byte[] bytes, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        return SimpleHashMap.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)), keyCodec, valueCodec);
+    }
+
+    @Test
+    public void testSnapshotEmpty() throws Exception {
+        SimpleHashMap<String, Integer> m = new SimpleHashMap<>();
+        byte[] bytes = snapshot(m, Codec.STRING, Codec.INTEGER);
+        assertEquals(16, bytes.length);
+        assertEquals(0, restore(bytes, Codec.STRING, Codec.INTEGER).size());
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws Exception {
+        SimpleHashMap<String, Integer> m = new SimpleHashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            m.put("key" + i, i);
+        }
+        m.put("nothing", null);
+        SimpleHashMap<String, Integer> copy = restore(snapshot(m, Codec.STRING, Codec.INTEGER),
+                Codec.STRING, Codec.INTEGER);
+        assertEquals(m.size(), copy.size());
+        assertEquals(m.keys(), copy.keys());
+        for (int i = 0; i < 50000; i++) {
+            assertEquals(Integer.valueOf(i), copy.get("key" + i));
+        }
+        assertTrue(copy.keys().contains("nothing"));
+        assertNull(copy.get("nothing"));
+    }
+
+    @Test
+    public void testSnapshotValuesLargerThanAChunk() throws Exception {
+        SimpleHashMap<Integer, byte[]> m = new SimpleHashMap<>();
+        Random random = new Random(20);
+        for (int i = 0; i < 10; i++) {
+            byte[] value = new byte[random.nextInt(200000)];
+            random.nextBytes(value);
+            m.put(i, value);
+        }
+        SimpleHashMap<Integer, byte[]> copy = restore(snapshot(m, Codec.INTEGER, Codec.BYTES),
+                Codec.INTEGER, Codec.BYTES);
+        assertEquals(10, copy.size());
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(m.get(i), copy.get(i));
+        }
+    }
+
+    @Test
+    public void testSnapshotFirstValueLargerThanAChunk() throws Exception {
+        for (int count : new int[] { 1, 3 }) {
+            SimpleHashMap<String, byte[]> m = new SimpleHashMap<>();
+            for (int i = 0; i < count; i++) {
+                byte[] value = new byte[70000];
+                Arrays.fill(value, (byte) i);
+                m.put("big" + i, value);
+            }
+            SimpleHashMap<String, byte[]> copy = restore(snapshot(m, Codec.STRING, Codec.BYTES),
+                    Codec.STRING, Codec.BYTES);
+            assertEquals(count, copy.size());
+            for (int i = 0; i < count; i++) {
+                assertArrayEquals(m.get("big" + i), copy.get("big" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotDetectsCorruption() throws Exception {
+        SimpleHashMap<String, String> m = new SimpleHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            m.put("key" + i, "value" + i);
+        }
+        byte[] bytes = snapshot(m, Codec.STRING, Codec.STRING);
+        for (int at : new int[] { 0, 9, 20, bytes.length / 2, bytes.length - 1 }) {
+            byte[] corrupted = bytes.clone();
+            corrupted[at] ^= 0x10;
+            try {
+                restore(corrupted, Codec.STRING, Codec.STRING);
+                fail("corruption at " + at + " not detected");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotRejectsCorruptChunkLength() throws Exception {
+        SimpleHashMap<String, String> m = new SimpleHashMap<>();
+        m.put("key", "value");
+        byte[] bytes = snapshot(m, Codec.STRING, Codec.STRING);
+        // a length of 2GB, which must be caught before it is allocated
+        ByteBuffer.wrap(bytes).putInt(16, Integer.MAX_VALUE);
+        try {
+            restore(bytes, Codec.STRING, Codec.STRING);
+            fail("corrupt chunk length not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("chunk header checksum"));
+        }
+    }
+
+    @Test
+    public void testSnapshotRejectsBytesAfterRecords() throws Exception {
+        SimpleHashMap<String, String> m = new SimpleHashMap<>();
+        m.put("key", "value");
+        byte[] bytes = snapshot(m, Codec.STRING, Codec.STRING);
+        // rewrite the chunk, with valid checksums, to claim four extra bytes
+        int length = ByteBuffer.wrap(bytes).getInt(16);
+        ByteBuffer padded = ByteBuffer.allocate(bytes.length + 4);
+        padded.put(bytes, 0, 16);
+        padded.putInt(length + 4).putInt(1).putInt(crc(bytes, 32, length + 4, 4));
+        padded.putInt(crc(padded.array(), 16, 12, 0));
+        padded.put(bytes, 32, length);
+        try {
+            restore(padded.array(), Codec.STRING, Codec.STRING);
+            fail("trailing bytes not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("bytes after its records"));
+        }
+    }
+
+    /**
+     * CRC32 of length bytes of bytes from offset, followed by zeros zero bytes.
+     */
+    private static int crc(byte[] bytes, int offset, int length, int zeros) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length - zeros);
+        crc.update(new byte[zeros]);
+        return (int) crc.getValue();
+    }
+
+    @Test(expected = IOException.class)
+    public void testSnapshotTruncated() throws Exception {
+        SimpleHashMap<String, String> m = new SimpleHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            m.put("key" + i, "value" + i);
+        }
+        byte[] bytes = snapshot(m, Codec.STRING, Codec.STRING);
+        restore(Arrays.copyOf(bytes, bytes.length - 10), Codec.STRING, Codec.STRING);
+    }
 }
@@ -0,0 +1,120 @@
+package hashtables;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testSizing() throws Exception {
+        BloomFilter<Integer> f = new BloomFilter<>(1000, 0.01);
+        // about 9.6 bits and 7 hashes per element
+        assertTrue(f.bitSize() >= 9585);
+        assertEquals(0, f.bitSize() % 64);
+        assertEquals(7, f.hashCount());
+        assertEquals(0.0, f.expectedFalsePositiveRate(), 0.0);
+    }
+
+    @Test
+    public void testNoFalseNegatives() throws Exception {
+        BloomFilter<String> f = new BloomFilter<>(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            f.add("element" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(f.mightContain("element" + i));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() throws Exception {
+        BloomFilter<Integer> f = new BloomFilter<>(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            f.add(i);
+        }
+        int falsePositives = 0;
+        for (int i = 10000; i < 110000; i++) {
+            if (f.mightContain(i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+        assertEquals(0.01, f.expectedFalsePositiveRate(), 0.005);
+    }
+
+    @Test
+    public void testBitIndexReachesBitsPastTwoToThe31() throws Exception {
+        long numBits = 1L << 34;
+        long highest = 0;
+        for (int e = 0; e < 1000; e++) {
+            for (int i = 1; i <= 7; i++) {
+                long bit = BloomFilter.bitIndex(e * 0x9e3779b97f4a7c15L, i, numBits);
+                assertTrue(bit >= 0 && bit < numBits);
+                highest = Math.max(highest, bit);
+            }
+        }
+        assertTrue(highest > numBits / 2);
+    }
+
+    @Test
+    public void testAddReportsChange() throws Exception {
+        BloomFilter<Integer> f = new BloomFilter<>(100, 0.01);
+        assertTrue(f.add(42));
+        assertFalse(f.add(42));
+    }
+
+    @Test
+    public void testUnionAndMerge() throws Exception {
+        BloomFilter<Integer> evens = new BloomFilter<>(1000, 0.01);
+        BloomFilter<Integer> odds = new BloomFilter<>(1000, 0.01);
+        for (int i = 0; i < 1000; i += 2) {
+            evens.add(i);
+            odds.add(i + 1);
+        }
+        BloomFilter<Integer> union = evens.union(odds);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(union.mightContain(i));
+        }
+        // union leaves its operands alone; merge does not
+        assertTrue(evens.expectedFalsePositiveRate() < union.expectedFalsePositiveRate());
+        evens.merge(odds);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(evens.mightContain(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeIncompatible() throws Exception {
+        new BloomFilter<Integer>(1000, 0.01).merge(new BloomFilter<Integer>(1000, 0.001));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        BloomFilter<String> f = new BloomFilter<>(500, 0.05);
+        for (int i = 0; i < 500; i++) {
+            f.add("s" + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        f.writeTo(new DataOutputStream(bytes));
+
+        BloomFilter<String> g = BloomFilter.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(f.bitSize(), g.bitSize());
+        assertEquals(f.hashCount(), g.hashCount());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(f.mightContain("s" + i), g.mightContain("s" + i));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadGarbage() throws Exception {
+        BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(new byte[16])));
+    }
+}
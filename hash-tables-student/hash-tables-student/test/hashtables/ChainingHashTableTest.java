@@ -8,10 +8,15 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -25,43 +30,55 @@ public class ChainingHashTableTest {
     public void setup() {
     }
 
+    /**
+     * Create the table under test. Tests for other HashTable implementations
+     * can extend this class and override these to run the same contract.
+     */
+    protected <T> HashTable<T> newTable() {
+        return new ChainingHashTable<>();
+    }
+
+    protected <T> HashTable<T> newTable(int n) {
+        return new ChainingHashTable<>(n);
+    }
+
     @Test
     public void testNewTable() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(0, t.size());
         assertEquals(7, t.capacity());
     }
 
     @Test
     public void testNewTableCapacity5() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>(5);
+        HashTable<Integer> t = newTable(5);
         assertEquals(7, t.capacity());
     }
 
     @Test
     public void testNewTableCapacity15() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>(15);
+        HashTable<Integer> t = newTable(15);
         assertEquals(15, t.capacity());
     }
 
     @Test
     public void testNewTableCapacityMultiple() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>(2);
+        HashTable<Integer> t = newTable(2);
         assertEquals(3, t.capacity());
 
-        t = new ChainingHashTable<>(7);
+        t = newTable(7);
         assertEquals(7, t.capacity());
 
-        t = new ChainingHashTable<>(20);
+        t = newTable(20);
         assertEquals(31, t.capacity());
 
-        t = new ChainingHashTable<>(65000);
+        t = newTable(65000);
         assertEquals(65535, t.capacity());
     }
 
     @Test
     public void testSizeSimple() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(0, t.size());
 
         t.add(0);
@@ -76,7 +93,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testSizeCollision() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(0, t.size());
 
         t.add(0);
@@ -91,7 +108,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testCapacitySimple() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(7, t.capacity());
 
         t.add(0);
@@ -106,7 +123,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testCapacityCollision() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(7, t.capacity());
 
         t.add(0);
@@ -121,7 +138,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testLoadFactorSimple() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(0, t.loadFactor(), 0);
 
         t.add(0);
@@ -136,7 +153,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testLoadFactorCollision() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(0, t.loadFactor(), 0);
 
         t.add(0);
@@ -151,7 +168,7 @@ public class ChainingHashTableTest {
     
     @Test
     public void testContainsSimple() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertFalse(t.contains(0));
         assertFalse(t.contains(7));
 
@@ -162,7 +179,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testContainsCollision() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertFalse(t.contains(0));
         assertFalse(t.contains(7));
 
@@ -177,7 +194,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testGetSimple() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(null, t.get(0));
         assertEquals(null, t.get(7));
 
@@ -189,7 +206,7 @@ public class ChainingHashTableTest {
     
     @Test
     public void testGetCollision() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(null, t.get(0));
         assertEquals(null, t.get(7));
 
@@ -208,7 +225,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testRemoveSimple() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertFalse(t.contains(0));
         assertFalse(t.contains(7));
 
@@ -228,7 +245,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testRemoveCollision() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertFalse(t.contains(0));
         assertFalse(t.contains(7));
 
@@ -256,7 +273,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testRemoveCollisionOffset() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertFalse(t.contains(0));
         assertFalse(t.contains(7));
 
@@ -278,7 +295,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testRemoveCollisionOffsetReadd() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertFalse(t.contains(0));
         assertFalse(t.contains(7));
 
@@ -304,14 +321,25 @@ public class ChainingHashTableTest {
 
     @Test
     public void testAddMultiple() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertTrue(t.add(0));
         assertFalse(t.add(0));
     }
 
+    @Test
+    public void testAddOverwrites() throws Exception {
+        HashTable<String> t = newTable();
+        String first = new String("a");
+        String second = new String("a");
+        assertTrue(t.add(first));
+        assertFalse(t.add(second));
+        assertSame(second, t.get("a"));
+        assertEquals(1, t.size());
+    }
+
     @Test
     public void testIteratorEmpty() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         for (Integer i : t) {
             fail();
         }
@@ -319,7 +347,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testIteratorSimple() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         for (int i = 0; i < 6; i++) {
             t.add(i);
         }
@@ -338,7 +366,7 @@ public class ChainingHashTableTest {
     @Test
     public void testIteratorCollisions() throws Exception {
         List<Integer> values = Arrays.asList(0, 7, 14, 2, 9);
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         for (Integer i : values) {
             t.add(i);
         }
@@ -358,7 +386,7 @@ public class ChainingHashTableTest {
     
     @Test
     public void testEnlargeSimple() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(7, t.capacity());
         for (int i = 0; i < 6; i++) {
             t.add(i);
@@ -370,7 +398,7 @@ public class ChainingHashTableTest {
 
     @Test
     public void testEnlargeCollision() throws Exception {
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         assertEquals(7, t.capacity());
         for (int i = 1; i < 7; i++) {
             t.add(i * 7);
@@ -383,7 +411,7 @@ public class ChainingHashTableTest {
     @Test
     public void test100Random() throws Exception {
         Random random = new Random(0);
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         Set<Integer> h = new HashSet<Integer>();
         int n = 3;
         int cap = 7;
@@ -411,7 +439,7 @@ public class ChainingHashTableTest {
     @Test
     public void test1000RandomAddRemove() throws Exception {
         Random random = new Random(0);
-        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        HashTable<Integer> t = newTable();
         Set<Integer> h = new HashSet<Integer>();
         int n = 3;
         int cap = 7;
@@ -451,7 +479,7 @@ public class ChainingHashTableTest {
     public void test1000x1000RandomAddRemove() throws Exception {
         Random random = new Random(0);
         for (int round = 0; round < 1000; round++) {
-            ChainingHashTable<Integer> t = new ChainingHashTable<>();
+            HashTable<Integer> t = newTable();
             Set<Integer> h = new HashSet<Integer>();
             int n = 3;
             int cap = 7;
@@ -488,6 +516,473 @@ public class ChainingHashTableTest {
         }
     }
 
+    @Test
+    public void testIncrementalRehash() throws Exception {
+        ChainingHashTable<Integer> t = new ChainingHashTable<>(1000);
+        assertEquals(1023, t.capacity());
+        for (int i = 0; i < 768; i++) {
+            t.add(i);
+        }
+        assertFalse(t.isRehashing());
+
+        // this add starts a resize but must not finish it
+        t.add(768);
+        assertEquals(2047, t.capacity());
+        assertTrue(t.isRehashing());
+
+        // everything stays visible while buckets are split across two arrays
+        for (int i = 0; i <= 768; i++) {
+            assertTrue(t.contains(i));
+            assertEquals(Integer.valueOf(i), t.get(i));
+        }
+        assertFalse(t.add(5));
+        assertTrue(t.remove(10));
+        assertFalse(t.contains(10));
+        Set<Integer> seen = new HashSet<>();
+        for (Integer i : t) {
+            assertTrue(seen.add(i));
+        }
+        assertEquals(768, seen.size());
+        assertEquals(768, t.size());
+
+        // keep adding until the migration drains
+        int next = 1000;
+        while (t.isRehashing()) {
+            t.add(next++);
+        }
+        assertEquals(2047, t.capacity());
+        for (int i = 0; i <= 768; i++) {
+            assertEquals(i != 10, t.contains(i));
+        }
+    }
+
+    @Test
+    public void testAddIfAbsent() throws Exception {
+        HashTable<String> t = newTable();
+        String first = new String("key");
+        String second = new String("key");
+        assertNull(t.addIfAbsent(first));
+        assertSame(first, t.addIfAbsent(second));
+        assertSame(first, t.get("key"));
+        assertEquals(1, t.size());
+        for (int i = 0; i < 100; i++) {
+            assertNull(t.addIfAbsent("k" + i));
+        }
+        assertEquals(101, t.size());
+        assertEquals(255, t.capacity());
+    }
+
+    @Test
+    public void testAddAll() throws Exception {
+        HashTable<Integer> bulk = newTable();
+        HashTable<Integer> oneByOne = newTable();
+        bulk.add(-1);
+        oneByOne.add(-1);
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            elements.add(i);
+            oneByOne.add(i);
+        }
+        assertTrue(bulk.addAll(elements));
+        assertEquals(oneByOne.size(), bulk.size());
+        assertEquals(oneByOne.capacity(), bulk.capacity());
+        for (int i = -1; i < 1000; i++) {
+            assertTrue(bulk.contains(i));
+        }
+        assertFalse(bulk.addAll(elements));
+        assertEquals(1001, bulk.size());
+    }
+
+    @Test
+    public void testAddAllUnderestimated() throws Exception {
+        for (int count : new int[] { 13, 1000, 5000 }) {
+            HashTable<Integer> t = newTable();
+            HashTable<Integer> oneByOne = newTable();
+            List<Integer> elements = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                elements.add(i);
+                oneByOne.add(i);
+            }
+            assertTrue(t.addAll(elements.iterator(), 10));
+            assertEquals(count, t.size());
+            // growing past the estimate doubles only as often as adding one at a time
+            assertEquals(oneByOne.capacity(), t.capacity());
+            for (int i = 0; i < count; i++) {
+                assertTrue(t.contains(i));
+            }
+        }
+    }
+
+    @Test
+    public void testAddAllLaterDuplicatesWin() throws Exception {
+        HashTable<String> t = newTable();
+        String first = new String("dup");
+        String second = new String("dup");
+        assertTrue(t.addAll(Arrays.asList(first, "other", second)));
+        assertEquals(2, t.size());
+        assertSame(second, t.get("dup"));
+    }
+
+    @Test
+    public void testParallelAddAll() throws Exception {
+        ChainingHashTable<ComparableCollider> parallel = new ChainingHashTable<>();
+        ChainingHashTable<ComparableCollider> sequential = new ChainingHashTable<>();
+        List<ComparableCollider> elements = new ArrayList<>();
+        Random random = new Random(16);
+        for (int i = 0; i < 100000; i++) {
+            elements.add(new ComparableCollider(random.nextInt(80000)) {
+                @Override
+                public int hashCode() {
+                    // some long chains, to exercise treeification too
+                    return id % 5000 < 50 ? 42 : id;
+                }
+            });
+        }
+        parallel.add(new ComparableCollider(-1));
+        sequential.add(new ComparableCollider(-1));
+        assertTrue(parallel.addAll(elements, true));
+        assertTrue(sequential.addAll(elements, false));
+        assertEquals(sequential.size(), parallel.size());
+        assertEquals(sequential.capacity(), parallel.capacity());
+        for (ComparableCollider c : elements) {
+            assertSame(sequential.get(c), parallel.get(c));
+        }
+        assertEquals(parallel.size(), parallel.stream().count());
+    }
+
+    @Test
+    public void testNoShrinkByDefault() throws Exception {
+        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        for (int i = 0; i < 1000; i++) {
+            t.add(i);
+        }
+        int capacity = t.capacity();
+        for (int i = 0; i < 1000; i++) {
+            t.remove(i);
+        }
+        assertEquals(capacity, t.capacity());
+    }
+
+    @Test
+    public void testShrinksBelowThreshold() throws Exception {
+        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        t.setShrinkThreshold(0.1);
+        for (int i = 0; i < 10000; i++) {
+            t.add(i);
+        }
+        assertEquals(16383, t.capacity());
+        for (int i = 0; i < 9900; i++) {
+            t.remove(i);
+            assertTrue(t.loadFactor() >= 0.1 || t.capacity() == 7);
+        }
+        assertEquals(100, t.size());
+        assertTrue(t.capacity() <= 511);
+        for (int i = 9900; i < 10000; i++) {
+            assertTrue(t.contains(i));
+        }
+        for (int i = 9900; i < 10000; i++) {
+            t.remove(i);
+        }
+        assertEquals(7, t.capacity());
+    }
+
+    @Test
+    public void testShrinkStopsAtInitialCapacity() throws Exception {
+        ChainingHashTable<Integer> t = new ChainingHashTable<>(1000);
+        t.setShrinkThreshold(0.1);
+        for (int i = 0; i < 5000; i++) {
+            t.add(i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            t.remove(i);
+        }
+        assertEquals(1023, t.capacity());
+    }
+
+    @Test
+    public void testShrinkDoesNotThrash() throws Exception {
+        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        t.setShrinkThreshold(0.18);
+        for (int i = 0; i < 1000; i++) {
+            t.add(i);
+        }
+        int resizes = 0;
+        int capacity = t.capacity();
+        for (int round = 0; round < 1000; round++) {
+            // hover around the shrink threshold
+            for (int i = 0; i < 1000; i++) {
+                if (t.loadFactor() < 0.18) {
+                    t.add(-1 - i);
+                } else {
+                    t.remove(i);
+                }
+                if (t.capacity() != capacity) {
+                    capacity = t.capacity();
+                    resizes++;
+                }
+            }
+        }
+        assertTrue("resized " + resizes + " times", resizes <= 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShrinkThresholdTooHigh() throws Exception {
+        new ChainingHashTable<Integer>().setShrinkThreshold(0.5);
+    }
+
+    @Test
+    public void testTrimToSize() throws Exception {
+        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        for (int i = 0; i < 10000; i++) {
+            t.add(i);
+        }
+        for (int i = 0; i < 9000; i++) {
+            t.remove(i);
+        }
+        t.trimToSize();
+        assertEquals(2047, t.capacity());
+        assertEquals(1000, t.size());
+        assertEquals(1000, t.stream().count());
+        for (int i = 9000; i < 10000; i++) {
+            assertTrue(t.contains(i));
+        }
+        t.add(-1);
+        assertEquals(2047, t.capacity());
+
+        ChainingHashTable<Integer> empty = new ChainingHashTable<>(1000);
+        empty.trimToSize();
+        assertEquals(7, empty.capacity());
+    }
+
+    @Test
+    public void testTrimToSizeDuringRehash() throws Exception {
+        ChainingHashTable<Integer> t = new ChainingHashTable<>();
+        int i = 0;
+        while (!t.isRehashing()) {
+            t.add(i++);
+        }
+        t.trimToSize();
+        assertFalse(t.isRehashing());
+        for (int j = 0; j < i; j++) {
+            assertTrue(t.contains(j));
+        }
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        HashTable<Integer> t = newTable();
+        for (int i = 0; i < 1000; i++) {
+            t.add(i);
+        }
+        assertEquals(499500L, t.stream().mapToLong(Integer::longValue).sum());
+        assertEquals(499500L, t.parallelStream().mapToLong(Integer::longValue).sum());
+        Set<Integer> evens = t.parallelStream().filter(i -> i % 2 == 0).collect(Collectors.toSet());
+        assertEquals(500, evens.size());
+    }
+
+    @Test
+    public void testSpliteratorSplitsDuringRehash() throws Exception {
+        ChainingHashTable<Integer> t = new ChainingHashTable<>(1000);
+        for (int i = 0; i <= 768; i++) {
+            t.add(i);
+        }
+        assertTrue(t.isRehashing());
+        Spliterator<Integer> right = t.spliterator();
+        Spliterator<Integer> left = right.trySplit();
+        assertNotNull(left);
+        Set<Integer> seen = new HashSet<>();
+        left.forEachRemaining(i -> assertTrue(seen.add(i)));
+        while (right.tryAdvance(i -> assertTrue(seen.add(i)))) {
+        }
+        assertEquals(769, seen.size());
+        assertEquals(769L, t.parallelStream().count());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testSpliteratorFailsFastWhenMigrationEmptiesOldBuckets() throws Exception {
+        ChainingHashTable<Integer> t = new ChainingHashTable<>(1000);
+        for (int i = 0; i <= 768; i++) {
+            t.add(i);
+        }
+        assertTrue(t.isRehashing());
+        // each add migrates (and clears) the old buckets the spliterator is about to read
+        t.spliterator().forEachRemaining(i -> t.add(i + 10000));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testSpliteratorTryAdvanceFailsFastDuringRehash() throws Exception {
+        ChainingHashTable<Integer> t = new ChainingHashTable<>(1000);
+        for (int i = 0; i <= 768; i++) {
+            t.add(i);
+        }
+        Spliterator<Integer> spliterator = t.spliterator();
+        while (spliterator.tryAdvance(i -> t.add(i + 10000))) {
+        }
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorFailsFastOnAdd() throws Exception {
+        HashTable<Integer> t = newTable();
+        for (int i = 0; i < 10; i++) {
+            t.add(i);
+        }
+        Iterator<Integer> it = t.iterator();
+        it.next();
+        t.add(100);
+        it.next();
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorFailsFastOnRemove() throws Exception {
+        HashTable<Integer> t = newTable();
+        for (int i = 0; i < 10; i++) {
+            t.add(i);
+        }
+        for (Integer i : t) {
+            t.remove(i);
+        }
+    }
+
+    @Test
+    public void testIteratorToleratesLookups() throws Exception {
+        HashTable<Integer> t = newTable();
+        for (int i = 0; i < 10; i++) {
+            t.add(i);
+        }
+        int count = 0;
+        for (Integer i : t) {
+            assertTrue(t.contains(i));
+            count++;
+        }
+        assertEquals(10, count);
+    }
+
+    /**
+     * A key whose hash code is always the same, to force collisions.
+     */
+    static class Collider {
+        final int id;
+
+        Collider(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Collider && ((Collider) obj).id == id;
+        }
+    }
+
+    static class ComparableCollider extends Collider implements Comparable<ComparableCollider> {
+        ComparableCollider(int id) {
+            super(id);
+        }
+
+        @Override
+        public int compareTo(ComparableCollider o) {
+            return Integer.compare(id, o.id);
+        }
+    }
+
+    @Test
+    public void testCollidingKeys() throws Exception {
+        Random random = new Random(0);
+        HashTable<Collider> t = newTable();
+        Set<Collider> h = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            int id = random.nextInt(60);
+            // mix Comparable and non-Comparable keys that all collide
+            Collider c = id % 3 == 0 ? new Collider(id) : new ComparableCollider(id);
+            if (random.nextDouble() < 0.6) {
+                assertEquals(h.add(c), t.add(c));
+            } else {
+                assertEquals(h.remove(c), t.remove(c));
+            }
+            assertEquals(h.size(), t.size());
+            assertTrue(h.contains(c) == t.contains(c));
+        }
+        Set<Collider> seen = new HashSet<>();
+        for (Collider c : t) {
+            assertTrue(seen.add(c));
+        }
+        assertEquals(h, seen);
+    }
+
+    @Test
+    public void testTreeBinFindsEqualElementsOfOtherClasses() throws Exception {
+        // lists of colliders all hash alike, so these share one tree bin
+        HashTable<List<Collider>> lists = newTable();
+        for (int i = 0; i < 20; i++) {
+            lists.add(new ArrayList<>(Arrays.asList(new Collider(i))));
+        }
+        for (int i = 0; i < 20; i++) {
+            assertTrue(lists.contains(new LinkedList<>(Arrays.asList(new Collider(i)))));
+        }
+        assertFalse(lists.contains(new LinkedList<>(Arrays.asList(new Collider(20)))));
+
+        HashTable<Collider> t = newTable();
+        for (int i = 0; i < 20; i++) {
+            t.add(new ComparableCollider(i));
+        }
+        t.add(new Collider(20));
+        for (int i = 0; i <= 20; i++) {
+            assertTrue(t.contains(new Collider(i)));
+            assertTrue(t.contains(new ComparableCollider(i)));
+        }
+        assertFalse(t.add(new Collider(5)));
+        assertEquals(21, t.size());
+        assertEquals(Collider.class, t.get(new ComparableCollider(5)).getClass());
+        assertTrue(t.remove(new Collider(7)));
+        assertFalse(t.contains(new ComparableCollider(7)));
+        assertEquals(20, t.size());
+    }
+
+    @Test(timeout = 5000)
+    public void testTreeifiedBucketsStayFast() throws Exception {
+        // 50000 colliding keys would take minutes to insert with linear chains
+        ChainingHashTable<ComparableCollider> t = new ChainingHashTable<>();
+        for (int i = 0; i < 50000; i++) {
+            assertTrue(t.add(new ComparableCollider(i)));
+        }
+        for (int i = 0; i < 50000; i += 2) {
+            assertTrue(t.remove(new ComparableCollider(i)));
+        }
+        for (int i = 0; i < 50000; i++) {
+            assertEquals(i % 2 == 1, t.contains(new ComparableCollider(i)));
+        }
+    }
+
+    @Test
+    public void testRemoveAndGet() throws Exception {
+        HashTable<String> t = newTable();
+        String stored = new String("key");
+        t.add(stored);
+        t.add("other");
+        assertNull(t.removeAndGet("missing"));
+        assertSame(stored, t.removeAndGet(new String("key")));
+        assertNull(t.removeAndGet("key"));
+        assertEquals(1, t.size());
+        assertFalse(t.contains("key"));
+
+        // in chains and in tree bins alike
+        HashTable<Collider> colliding = newTable();
+        List<Collider> keys = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Collider c = i % 2 == 0 ? new Collider(i) : new ComparableCollider(i);
+            keys.add(c);
+            colliding.add(c);
+        }
+        for (int i = 39; i >= 0; i--) {
+            assertSame(keys.get(i), colliding.removeAndGet(i % 2 == 0 ? new Collider(i) : new ComparableCollider(i)));
+            assertEquals(i, colliding.size());
+        }
+    }
+
     @Test
     public void testChainingHashTableAll() throws Exception {
         testNewTable();
@@ -509,6 +1004,7 @@ public class ChainingHashTableTest {
         testRemoveCollisionOffset();
         testRemoveCollisionOffsetReadd();
         testAddMultiple();
+        testAddOverwrites();
         testIteratorEmpty();
         testIteratorSimple();
         testIteratorCollisions();
@@ -0,0 +1,122 @@
+package hashtables;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentChainingHashTableTest {
+
+    @Test
+    public void testSimpleOperations() throws Exception {
+        ConcurrentChainingHashTable<Integer> t = new ConcurrentChainingHashTable<>();
+        assertEquals(0, t.size());
+        assertTrue(t.add(0));
+        assertFalse(t.add(0));
+        assertTrue(t.add(7));
+        assertTrue(t.contains(0));
+        assertEquals(Integer.valueOf(7), t.get(7));
+        assertNull(t.get(14));
+        assertEquals(2, t.size());
+        assertTrue(t.remove(0));
+        assertFalse(t.remove(0));
+        assertFalse(t.contains(0));
+        assertEquals(1, t.size());
+    }
+
+    @Test
+    public void testCapacityGrowsPerStripe() throws Exception {
+        ConcurrentChainingHashTable<Integer> t = new ConcurrentChainingHashTable<>(7, 1);
+        int initial = t.capacity();
+        for (int i = 0; i < 10000; i++) {
+            t.add(i);
+        }
+        assertTrue(t.capacity() > initial);
+        assertTrue(t.loadFactor() <= 0.76);
+        assertEquals(10000, t.size());
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        ConcurrentChainingHashTable<Integer> t = new ConcurrentChainingHashTable<>();
+        for (int i = -500; i < 500; i++) {
+            t.add(i);
+        }
+        Set<Integer> seen = new HashSet<>();
+        for (Integer i : t) {
+            assertTrue(seen.add(i));
+        }
+        assertEquals(1000, seen.size());
+    }
+
+    @Test
+    public void testConcurrentAddRemove() throws Exception {
+        final int threads = 8;
+        final int perThread = 20000;
+        ConcurrentChainingHashTable<Integer> t = new ConcurrentChainingHashTable<>(7, threads);
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            final int base = w * perThread;
+            workers[w] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    t.add(base + i);
+                }
+                // remove the odd keys this thread added
+                for (int i = 1; i < perThread; i += 2) {
+                    t.remove(base + i);
+                }
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(threads * perThread / 2, t.size());
+        for (int i = 0; i < threads * perThread; i++) {
+            assertEquals(i % 2 == 0, t.contains(i));
+        }
+    }
+
+    @Test
+    public void testAddIfAbsentAndRemoveAndGetAreAtomic() throws Exception {
+        final int keys = 50000;
+        ConcurrentChainingHashTable<Integer> t = new ConcurrentChainingHashTable<>(7, 2);
+        AtomicInteger inserted = new AtomicInteger();
+        AtomicInteger removed = new AtomicInteger();
+        CyclicBarrier inserting = new CyclicBarrier(2);
+        Runnable race = () -> {
+            for (int i = 0; i < keys; i++) {
+                if (t.addIfAbsent(i) == null) {
+                    inserted.incrementAndGet();
+                }
+            }
+            try {
+                inserting.await();
+            } catch (InterruptedException | BrokenBarrierException e) {
+                throw new AssertionError(e);
+            }
+            for (int i = 0; i < keys; i++) {
+                if (t.removeAndGet(i) != null) {
+                    removed.incrementAndGet();
+                }
+            }
+        };
+        Thread first = new Thread(race);
+        Thread second = new Thread(race);
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+        // each key is inserted, and removed, by exactly one of the threads
+        assertEquals(keys, inserted.get());
+        assertEquals(keys, removed.get());
+        assertEquals(0, t.size());
+    }
+}
@@ -0,0 +1,132 @@
+package hashtables;
+
+import static org.junit.Assert.*;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CuckooHashTableTest {
+
+    @Test
+    public void testNewTable() throws Exception {
+        CuckooHashTable<Integer> t = new CuckooHashTable<>();
+        assertEquals(0, t.size());
+        assertEquals(8, t.capacity());
+        assertFalse(t.iterator().hasNext());
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        assertEquals(8, new CuckooHashTable<Integer>(1).capacity());
+        assertEquals(16, new CuckooHashTable<Integer>(9).capacity());
+        assertEquals(1024, new CuckooHashTable<Integer>(1000).capacity());
+    }
+
+    @Test
+    public void testAddGetRemove() throws Exception {
+        CuckooHashTable<String> t = new CuckooHashTable<>();
+        assertTrue(t.add("a"));
+        assertTrue(t.add("b"));
+        assertTrue(t.contains("a"));
+        assertEquals("b", t.get("b"));
+        assertNull(t.get("c"));
+        assertTrue(t.remove("a"));
+        assertFalse(t.remove("a"));
+        assertFalse(t.contains("a"));
+        assertEquals(1, t.size());
+    }
+
+    @Test
+    public void testAddOverwrites() throws Exception {
+        CuckooHashTable<String> t = new CuckooHashTable<>();
+        String first = new String("key");
+        String second = new String("key");
+        assertTrue(t.add(first));
+        assertFalse(t.add(second));
+        assertEquals(1, t.size());
+        assertSame(second, t.get("key"));
+    }
+
+    @Test
+    public void testGrowth() throws Exception {
+        CuckooHashTable<Integer> t = new CuckooHashTable<>();
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(t.add(i));
+        }
+        assertEquals(100000, t.size());
+        assertTrue(t.loadFactor() <= 0.75);
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(t.contains(i));
+        }
+        assertFalse(t.contains(100000));
+    }
+
+    @Test
+    public void testRandomAddRemove() throws Exception {
+        CuckooHashTable<Integer> t = new CuckooHashTable<>();
+        Set<Integer> expected = new HashSet<>();
+        Random r = new Random(210);
+        for (int i = 0; i < 200000; i++) {
+            int x = r.nextInt(5000);
+            if (r.nextBoolean()) {
+                assertEquals(expected.add(x), t.add(x));
+            } else {
+                assertEquals(expected.remove(x), t.remove(x));
+            }
+        }
+        assertEquals(expected.size(), t.size());
+        Set<Integer> iterated = new HashSet<>();
+        for (Integer x : t) {
+            assertTrue(iterated.add(x));
+        }
+        assertEquals(expected, iterated);
+    }
+
+    @Test
+    public void testCollidingKeys() throws Exception {
+        // more keys share a hash code than their two buckets and the stash can hold
+        CuckooHashTable<ChainingHashTableTest.Collider> t = new CuckooHashTable<>();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(t.add(new ChainingHashTableTest.Collider(i)));
+        }
+        assertEquals(50, t.size());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(t.contains(new ChainingHashTableTest.Collider(i)));
+        }
+        for (int i = 0; i < 50; i += 2) {
+            assertTrue(t.remove(new ChainingHashTableTest.Collider(i)));
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i % 2 == 1, t.contains(new ChainingHashTableTest.Collider(i)));
+        }
+        int count = 0;
+        for (ChainingHashTableTest.Collider c : t) {
+            count++;
+        }
+        assertEquals(25, count);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorFailsFast() throws Exception {
+        CuckooHashTable<Integer> t = new CuckooHashTable<>();
+        for (int i = 0; i < 10; i++) {
+            t.add(i);
+        }
+        for (Integer i : t) {
+            t.remove(i);
+        }
+    }
+
+    @Test
+    public void testParallelStream() throws Exception {
+        CuckooHashTable<Integer> t = new CuckooHashTable<>();
+        for (int i = 0; i < 1000; i++) {
+            t.add(i);
+        }
+        assertEquals(499500L, t.parallelStream().mapToLong(Integer::longValue).sum());
+    }
+}
@@ -0,0 +1,112 @@
+package hashtables;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class FilteredHashTableTest extends ChainingHashTableTest {
+
+    @Override
+    protected <T> HashTable<T> newTable() {
+        return new FilteredHashTable<>(new ChainingHashTable<>());
+    }
+
+    @Override
+    protected <T> HashTable<T> newTable(int n) {
+        return new FilteredHashTable<>(new ChainingHashTable<>(n));
+    }
+
+    /**
+     * A table that fails the test if a lookup reaches it.
+     */
+    private static class NoLookupTable<E> extends ChainingHashTable<E> {
+        boolean lookupsAllowed = true;
+
+        @Override
+        public E get(E e) {
+            assertTrue(lookupsAllowed);
+            return super.get(e);
+        }
+
+        @Override
+        public boolean contains(E e) {
+            assertTrue(lookupsAllowed);
+            return super.contains(e);
+        }
+    }
+
+    @Test
+    public void testMissesSkipTable() throws Exception {
+        NoLookupTable<Integer> inner = new NoLookupTable<>();
+        FilteredHashTable<Integer> t = new FilteredHashTable<>(inner, 0.0001);
+        for (int i = 0; i < 20; i++) {
+            t.add(i);
+        }
+        inner.lookupsAllowed = false;
+        int skipped = 0;
+        for (int i = 1000; i < 2000; i++) {
+            if (!t.filter().mightContain(i)) {
+                assertFalse(t.contains(i));
+                assertNull(t.get(i));
+                skipped++;
+            }
+        }
+        assertTrue(skipped > 990);
+    }
+
+    @Test
+    public void testWrapsExistingElements() throws Exception {
+        ChainingHashTable<String> inner = new ChainingHashTable<>();
+        inner.add("a");
+        inner.add("b");
+        FilteredHashTable<String> t = new FilteredHashTable<>(inner);
+        assertTrue(t.contains("a"));
+        assertTrue(t.contains("b"));
+        assertFalse(t.contains("c"));
+    }
+
+    @Test
+    public void testFilterRebuiltAsTableGrows() throws Exception {
+        FilteredHashTable<Integer> t = new FilteredHashTable<>(new ChainingHashTable<>());
+        long initialBits = t.filter().bitSize();
+        for (int i = 0; i < 100000; i++) {
+            t.add(i);
+        }
+        assertTrue(t.filter().bitSize() > initialBits);
+        assertTrue(t.filter().expectedFalsePositiveRate() < 0.02);
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(t.contains(i));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateStaysAtConfiguredRate() throws Exception {
+        FilteredHashTable<Integer> t = new FilteredHashTable<>(new ChainingHashTable<>(), 0.01);
+        for (int i = 0; i < 50000; i++) {
+            t.add(i);
+            if (i % 3 == 2) {
+                // removals leave their bits set, so churn fills the filter too
+                t.remove(i - 1);
+            }
+            if (i % 500 == 0) {
+                double rate = t.filter().expectedFalsePositiveRate();
+                assertTrue("false positive rate " + rate, rate < 0.0125);
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveThenReAdd() throws Exception {
+        FilteredHashTable<Integer> t = new FilteredHashTable<>(new ChainingHashTable<>());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 1000; i++) {
+                t.add(i);
+            }
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(t.remove(i));
+                assertFalse(t.contains(i));
+            }
+        }
+        assertEquals(0, t.size());
+    }
+}
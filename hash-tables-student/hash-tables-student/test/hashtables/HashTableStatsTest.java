@@ -0,0 +1,368 @@
+package hashtables;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class HashTableStatsTest {
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        HashTable<Integer> table = new ChainingHashTable<>();
+        for (int i = 0; i < 100; i++) {
+            table.add(i);
+            table.get(i);
+        }
+        HashTableStats stats = table.stats();
+        assertEquals(100, stats.size());
+        assertEquals(table.capacity(), stats.capacity());
+        assertEquals(0, stats.lookupCount());
+        assertEquals(0, stats.resizeCount());
+        assertEquals(0, stats.averageProbes(), 0);
+    }
+
+    @Test
+    public void testHistogramCountsEveryBucket() throws Exception {
+        HashTable<Integer> table = new ChainingHashTable<>();
+        for (int i = 0; i < 1000; i++) {
+            table.add(i * 7);
+        }
+        HashTableStats stats = table.stats();
+        long[] histogram = stats.chainLengthHistogram();
+        long buckets = 0;
+        long elements = 0;
+        for (int n = 0; n < histogram.length; n++) {
+            buckets += histogram[n];
+            elements += n * histogram[n];
+        }
+        assertEquals(1000, elements);
+        assertTrue(buckets >= table.capacity());
+        assertEquals(histogram.length - 1, stats.maxChainLength());
+    }
+
+    @Test
+    public void testMaxChainLengthOfCollisions() throws Exception {
+        HashTable<ChainingHashTableTest.Collider> table = new ChainingHashTable<>(100);
+        for (int i = 0; i < 5; i++) {
+            table.add(new ChainingHashTableTest.Collider(i));
+        }
+        assertEquals(5, table.stats().maxChainLength());
+    }
+
+    @Test
+    public void testLookupsHitsAndMisses() throws Exception {
+        HashTable<Integer> table = new ChainingHashTable<>(100);
+        table.setStatsEnabled(true);
+        for (int i = 0; i < 10; i++) {
+            table.add(i);
+        }
+        for (int i = 0; i < 20; i++) {
+            table.contains(i);
+        }
+        table.get(5);
+        HashTableStats stats = table.stats();
+        assertEquals(21, stats.lookupCount());
+        assertEquals(11, stats.hitCount());
+        assertEquals(10, stats.missCount());
+    }
+
+    @Test
+    public void testProbesAlongAChain() throws Exception {
+        HashTable<ChainingHashTableTest.Collider> table = new ChainingHashTable<>(100);
+        for (int i = 0; i < 4; i++) {
+            table.add(new ChainingHashTableTest.Collider(i));
+        }
+        table.setStatsEnabled(true);
+        table.get(new ChainingHashTableTest.Collider(0));
+        table.get(new ChainingHashTableTest.Collider(3));
+        table.get(new ChainingHashTableTest.Collider(99));
+        // 1 + 4 + 4 elements examined
+        assertEquals(3.0, table.stats().averageProbes(), 1e-9);
+    }
+
+    @Test
+    public void testResizesCounted() throws Exception {
+        HashTable<Integer> table = new ChainingHashTable<>();
+        table.setStatsEnabled(true);
+        int capacity = table.capacity();
+        int resizes = 0;
+        for (int i = 0; i < 1000; i++) {
+            table.add(i);
+            if (table.capacity() != capacity) {
+                capacity = table.capacity();
+                resizes++;
+            }
+        }
+        HashTableStats stats = table.stats();
+        assertEquals(resizes, stats.resizeCount());
+        assertTrue(stats.resizeNanos() > 0);
+    }
+
+    @Test
+    public void testDisablingDiscardsCounts() throws Exception {
+        HashTable<Integer> table = new ChainingHashTable<>();
+        table.setStatsEnabled(true);
+        table.add(1);
+        table.get(1);
+        table.setStatsEnabled(true);
+        assertEquals(1, table.stats().lookupCount());
+        table.setStatsEnabled(false);
+        table.get(1);
+        assertEquals(0, table.stats().lookupCount());
+        table.setStatsEnabled(true);
+        assertEquals(0, table.stats().lookupCount());
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() throws Exception {
+        HashTable<Integer> table = new ChainingHashTable<>();
+        table.setStatsEnabled(true);
+        table.add(1);
+        HashTableStats stats = table.stats();
+        stats.chainLengthHistogram()[0] = -1;
+        table.get(1);
+        assertEquals(0, stats.lookupCount());
+        assertTrue(stats.chainLengthHistogram()[0] >= 0);
+    }
+
+    @Test
+    public void testFilteredTableReportsWrappedStats() throws Exception {
+        HashTable<Integer> table = new FilteredHashTable<>(new ChainingHashTable<>());
+        table.setStatsEnabled(true);
+        table.add(1);
+        table.get(1);
+        assertEquals(1, table.stats().hitCount());
+    }
+
+    private static List<HashTable<Integer>> openAddressingTables() {
+        return Arrays.asList(new RobinHoodHashTable<>(), new SwissHashTable<>(),
+                new CuckooHashTable<>());
+    }
+
+    @Test
+    public void testOpenAddressingHistogramCountsEveryElement() throws Exception {
+        for (HashTable<Integer> table : openAddressingTables()) {
+            for (int i = 0; i < 1000; i++) {
+                table.add(i * 7);
+            }
+            HashTableStats stats = table.stats();
+            long elements = 0;
+            for (long n : stats.chainLengthHistogram()) {
+                elements += n;
+            }
+            assertEquals(1000, elements);
+            assertEquals(1000, stats.size());
+            assertEquals(table.capacity(), stats.capacity());
+        }
+    }
+
+    @Test
+    public void testOpenAddressingLookups() throws Exception {
+        for (HashTable<Integer> table : openAddressingTables()) {
+            table.setStatsEnabled(true);
+            for (int i = 0; i < 10; i++) {
+                table.add(i);
+            }
+            for (int i = 0; i < 20; i++) {
+                table.contains(i);
+            }
+            table.get(5);
+            HashTableStats stats = table.stats();
+            assertEquals(21, stats.lookupCount());
+            assertEquals(11, stats.hitCount());
+            assertEquals(10, stats.missCount());
+            assertTrue(stats.averageProbes() > 0);
+        }
+    }
+
+    @Test
+    public void testOpenAddressingResizesCounted() throws Exception {
+        for (HashTable<Integer> table : openAddressingTables()) {
+            table.setStatsEnabled(true);
+            int capacity = table.capacity();
+            int resizes = 0;
+            for (int i = 0; i < 1000; i++) {
+                table.add(i);
+                if (table.capacity() != capacity) {
+                    capacity = table.capacity();
+                    resizes++;
+                }
+            }
+            HashTableStats stats = table.stats();
+            assertEquals(resizes, stats.resizeCount());
+            assertTrue(stats.resizeNanos() > 0);
+        }
+    }
+
+    @Test
+    public void testRobinHoodProbeDistances() throws Exception {
+        HashTable<ChainingHashTableTest.Collider> table = new RobinHoodHashTable<>(100);
+        for (int i = 0; i < 4; i++) {
+            table.add(new ChainingHashTableTest.Collider(i));
+        }
+        table.setStatsEnabled(true);
+        table.get(new ChainingHashTableTest.Collider(0));
+        table.get(new ChainingHashTableTest.Collider(3));
+        table.get(new ChainingHashTableTest.Collider(99));
+        HashTableStats stats = table.stats();
+        assertArrayEquals(new long[] { 1, 1, 1, 1 }, stats.chainLengthHistogram());
+        assertEquals(3, stats.maxChainLength());
+        // 1 + 4 + 4 elements examined
+        assertEquals(3.0, stats.averageProbes(), 1e-9);
+    }
+
+    @Test
+    public void testCuckooHistogramCountsTheStash() throws Exception {
+        HashTable<ChainingHashTableTest.Collider> table = new CuckooHashTable<>(100);
+        for (int i = 0; i < 10; i++) {
+            table.add(new ChainingHashTableTest.Collider(i));
+        }
+        table.setStatsEnabled(true);
+        table.get(new ChainingHashTableTest.Collider(99));
+        HashTableStats stats = table.stats();
+        assertArrayEquals(new long[] { 4, 4, 2 }, stats.chainLengthHistogram());
+        // both buckets and the whole stash
+        assertEquals(10.0, stats.averageProbes(), 1e-9);
+    }
+
+    @Test
+    public void testConcurrentTableSumsStripes() throws Exception {
+        HashTable<Integer> table = new ConcurrentChainingHashTable<>(100, 4);
+        table.setStatsEnabled(true);
+        for (int i = 0; i < 1000; i++) {
+            table.add(i);
+        }
+        for (int i = 0; i < 2000; i++) {
+            table.get(i);
+        }
+        HashTableStats stats = table.stats();
+        assertEquals(1000, stats.size());
+        assertEquals(table.capacity(), stats.capacity());
+        assertEquals(2000, stats.lookupCount());
+        assertEquals(1000, stats.hitCount());
+        assertTrue(stats.resizeCount() > 0);
+        long elements = 0;
+        for (int n = 0; n < stats.chainLengthHistogram().length; n++) {
+            elements += n * stats.chainLengthHistogram()[n];
+        }
+        assertEquals(1000, elements);
+        table.setStatsEnabled(false);
+        assertEquals(0, table.stats().lookupCount());
+    }
+
+    @Test
+    public void testMonitorRegisteredWithJmx() throws Exception {
+        HashTable<Integer> table = new ChainingHashTable<>();
+        HashTableMonitor monitor = HashTableMonitor.register(table, "testMonitor");
+        ObjectName name = monitor.objectName();
+        try {
+            for (int i = 0; i < 10; i++) {
+                table.add(i);
+            }
+            table.get(3);
+            table.get(30);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            // JMX sees the last snapshot until the owner refreshes it
+            assertEquals(0, server.getAttribute(name, "Size"));
+            monitor.refresh();
+            assertEquals(10, server.getAttribute(name, "Size"));
+            assertEquals(2L, server.getAttribute(name, "LookupCount"));
+            assertEquals(1L, server.getAttribute(name, "HitCount"));
+            assertEquals(1L, server.getAttribute(name, "MissCount"));
+            assertTrue(server.getAttribute(name, "ChainLengthHistogram") instanceof long[]);
+        } finally {
+            HashTableMonitor.unregister(name);
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    public void testMonitorTakesOneSnapshotPerRefresh() throws Exception {
+        int[] snapshots = new int[1];
+        HashTable<Integer> table = new ChainingHashTable<Integer>() {
+            @Override
+            public HashTableStats stats() {
+                snapshots[0]++;
+                return super.stats();
+            }
+        };
+        HashTableMonitor monitor = new HashTableMonitor(table);
+        monitor.refresh();
+        assertEquals(2, snapshots[0]);
+        monitor.getSize();
+        monitor.getCapacity();
+        monitor.getLoadFactor();
+        monitor.getMaxChainLength();
+        monitor.getChainLengthHistogram();
+        monitor.getLookupCount();
+        monitor.getHitCount();
+        monitor.getMissCount();
+        monitor.getAverageProbes();
+        monitor.getResizeCount();
+        monitor.getResizeNanos();
+        assertEquals(2, snapshots[0]);
+    }
+
+    @Test
+    public void testStatsDefaultToEmpty() throws Exception {
+        Set<Integer> elements = new HashSet<>();
+        HashTable<Integer> table = new HashTable<Integer>() {
+            @Override
+            public int capacity() {
+                return 16;
+            }
+
+            @Override
+            public int size() {
+                return elements.size();
+            }
+
+            @Override
+            public double loadFactor() {
+                return size() / 16.0;
+            }
+
+            @Override
+            public boolean add(Integer e) {
+                return elements.add(e);
+            }
+
+            @Override
+            public Integer get(Integer e) {
+                return elements.contains(e) ? e : null;
+            }
+
+            @Override
+            public boolean remove(Integer e) {
+                return elements.remove(e);
+            }
+
+            @Override
+            public boolean contains(Integer e) {
+                return elements.contains(e);
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                return elements.iterator();
+            }
+        };
+        table.setStatsEnabled(true);
+        table.add(1);
+        table.get(1);
+        HashTableStats stats = table.stats();
+        assertEquals(1, stats.size());
+        assertEquals(16, stats.capacity());
+        assertEquals(0, stats.lookupCount());
+        assertEquals(0, stats.chainLengthHistogram().length);
+    }
+}
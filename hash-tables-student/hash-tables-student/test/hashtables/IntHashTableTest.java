@@ -0,0 +1,97 @@
+package hashtables;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IntHashTableTest {
+
+    @Test
+    public void testNewTable() throws Exception {
+        IntHashTable t = new IntHashTable();
+        assertEquals(0, t.size());
+        assertEquals(7, t.capacity());
+        assertEquals(31, new IntHashTable(20).capacity());
+    }
+
+    @Test
+    public void testExtremeValues() throws Exception {
+        IntHashTable t = new IntHashTable();
+        assertFalse(t.contains(0));
+        assertTrue(t.add(0));
+        assertTrue(t.add(-1));
+        assertTrue(t.add(Integer.MIN_VALUE));
+        assertTrue(t.add(Integer.MAX_VALUE));
+        assertFalse(t.add(0));
+        assertEquals(4, t.size());
+        assertTrue(t.contains(0));
+        assertTrue(t.contains(Integer.MIN_VALUE));
+        assertTrue(t.remove(-1));
+        assertFalse(t.contains(-1));
+        assertEquals(3, t.size());
+    }
+
+    @Test
+    public void testEnlarge() throws Exception {
+        IntHashTable t = new IntHashTable();
+        for (int i = 0; i < 6; i++) {
+            t.add(i);
+            assertEquals(7, t.capacity());
+        }
+        t.add(6);
+        assertEquals(15, t.capacity());
+        assertEquals(7.0 / 15, t.loadFactor(), 0);
+    }
+
+    @Test
+    public void testFullSmallTable() throws Exception {
+        IntHashTable t = new IntHashTable(2);
+        t.add(1);
+        t.add(2);
+        t.add(3);
+        assertEquals(3, t.capacity());
+        assertFalse(t.contains(4));
+        assertFalse(t.remove(4));
+        assertTrue(t.remove(2));
+        assertTrue(t.contains(1));
+        assertTrue(t.contains(3));
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        IntHashTable t = new IntHashTable();
+        for (int i = -50; i < 50; i++) {
+            t.add(i * 7);
+        }
+        Set<Integer> seen = new HashSet<>();
+        PrimitiveIterator.OfInt it = t.iterator();
+        while (it.hasNext()) {
+            assertTrue(seen.add(it.nextInt()));
+        }
+        assertEquals(100, seen.size());
+    }
+
+    @Test
+    public void test10000RandomAddRemove() throws Exception {
+        Random random = new Random(0);
+        IntHashTable t = new IntHashTable();
+        Set<Integer> h = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            final int r = random.nextInt(500) - 250;
+            if (random.nextDouble() < 0.6) {
+                assertEquals(h.add(r), t.add(r));
+            } else {
+                assertEquals(h.remove(r), t.remove(r));
+            }
+            assertEquals(h.size(), t.size());
+        }
+        for (int i = -250; i < 250; i++) {
+            assertEquals(h.contains(i), t.contains(i));
+        }
+    }
+}
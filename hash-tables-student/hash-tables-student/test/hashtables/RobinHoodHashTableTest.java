@@ -0,0 +1,105 @@
+package hashtables;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class RobinHoodHashTableTest extends ChainingHashTableTest {
+
+    @Override
+    protected <T> HashTable<T> newTable() {
+        return new RobinHoodHashTable<>();
+    }
+
+    @Override
+    protected <T> HashTable<T> newTable(int n) {
+        return new RobinHoodHashTable<>(n);
+    }
+
+    @Test(timeout = 5000)
+    public void testRemoveFromFullThreeSlotTable() throws Exception {
+        // every arrangement of home slots, removed in every order
+        for (int a = 0; a < 9; a++) {
+            for (int b = 0; b < 9; b++) {
+                for (int c = 0; c < 9; c++) {
+                    if (a == b || b == c || a == c) {
+                        continue;
+                    }
+                    int[][] orders = { { a, b, c }, { b, c, a }, { c, a, b }, { c, b, a } };
+                    for (int[] order : orders) {
+                        HashTable<Integer> t = newTable(2);
+                        t.add(a);
+                        t.add(b);
+                        t.add(c);
+                        assertEquals(3, t.capacity());
+                        Set<Integer> left = new HashSet<>(Arrays.asList(a, b, c));
+                        for (int removed : order) {
+                            assertTrue(t.remove(removed));
+                            left.remove(removed);
+                            for (int k : new int[] { a, b, c }) {
+                                assertEquals(left.contains(k), t.contains(k));
+                            }
+                        }
+                        assertEquals(0, t.size());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFullSmallTable() throws Exception {
+        HashTable<Integer> t = newTable(2);
+        assertEquals(3, t.capacity());
+        t.add(0);
+        t.add(3);
+        t.add(6);
+        assertEquals(3, t.capacity());
+        assertEquals(1.0, t.loadFactor(), 0);
+        assertTrue(t.contains(3));
+        assertFalse(t.contains(9));
+        assertTrue(t.remove(0));
+        assertTrue(t.contains(3));
+        assertTrue(t.contains(6));
+        assertFalse(t.contains(0));
+    }
+
+    @Test
+    public void testNegativeHashCodes() throws Exception {
+        HashTable<Integer> t = newTable();
+        for (int i = -1; i > -50; i--) {
+            assertTrue(t.add(i));
+        }
+        for (int i = -1; i > -50; i--) {
+            assertTrue(t.contains(i));
+        }
+        assertEquals(49, t.size());
+    }
+
+    @Test
+    public void testRandomClusteredAddRemove() throws Exception {
+        // multiples of a large power of two land in few home slots
+        Random random = new Random(0);
+        HashTable<Integer> t = newTable();
+        Set<Integer> h = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            final int r = random.nextInt(200) * 1024;
+            if (random.nextDouble() < 0.6) {
+                assertEquals(h.add(r), t.add(r));
+            } else {
+                assertEquals(h.remove(r), t.remove(r));
+            }
+            assertEquals(h.size(), t.size());
+        }
+        Set<Integer> seen = new HashSet<>();
+        for (Integer i : t) {
+            assertTrue(seen.add(i));
+        }
+        assertEquals(h, seen);
+    }
+}
@@ -0,0 +1,83 @@
+package hashtables;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SwissHashTableTest extends ChainingHashTableTest {
+
+    @Override
+    protected <T> HashTable<T> newTable() {
+        return new SwissHashTable<>();
+    }
+
+    @Override
+    protected <T> HashTable<T> newTable(int n) {
+        return new SwissHashTable<>(n);
+    }
+
+    @Test
+    public void testFullSmallTable() throws Exception {
+        HashTable<Integer> t = newTable(2);
+        assertEquals(3, t.capacity());
+        t.add(0);
+        t.add(3);
+        t.add(6);
+        assertEquals(3, t.capacity());
+        assertEquals(1.0, t.loadFactor(), 0.0);
+        assertTrue(t.contains(0));
+        assertTrue(t.contains(3));
+        assertTrue(t.contains(6));
+        assertFalse(t.contains(9));
+        assertFalse(t.remove(9));
+        assertTrue(t.remove(3));
+        assertFalse(t.contains(3));
+        assertTrue(t.contains(6));
+    }
+
+    @Test
+    public void testTombstonesAreReclaimed() throws Exception {
+        // churn through many more distinct keys than the table can hold
+        HashTable<Integer> t = newTable(1000);
+        for (int i = 0; i < 500; i++) {
+            t.add(i);
+        }
+        for (int i = 500; i < 100000; i++) {
+            assertTrue(t.add(i));
+            assertTrue(t.remove(i - 500));
+        }
+        assertEquals(1023, t.capacity());
+        assertEquals(500, t.size());
+        for (int i = 99500; i < 100000; i++) {
+            assertTrue(t.contains(i));
+        }
+        assertFalse(t.contains(0));
+    }
+
+    @Test
+    public void testRandomAddRemove() throws Exception {
+        HashTable<Integer> t = newTable();
+        Set<Integer> expected = new HashSet<>();
+        Random r = new Random(12);
+        for (int i = 0; i < 200000; i++) {
+            int x = r.nextInt(3000) - 1500;
+            if (r.nextInt(3) > 0) {
+                assertEquals(expected.add(x), t.add(x));
+            } else {
+                assertEquals(expected.remove(x), t.remove(x));
+            }
+            if (i % 1000 == 0) {
+                assertEquals(expected.contains(-x), t.contains(-x));
+            }
+        }
+        Set<Integer> iterated = new HashSet<>();
+        for (Integer x : t) {
+            assertTrue(iterated.add(x));
+        }
+        assertEquals(expected, iterated);
+    }
+}
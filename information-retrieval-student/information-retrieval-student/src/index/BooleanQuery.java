@@ -0,0 +1,264 @@
+package index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A parsed boolean query, which can be run against an index as a
+ * DocIdIterator.
+ *
+ * The query language has terms, parentheses and three operators, in
+ * decreasing order of precedence:
+ *
+ * - NOT q: the documents not matching q;
+ * - p AND q, or just p q: the documents matching both;
+ * - p OR q: the documents matching either.
+ *
+ * Operators must be in upper case; "and", "or" and "not" are terms. Each
+ * other word is split into terms as documents are (so "Tomato-Sauce" is
+ * tomato AND sauce), and case-folded.
+ *
+ * A conjunction runs as a ConjunctionIterator led by its rarest clause, with
+ * its NOT clauses merged into one iterator and excluded by an
+ * ExclusionIterator. Only a query made up of nothing but NOT clauses
+ * iterates over every document.
+ */
+abstract class BooleanQuery {
+
+	/**
+	 * Returns an iterator over the ordinals of the matching documents.
+	 *
+	 * @param postings      the postings of a (case-folded) term, or null if no
+	 *                      document contains it
+	 * @param documentCount the number of documents in the index
+	 */
+	abstract DocIdIterator iterator(Function<String, PostingsList> postings, int documentCount);
+
+	/**
+	 * Parse a query.
+	 *
+	 * @param query the query
+	 * @return the parsed query
+	 * @throws IllegalArgumentException if the query is empty or malformed
+	 */
+	static BooleanQuery parse(String query) throws IllegalArgumentException {
+		Parser parser = new Parser(tokenize(query));
+		BooleanQuery parsed = parser.parseOr();
+		if (parser.peek() != null) {
+			throw new IllegalArgumentException("unexpected '" + parser.peek() + "' in query: " + query);
+		}
+		return parsed;
+	}
+
+	/**
+	 * Split a query into parentheses and words.
+	 */
+	private static List<String> tokenize(String query) {
+		List<String> tokens = new ArrayList<>();
+		int i = 0;
+		while (i < query.length()) {
+			char c = query.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '(' || c == ')') {
+				tokens.add(String.valueOf(c));
+				i++;
+			} else {
+				int start = i;
+				while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+						&& query.charAt(i) != '(' && query.charAt(i) != ')') {
+					i++;
+				}
+				tokens.add(query.substring(start, i));
+			}
+		}
+		return tokens;
+	}
+
+	private static class Parser {
+		private final List<String> tokens;
+		private int next;
+
+		Parser(List<String> tokens) {
+			this.tokens = tokens;
+		}
+
+		String peek() {
+			return next < tokens.size() ? tokens.get(next) : null;
+		}
+
+		BooleanQuery parseOr() {
+			List<BooleanQuery> clauses = new ArrayList<>();
+			clauses.add(parseAnd());
+			while ("OR".equals(peek())) {
+				next++;
+				clauses.add(parseAnd());
+			}
+			return clauses.size() == 1 ? clauses.get(0) : new Or(clauses);
+		}
+
+		BooleanQuery parseAnd() {
+			List<BooleanQuery> clauses = new ArrayList<>();
+			clauses.add(parseNot());
+			while (peek() != null && !"OR".equals(peek()) && !")".equals(peek())) {
+				if ("AND".equals(peek())) {
+					next++;
+				}
+				clauses.add(parseNot());
+			}
+			return clauses.size() == 1 ? clauses.get(0) : new And(clauses);
+		}
+
+		BooleanQuery parseNot() {
+			if ("NOT".equals(peek())) {
+				next++;
+				return new Not(parseNot());
+			}
+			return parsePrimary();
+		}
+
+		BooleanQuery parsePrimary() {
+			String token = peek();
+			if (token == null) {
+				throw new IllegalArgumentException("query ends unexpectedly");
+			}
+			if (token.equals(")") || token.equals("AND") || token.equals("OR")) {
+				throw new IllegalArgumentException("unexpected '" + token + "' in query");
+			}
+			next++;
+			if (token.equals("(")) {
+				BooleanQuery query = parseOr();
+				if (!")".equals(peek())) {
+					throw new IllegalArgumentException("missing ')' in query");
+				}
+				next++;
+				return query;
+			}
+			List<BooleanQuery> terms = new ArrayList<>();
+			for (String term : token.toLowerCase().split("\\W+")) {
+				if (!term.isEmpty()) {
+					terms.add(new Term(term));
+				}
+			}
+			if (terms.isEmpty()) {
+				// punctuation alone can never match
+				return new Or(terms);
+			}
+			return terms.size() == 1 ? terms.get(0) : new And(terms);
+		}
+	}
+
+	private static class Term extends BooleanQuery {
+		private final String term;
+
+		Term(String term) {
+			this.term = term;
+		}
+
+		@Override
+		DocIdIterator iterator(Function<String, PostingsList> postings, int documentCount) {
+			PostingsList list = postings.apply(term);
+			return list == null ? DocIdIterator.empty() : list.iterator();
+		}
+
+		@Override
+		public String toString() {
+			return term;
+		}
+	}
+
+	private static class Not extends BooleanQuery {
+		private final BooleanQuery clause;
+
+		Not(BooleanQuery clause) {
+			this.clause = clause;
+		}
+
+		@Override
+		DocIdIterator iterator(Function<String, PostingsList> postings, int documentCount) {
+			return new ExclusionIterator(DocIdIterator.all(documentCount),
+					clause.iterator(postings, documentCount));
+		}
+
+		@Override
+		public String toString() {
+			return "NOT " + clause;
+		}
+	}
+
+	private static class And extends BooleanQuery {
+		private final List<BooleanQuery> clauses;
+
+		And(List<BooleanQuery> clauses) {
+			this.clauses = clauses;
+		}
+
+		@Override
+		DocIdIterator iterator(Function<String, PostingsList> postings, int documentCount) {
+			List<DocIdIterator> included = new ArrayList<>();
+			List<DocIdIterator> excluded = new ArrayList<>();
+			for (BooleanQuery clause : clauses) {
+				if (clause instanceof Not) {
+					excluded.add(((Not) clause).clause.iterator(postings, documentCount));
+				} else {
+					included.add(clause.iterator(postings, documentCount));
+				}
+			}
+			DocIdIterator include;
+			if (included.isEmpty()) {
+				include = DocIdIterator.all(documentCount);
+			} else if (included.size() == 1) {
+				include = included.get(0);
+			} else {
+				include = new ConjunctionIterator(included);
+			}
+			if (excluded.isEmpty()) {
+				return include;
+			}
+			return new ExclusionIterator(include,
+					excluded.size() == 1 ? excluded.get(0) : new DisjunctionIterator(excluded));
+		}
+
+		@Override
+		public String toString() {
+			return join(clauses, " AND ");
+		}
+	}
+
+	private static class Or extends BooleanQuery {
+		private final List<BooleanQuery> clauses;
+
+		Or(List<BooleanQuery> clauses) {
+			this.clauses = clauses;
+		}
+
+		@Override
+		DocIdIterator iterator(Function<String, PostingsList> postings, int documentCount) {
+			if (clauses.isEmpty()) {
+				return DocIdIterator.empty();
+			}
+			List<DocIdIterator> iterators = new ArrayList<>();
+			for (BooleanQuery clause : clauses) {
+				iterators.add(clause.iterator(postings, documentCount));
+			}
+			return new DisjunctionIterator(iterators);
+		}
+
+		@Override
+		public String toString() {
+			return join(clauses, " OR ");
+		}
+	}
+
+	private static String join(List<BooleanQuery> clauses, String operator) {
+		StringBuilder sb = new StringBuilder("(");
+		for (int i = 0; i < clauses.size(); i++) {
+			if (i > 0) {
+				sb.append(operator);
+			}
+			sb.append(clauses.get(i));
+		}
+		return sb.append(")").toString();
+	}
+}
@@ -0,0 +1,72 @@
+package index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Iterates over the documents returned by every one of a list of iterators.
+ *
+ * The iterators are ordered by cost, and the cheapest (typically the postings
+ * of the rarest term) leads: each of its documents is looked for in the
+ * others with advance(), which skips and gallops through their postings.
+ * Whenever one of them has no such document, the lead is advanced past the
+ * document that one moved to instead, so that the long iterators are mostly
+ * skipped over rather than read.
+ */
+class ConjunctionIterator extends DocIdIterator {
+	private final DocIdIterator lead;
+	private final DocIdIterator[] others;
+	private int document = -1;
+
+	/**
+	 * @param iterators at least one iterator
+	 */
+	ConjunctionIterator(List<DocIdIterator> iterators) {
+		DocIdIterator[] sorted = iterators.toArray(new DocIdIterator[0]);
+		Arrays.sort(sorted, Comparator.comparingLong(DocIdIterator::cost));
+		lead = sorted[0];
+		others = Arrays.copyOfRange(sorted, 1, sorted.length);
+	}
+
+	@Override
+	int docID() {
+		return document;
+	}
+
+	@Override
+	int nextDoc() {
+		return document == NO_MORE_DOCS ? NO_MORE_DOCS : align(lead.nextDoc());
+	}
+
+	@Override
+	int advance(int target) {
+		return document == NO_MORE_DOCS ? NO_MORE_DOCS : align(lead.advance(target));
+	}
+
+	@Override
+	long cost() {
+		return lead.cost();
+	}
+
+	/**
+	 * Move to the first document, from the lead's current document target on,
+	 * that every iterator returns.
+	 */
+	private int align(int target) {
+		search: while (target != NO_MORE_DOCS) {
+			for (DocIdIterator other : others) {
+				int at = other.docID();
+				if (at < target) {
+					at = other.advance(target);
+				}
+				if (at > target) {
+					target = lead.advance(at);
+					continue search;
+				}
+			}
+			break;
+		}
+		return document = target;
+	}
+}
@@ -0,0 +1,53 @@
+package index;
+
+import java.util.List;
+
+/**
+ * Iterates over the documents returned by any of a list of iterators: each
+ * step advances the iterators that are behind and takes the smallest of
+ * their documents. Queries have few clauses, so a linear scan of the
+ * iterators beats keeping them in a heap.
+ */
+class DisjunctionIterator extends DocIdIterator {
+	private final DocIdIterator[] iterators;
+	private int document = -1;
+
+	/**
+	 * @param iterators at least one iterator
+	 */
+	DisjunctionIterator(List<DocIdIterator> iterators) {
+		this.iterators = iterators.toArray(new DocIdIterator[0]);
+	}
+
+	@Override
+	int docID() {
+		return document;
+	}
+
+	@Override
+	int nextDoc() {
+		return document == NO_MORE_DOCS ? NO_MORE_DOCS : advance(document + 1);
+	}
+
+	@Override
+	int advance(int target) {
+		int next = NO_MORE_DOCS;
+		for (DocIdIterator iterator : iterators) {
+			int at = iterator.docID();
+			if (at < target) {
+				at = iterator.advance(target);
+			}
+			next = Math.min(next, at);
+		}
+		return document = next;
+	}
+
+	@Override
+	long cost() {
+		long cost = 0;
+		for (DocIdIterator iterator : iterators) {
+			cost += iterator.cost();
+		}
+		return cost;
+	}
+}
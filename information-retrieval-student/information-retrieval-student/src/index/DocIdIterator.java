@@ -0,0 +1,78 @@
+package index;
+
+/**
+ * A cursor moving forward through an increasing sequence of document
+ * ordinals, such as the documents containing a term (PostingsIterator) or
+ * matching a boolean query.
+ *
+ * A new iterator is positioned before the first document; nextDoc() and
+ * advance() move it, and return NO_MORE_DOCS once it is past the last.
+ */
+abstract class DocIdIterator {
+	/** The document returned once an iterator is exhausted, larger than any ordinal. */
+	static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+	/**
+	 * @return the current document, -1 before the first call to nextDoc()
+	 *         or advance(), or NO_MORE_DOCS once exhausted
+	 */
+	abstract int docID();
+
+	/**
+	 * Move to the next document.
+	 *
+	 * @return the new current document, or NO_MORE_DOCS
+	 */
+	abstract int nextDoc();
+
+	/**
+	 * Move to the first document at or after target. target must be larger
+	 * than the current document.
+	 *
+	 * @param target the document ordinal to skip to
+	 * @return the new current document, or NO_MORE_DOCS
+	 */
+	abstract int advance(int target);
+
+	/**
+	 * @return an estimate (an upper bound) of the number of documents the
+	 *         iterator returns, for ordering the iterators of a query
+	 */
+	abstract long cost();
+
+	/**
+	 * @return an iterator over no documents
+	 */
+	static DocIdIterator empty() {
+		return all(0);
+	}
+
+	/**
+	 * @return an iterator over every document ordinal below count
+	 */
+	static DocIdIterator all(int count) {
+		return new DocIdIterator() {
+			private int document = -1;
+
+			@Override
+			int docID() {
+				return document;
+			}
+
+			@Override
+			int nextDoc() {
+				return document == NO_MORE_DOCS ? NO_MORE_DOCS : advance(document + 1);
+			}
+
+			@Override
+			int advance(int target) {
+				return document = target < count ? target : NO_MORE_DOCS;
+			}
+
+			@Override
+			long cost() {
+				return count;
+			}
+		};
+	}
+}
@@ -0,0 +1,55 @@
+package index;
+
+/**
+ * Iterates over the documents returned by one iterator but not by another.
+ * The excluded iterator is only ever advanced to the documents of the
+ * included one, so it is skipped through rather than read.
+ */
+class ExclusionIterator extends DocIdIterator {
+	private final DocIdIterator include;
+	private final DocIdIterator exclude;
+	private int document = -1;
+
+	ExclusionIterator(DocIdIterator include, DocIdIterator exclude) {
+		this.include = include;
+		this.exclude = exclude;
+	}
+
+	@Override
+	int docID() {
+		return document;
+	}
+
+	@Override
+	int nextDoc() {
+		return document == NO_MORE_DOCS ? NO_MORE_DOCS : skipExcluded(include.nextDoc());
+	}
+
+	@Override
+	int advance(int target) {
+		return document == NO_MORE_DOCS ? NO_MORE_DOCS : skipExcluded(include.advance(target));
+	}
+
+	@Override
+	long cost() {
+		return include.cost();
+	}
+
+	/**
+	 * Move to the first document, from the included iterator's current
+	 * document candidate on, that is not excluded.
+	 */
+	private int skipExcluded(int candidate) {
+		while (candidate != NO_MORE_DOCS) {
+			int at = exclude.docID();
+			if (at < candidate) {
+				at = exclude.advance(candidate);
+			}
+			if (at != candidate) {
+				break;
+			}
+			candidate = include.nextDoc();
+		}
+		return document = candidate;
+	}
+}
@@ -0,0 +1,177 @@
+package index;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Compresses blocks of BLOCK_SIZE non-negative ints, such as the gaps between
+ * consecutive document ordinals, into bytes.
+ *
+ * Each block is stored in whichever of two formats is smaller:
+ *
+ * - variable-byte (VByte): a marker byte, then each value in 7-bit groups,
+ *   least significant first, with the high bit set on every byte but the
+ *   last of a value;
+ * - patched frame of reference (PFor): a byte holding a bit width b, a byte
+ *   holding the number of exceptions, the low b bits of every value packed
+ *   back to back (16 * b bytes), and then for each value that does not fit
+ *   in b bits its index in the block and its remaining high bits in VByte.
+ *
+ * The width b is chosen to minimize the size of the block, so that a few
+ * large gaps do not widen every value. Packed values are decoded with one
+ * little-endian 64-bit read each, regardless of b, in a loop with no
+ * data-dependent branches; the reads may run up to 7 bytes past the end of
+ * the block, so the array being decoded must have that many bytes to spare.
+ */
+final class PostingsCodec {
+	/** The number of values in a block. */
+	static final int BLOCK_SIZE = 128;
+	/** The number of bytes decoding may read past the end of a block. */
+	static final int PADDING = Long.BYTES - 1;
+
+	private static final int VBYTE = 0xff;
+	private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	private PostingsCodec() {
+	}
+
+	/**
+	 * Encode a block.
+	 *
+	 * @param values BLOCK_SIZE non-negative ints
+	 * @return the encoded block
+	 */
+	static byte[] encode(int[] values) {
+		int vbyteSize = 1;
+		for (int value : values) {
+			vbyteSize += vbyteLength(value);
+		}
+		int bestWidth = -1;
+		int bestSize = vbyteSize;
+		for (int width = 0; width < Integer.SIZE; width++) {
+			int size = 2 + BLOCK_SIZE / Byte.SIZE * width;
+			for (int value : values) {
+				if (value >>> width != 0) {
+					size += 1 + vbyteLength(value >>> width);
+				}
+			}
+			if (size < bestSize) {
+				bestWidth = width;
+				bestSize = size;
+			}
+		}
+
+		byte[] out = new byte[bestSize];
+		if (bestWidth < 0) {
+			out[0] = (byte) VBYTE;
+			int at = 1;
+			for (int value : values) {
+				at = writeVByte(out, at, value);
+			}
+			return out;
+		}
+
+		out[0] = (byte) bestWidth;
+		int at = 2;
+		long mask = (1L << bestWidth) - 1;
+		long bits = 0;
+		int bitCount = 0;
+		int exceptions = 0;
+		for (int value : values) {
+			bits |= (value & mask) << bitCount;
+			bitCount += bestWidth;
+			while (bitCount >= Byte.SIZE) {
+				out[at++] = (byte) bits;
+				bits >>>= Byte.SIZE;
+				bitCount -= Byte.SIZE;
+			}
+			if (value >>> bestWidth != 0) {
+				exceptions++;
+			}
+		}
+		out[1] = (byte) exceptions;
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			if (values[i] >>> bestWidth != 0) {
+				out[at++] = (byte) i;
+				at = writeVByte(out, at, values[i] >>> bestWidth);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Decode the block starting at data[offset].
+	 *
+	 * @param data   the encoded blocks, with PADDING bytes to spare after the last
+	 * @param offset where the block starts
+	 * @param values receives the BLOCK_SIZE decoded values
+	 * @return the offset just past the end of the block
+	 */
+	static int decode(byte[] data, int offset, int[] values) {
+		int header = data[offset] & 0xff;
+		if (header == VBYTE) {
+			int at = offset + 1;
+			for (int i = 0; i < BLOCK_SIZE; i++) {
+				int value = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = data[at++];
+					value |= (b & 0x7f) << shift;
+					shift += 7;
+				} while (b < 0);
+				values[i] = value;
+			}
+			return at;
+		}
+
+		int width = header;
+		int exceptions = data[offset + 1] & 0xff;
+		int packed = offset + 2;
+		if (width == 0) {
+			for (int i = 0; i < BLOCK_SIZE; i++) {
+				values[i] = 0;
+			}
+		} else {
+			long mask = (1L << width) - 1;
+			for (int i = 0, bit = 0; i < BLOCK_SIZE; i++, bit += width) {
+				long word = (long) LONG.get(data, packed + (bit >>> 3));
+				values[i] = (int) ((word >>> (bit & 7)) & mask);
+			}
+		}
+		int at = packed + BLOCK_SIZE / Byte.SIZE * width;
+		for (int e = 0; e < exceptions; e++) {
+			int index = data[at++] & 0xff;
+			int high = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[at++];
+				high |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			values[index] |= high << width;
+		}
+		return at;
+	}
+
+	private static int writeVByte(byte[] out, int at, int value) {
+		while ((value & ~0x7f) != 0) {
+			out[at++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out[at++] = (byte) value;
+		return at;
+	}
+
+	private static int vbyteLength(int value) {
+		int length = 1;
+		while ((value & ~0x7f) != 0) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,131 @@
+package index;
+
+/**
+ * A DocIdIterator over a PostingsList: the documents containing a term, in
+ * increasing order of ordinal, with the term's frequency in each.
+ *
+ * The iterator decodes one block of postings at a time, and a block's
+ * frequencies only if frequency() is called while it is on that block.
+ * advance() first consults the skip data to jump straight to the block that
+ * holds the target, then gallops within the block: it probes 1, 2, 4, ...
+ * postings ahead until it passes the target, and binary searches the last
+ * step.
+ */
+class PostingsIterator extends DocIdIterator {
+	private final PostingsList postings;
+	// the current block, blockCount() for the tail, or -1 before the first
+	private int block = -1;
+	private int[] documents;
+	private int[] frequencies;
+	private int count;
+	private int position;
+	private int document = -1;
+	// buffers for decoded blocks, and where the current block's frequencies start (-1 once decoded)
+	private final int[] documentBuffer = new int[PostingsCodec.BLOCK_SIZE];
+	private final int[] frequencyBuffer = new int[PostingsCodec.BLOCK_SIZE];
+	private int frequencyOffset = -1;
+
+	PostingsIterator(PostingsList postings) {
+		this.postings = postings;
+	}
+
+	@Override
+	int docID() {
+		return document;
+	}
+
+	/**
+	 * @return the frequency of the term in the current document
+	 */
+	int frequency() {
+		if (frequencyOffset >= 0) {
+			postings.decodeFrequencies(frequencyOffset, frequencyBuffer);
+			frequencyOffset = -1;
+		}
+		return frequencies[position];
+	}
+
+	@Override
+	long cost() {
+		return postings.size();
+	}
+
+	@Override
+	int nextDoc() {
+		if (document == NO_MORE_DOCS) {
+			return NO_MORE_DOCS;
+		}
+		if (++position >= count && !load(block + 1)) {
+			return exhausted();
+		}
+		return document = documents[position];
+	}
+
+	@Override
+	int advance(int target) {
+		if (document == NO_MORE_DOCS) {
+			return NO_MORE_DOCS;
+		}
+		int blockCount = postings.blockCount();
+		if (block < 0 || (block < blockCount && postings.blockLastDocument(block) < target)) {
+			if (!load(postings.findBlock(block + 1, target))) {
+				return exhausted();
+			}
+		}
+		int low = position;
+		int step = 1;
+		int high = low;
+		while (high < count && documents[high] < target) {
+			low = high + 1;
+			high += step;
+			step <<= 1;
+		}
+		high = Math.min(high, count);
+		// the first document >= target is in [low, high]
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (documents[mid] < target) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		position = low;
+		if (position == count) {
+			// only the tail can run out, since a block's last document is >= target
+			return exhausted();
+		}
+		return document = documents[position];
+	}
+
+	/**
+	 * Make block b (or the tail) current, positioned at its first posting.
+	 *
+	 * @return false if there is no such block, or it is the tail and empty
+	 */
+	private boolean load(int b) {
+		int blockCount = postings.blockCount();
+		if (b > blockCount) {
+			return false;
+		}
+		block = b;
+		position = 0;
+		if (b < blockCount) {
+			frequencyOffset = postings.decodeDocuments(b, documentBuffer);
+			documents = documentBuffer;
+			frequencies = frequencyBuffer;
+			count = PostingsCodec.BLOCK_SIZE;
+		} else {
+			frequencyOffset = -1;
+			documents = postings.tailDocuments();
+			frequencies = postings.tailFrequencies();
+			count = postings.tailSize();
+		}
+		return count > 0;
+	}
+
+	private int exhausted() {
+		position = count;
+		return document = NO_MORE_DOCS;
+	}
+}
@@ -0,0 +1,191 @@
+package index;
+
+import java.util.Arrays;
+
+/**
+ * The postings of one term: the ordinals of the documents containing it, in
+ * increasing order, each paired with the number of times the term appears in
+ * that document.
+ *
+ * Documents are given ordinals in the order they are added, so postings are
+ * only ever appended at the end. They are stored compressed: every full block
+ * of PostingsCodec.BLOCK_SIZE postings is sealed into an immutable byte
+ * array, as the gaps between its ordinals (less one) followed by its
+ * frequencies (less one), each compressed by PostingsCodec. Only the
+ * postings after the last full block, the tail, are kept as plain ints.
+ *
+ * Alongside the blocks, skip data records the last ordinal of each block and
+ * where it starts, so that PostingsIterator.advance() can skip to the block
+ * holding a target ordinal without decoding the ones in between. The
+ * largest frequency is tracked too, as an upper bound on the term's score in
+ * any document.
+ *
+ * In a large index most gaps and frequencies fit in a few bits, so a posting
+ * costs one to two bytes rather than the dozens of a boxed collection.
+ */
+class PostingsList {
+	private static final int BLOCK_SIZE = PostingsCodec.BLOCK_SIZE;
+
+	// sealed blocks, with PostingsCodec.PADDING spare bytes at the end
+	private byte[] data = new byte[0];
+	private int dataLength;
+	// skip data: the last ordinal of each block, and where its bytes start
+	private int[] blockLastDocuments = new int[0];
+	private int[] blockOffsets = new int[0];
+	private int blockCount;
+	// the tail, not yet compressed
+	private int[] tailDocuments = new int[1];
+	private int[] tailFrequencies = new int[1];
+	private int tailSize;
+	private int maxFrequency;
+
+	/**
+	 * Append a posting. document must be larger than every ordinal already in
+	 * the list.
+	 *
+	 * @param document  the document ordinal
+	 * @param frequency the (positive) number of times the term appears in it
+	 */
+	void add(int document, int frequency) {
+		if (tailSize == tailDocuments.length) {
+			int capacity = Math.min(BLOCK_SIZE, tailSize * 2);
+			tailDocuments = Arrays.copyOf(tailDocuments, capacity);
+			tailFrequencies = Arrays.copyOf(tailFrequencies, capacity);
+		}
+		tailDocuments[tailSize] = document;
+		tailFrequencies[tailSize] = frequency;
+		tailSize++;
+		maxFrequency = Math.max(maxFrequency, frequency);
+		if (tailSize == BLOCK_SIZE) {
+			seal();
+		}
+	}
+
+	/**
+	 * @return the number of documents containing the term
+	 */
+	int size() {
+		return blockCount * BLOCK_SIZE + tailSize;
+	}
+
+	/**
+	 * @return the largest frequency of the term in any document
+	 */
+	int maxFrequency() {
+		return maxFrequency;
+	}
+
+	/**
+	 * @return an iterator over the postings, positioned before the first
+	 */
+	PostingsIterator iterator() {
+		return new PostingsIterator(this);
+	}
+
+	/**
+	 * @param document a document ordinal
+	 * @return the frequency of the term in that document, or 0 if the
+	 *         document does not contain it
+	 */
+	int frequencyOf(int document) {
+		PostingsIterator postings = iterator();
+		return postings.advance(document) == document ? postings.frequency() : 0;
+	}
+
+	/**
+	 * @return the number of bytes the postings take up, not counting object
+	 *         headers
+	 */
+	long sizeInBytes() {
+		return data.length + 4L * (blockLastDocuments.length + blockOffsets.length
+				+ tailDocuments.length + tailFrequencies.length);
+	}
+
+	int blockCount() {
+		return blockCount;
+	}
+
+	int blockLastDocument(int block) {
+		return blockLastDocuments[block];
+	}
+
+	/**
+	 * Return the first block, from block start on, whose last ordinal is at
+	 * least target, or blockCount() if there is none.
+	 */
+	int findBlock(int start, int target) {
+		int i = Arrays.binarySearch(blockLastDocuments, start, blockCount, target);
+		return i >= 0 ? i : -i - 1;
+	}
+
+	/**
+	 * Decode the ordinals of a sealed block into documents.
+	 *
+	 * @return the offset of the block's frequencies, for decodeFrequencies()
+	 */
+	int decodeDocuments(int block, int[] documents) {
+		int next = PostingsCodec.decode(data, blockOffsets[block], documents);
+		int previous = block == 0 ? -1 : blockLastDocuments[block - 1];
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			previous += documents[i] + 1;
+			documents[i] = previous;
+		}
+		return next;
+	}
+
+	/**
+	 * Decode the frequencies of a sealed block, which start at offset.
+	 */
+	void decodeFrequencies(int offset, int[] frequencies) {
+		PostingsCodec.decode(data, offset, frequencies);
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			frequencies[i]++;
+		}
+	}
+
+	int[] tailDocuments() {
+		return tailDocuments;
+	}
+
+	int[] tailFrequencies() {
+		return tailFrequencies;
+	}
+
+	int tailSize() {
+		return tailSize;
+	}
+
+	/**
+	 * Compress the (full) tail into a new block.
+	 */
+	private void seal() {
+		int previous = blockCount == 0 ? -1 : blockLastDocuments[blockCount - 1];
+		int[] values = new int[BLOCK_SIZE];
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			values[i] = tailDocuments[i] - previous - 1;
+			previous = tailDocuments[i];
+		}
+		byte[] documents = PostingsCodec.encode(values);
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			values[i] = tailFrequencies[i] - 1;
+		}
+		byte[] frequencies = PostingsCodec.encode(values);
+
+		if (blockCount == blockOffsets.length) {
+			int capacity = Math.max(4, blockCount * 2);
+			blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+			blockLastDocuments = Arrays.copyOf(blockLastDocuments, capacity);
+		}
+		blockOffsets[blockCount] = dataLength;
+		blockLastDocuments[blockCount] = previous;
+		blockCount++;
+		int end = dataLength + documents.length + frequencies.length;
+		if (end + PostingsCodec.PADDING > data.length) {
+			data = Arrays.copyOf(data, Math.max(end + PostingsCodec.PADDING, data.length + data.length / 2));
+		}
+		System.arraycopy(documents, 0, data, dataLength, documents.length);
+		System.arraycopy(frequencies, 0, data, dataLength + documents.length, frequencies.length);
+		dataLength = end;
+		tailSize = 0;
+	}
+}
@@ -6,15 +6,30 @@ package index;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
-import comparators.TfIdfComparator;
 import documents.DocumentId;
 
 /**
@@ -31,6 +46,31 @@ import documents.DocumentId;
  * Lookups for documents can be done by term, and the most relevant document(s) to a specific term 
  * (as computed by tf-idf) can also be retrieved.
  *
+ * Terms and DocumentIds are interned to dense ints as they are first seen; documents are
+ * numbered (given "ordinals") in the order they are added. For each term the engine keeps
+ * a PostingsList of the ordinals of the documents containing it, each with the term's
+ * frequency in that document, counted once when the document is added. The documents'
+ * text is not kept. The document frequency of a term is the length of its postings, and
+ * its frequency in a document is found by skipping through them. Postings are stored
+ * compressed, in blocks; see PostingsList.
+ *
+ * relevanceLookup(query, k) returns only the k most relevant documents for a multi-term
+ * query, keeping the best so far in a bounded heap. It uses MaxScore pruning: each term's
+ * score in any document is at most its largest frequency times its IDF, so once the heap
+ * is full, terms whose bounds add up to less than the k'th best score cannot by themselves
+ * place a document in the results. Only the postings of the other terms are walked; the
+ * low-scoring terms are merely probed (with PostingsIterator.advance()) for documents that
+ * might still make it, and the more selective the top k become the more terms drop out.
+ *
+ * addDocuments() ingests many documents at once on several threads. Each worker tokenizes
+ * a batch of them into a private Segment, a miniature index numbered from zero, and the
+ * segments are merged in stream order, so the result is the same as adding the documents
+ * one-by-one.
+ *
+ * booleanLookup() answers queries combining terms with AND, OR and NOT (see BooleanQuery).
+ * The query runs as a tree of DocIdIterators over the postings, and its matches are
+ * streamed from them one at a time, in the order the documents were added.
+ *
  * See:
  * - <https://en.wikipedia.org/wiki/Inverted_index>
  * - <https://en.wikipedia.org/wiki/Search_engine_(computing)> 
@@ -40,50 +80,227 @@ import documents.DocumentId;
  *
  */
 public class SearchEngine {
-	private Map<DocumentId, List<String>> documentIndex;
-    private Map<String, Set<DocumentId>> invertedIndex;
-    private Map<String, Integer> documentFrequency;
-    private int totalDocuments;
+	// widens score bounds, so that rounding in sums taken in another order never prunes a tie
+	private static final double BOUND_SLACK = 1e-9;
+	// the number of documents each ingest worker tokenizes into one segment
+	private static final int INGEST_BATCH_SIZE = 64;
+
+	// interned terms: termIds maps a term to its index in postings
+	private final Map<String, Integer> termIds;
+	private final List<PostingsList> postings;
+	// interned documents: documentOrdinals maps a DocumentId to its index in documents
+	private final Map<DocumentId, Integer> documentOrdinals;
+	private final List<DocumentId> documents;
+
+	public SearchEngine() {
+		termIds = new HashMap<>();
+		postings = new ArrayList<>();
+		documentOrdinals = new HashMap<>();
+		documents = new ArrayList<>();
+	}
+
 	/**
 	 * Inserts a document into the search engine for later analysis and retrieval.
 	 * 
 	 * The document is uniquely identified by a documentId; attempts to re-insert the same 
 	 * document are ignored.
 	 * 
-	 * The document is supplied as a Reader; this method stores the document contents for 
-	 * later analysis and retrieval.
+	 * The document is supplied as a Reader; this method counts the terms of the document
+	 * and adds them to the index for later analysis and retrieval.
 	 * 
 	 * @param documentId
 	 * @param reader
 	 * @throws IOException iff the reader throws an exception 
 	 */
-	  public SearchEngine() {
-        documentIndex = new HashMap<>();
-        invertedIndex = new HashMap<>();
-        documentFrequency = new HashMap<>();
-        totalDocuments = 0;
-    }
-    
 	public void addDocument(DocumentId documentId, Reader reader) throws IOException {
-		if (documentIndex.containsKey(documentId)) {
-            return;
-        }
-        
-        try (BufferedReader br = new BufferedReader(reader)) {
-            String line;
-            List<String> terms = new ArrayList<>();
-            while ((line = br.readLine()) != null) {
-                String[] lineTerms = line.trim().toLowerCase().split("\\W+");
-
-                for (String term : lineTerms) {
-                    terms.add(term);
-                    documentFrequency.put(term, documentFrequency.getOrDefault(term, 0) + 1);
-                    invertedIndex.computeIfAbsent(term, k -> new HashSet<>()).add(documentId);
-                }
-            }
-            documentIndex.put(documentId, terms);
-            totalDocuments++;
-        }
+		if (documentOrdinals.containsKey(documentId)) {
+			return;
+		}
+
+		Map<String, Integer> frequencies = countTerms(reader);
+		int ordinal = documents.size();
+		documents.add(documentId);
+		documentOrdinals.put(documentId, ordinal);
+		for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+			postings.get(termId(entry.getKey())).add(ordinal, entry.getValue());
+		}
+	}
+
+	/**
+	 * Inserts a stream of documents into the search engine, tokenizing them on one worker
+	 * thread per available processor.
+	 * 
+	 * @see #addDocuments(Stream, int)
+	 * @param documents
+	 * @throws IOException iff a reader throws an exception
+	 */
+	public void addDocuments(Stream<Map.Entry<DocumentId, Reader>> documents) throws IOException {
+		addDocuments(documents, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Inserts a stream of documents into the search engine, tokenizing them on the given
+	 * number of worker threads.
+	 * 
+	 * The engine ends up exactly as if addDocument() had been called on each document in
+	 * stream order: documents already in the engine, and repeats of a documentId within
+	 * the stream, are ignored (without reading them), and the first occurrence of each
+	 * documentId is the one indexed. Documents are numbered in stream order, so the
+	 * document counts, IDFs, scores and orders of every lookup are the same.
+	 * 
+	 * The stream is consumed on the calling thread. Its documents are cut into batches,
+	 * each of which a worker tokenizes into a private Segment; the segments are then
+	 * merged into the engine, in order, on the calling thread. At most two batches per
+	 * thread are outstanding at once: the stream is only read further as the oldest
+	 * segment is merged, so neither readers nor segments pile up for a large stream.
+	 * 
+	 * If a reader throws an exception, the documents before its batch have been added,
+	 * and the rest have not; the readers of the batches not added are closed, and the
+	 * rest of the stream is left unread.
+	 * 
+	 * @param documents
+	 * @param threads the number of worker threads
+	 * @throws IOException iff a reader throws an exception
+	 * @throws IllegalArgumentException if threads is less than one
+	 */
+	public void addDocuments(Stream<Map.Entry<DocumentId, Reader>> documents, int threads)
+			throws IOException, IllegalArgumentException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least one");
+		}
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		// batches submitted but not yet merged, oldest first, with their segments-to-be
+		Deque<List<Map.Entry<DocumentId, Reader>>> pendingBatches = new ArrayDeque<>();
+		Deque<Future<Segment>> pendingSegments = new ArrayDeque<>();
+		List<Map.Entry<DocumentId, Reader>> batch = new ArrayList<>();
+		boolean completed = false;
+		try {
+			Set<DocumentId> seen = new HashSet<>();
+			Iterator<Map.Entry<DocumentId, Reader>> it = documents.iterator();
+			while (it.hasNext()) {
+				Map.Entry<DocumentId, Reader> document = it.next();
+				if (documentOrdinals.containsKey(document.getKey()) || !seen.add(document.getKey())) {
+					continue;
+				}
+				batch.add(document);
+				if (batch.size() == INGEST_BATCH_SIZE) {
+					pendingBatches.add(batch);
+					pendingSegments.add(workers.submit(buildSegment(batch)));
+					batch = new ArrayList<>();
+					// stop reading ahead of the workers until the oldest segment is merged
+					while (pendingSegments.size() >= 2 * threads) {
+						mergeOldest(pendingBatches, pendingSegments);
+					}
+				}
+			}
+			if (!batch.isEmpty()) {
+				pendingBatches.add(batch);
+				pendingSegments.add(workers.submit(buildSegment(batch)));
+				batch = new ArrayList<>();
+			}
+			while (!pendingSegments.isEmpty()) {
+				mergeOldest(pendingBatches, pendingSegments);
+			}
+			completed = true;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw (RuntimeException) e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while adding documents");
+		} finally {
+			for (Future<Segment> segment : pendingSegments) {
+				segment.cancel(true);
+			}
+			workers.shutdownNow();
+			if (!completed) {
+				// close the readers of every batch that was not merged; closing twice is harmless
+				pendingBatches.add(batch);
+				for (List<Map.Entry<DocumentId, Reader>> unmerged : pendingBatches) {
+					for (Map.Entry<DocumentId, Reader> document : unmerged) {
+						try {
+							document.getValue().close();
+						} catch (IOException e) {
+							// already failing; the original exception is the one to report
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wait for the oldest pending segment and merge it, removing it and its batch only once
+	 * it has been merged.
+	 */
+	private void mergeOldest(Deque<List<Map.Entry<DocumentId, Reader>>> pendingBatches,
+			Deque<Future<Segment>> pendingSegments) throws ExecutionException, InterruptedException {
+		merge(pendingSegments.peek().get());
+		pendingSegments.remove();
+		pendingBatches.remove();
+	}
+
+	private static Callable<Segment> buildSegment(List<Map.Entry<DocumentId, Reader>> batch) {
+		return () -> {
+			Segment segment = new Segment();
+			for (Map.Entry<DocumentId, Reader> document : batch) {
+				segment.add(document.getKey(), document.getValue());
+			}
+			return segment;
+		};
+	}
+
+	/**
+	 * Append a segment's documents, numbering them after those already in the engine.
+	 */
+	private void merge(Segment segment) {
+		int base = documents.size();
+		for (DocumentId documentId : segment.documents()) {
+			documentOrdinals.put(documentId, documents.size());
+			documents.add(documentId);
+		}
+		for (int t = 0; t < segment.termCount(); t++) {
+			PostingsList list = postings.get(termId(segment.term(t)));
+			PostingsIterator segmentPostings = segment.postings(t).iterator();
+			for (int document = segmentPostings.nextDoc(); document != DocIdIterator.NO_MORE_DOCS;
+					document = segmentPostings.nextDoc()) {
+				list.add(base + document, segmentPostings.frequency());
+			}
+		}
+	}
+
+	/**
+	 * Count the occurrences of each term in a document, and close it.
+	 */
+	static Map<String, Integer> countTerms(Reader reader) throws IOException {
+		Map<String, Integer> frequencies = new HashMap<>();
+		try (BufferedReader br = new BufferedReader(reader)) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				for (String term : line.trim().toLowerCase().split("\\W+")) {
+					frequencies.merge(term, 1, Integer::sum);
+				}
+			}
+		}
+		return frequencies;
+	}
+
+	/**
+	 * Returns the id of a term, interning it if it is new.
+	 */
+	private int termId(String term) {
+		Integer termId = termIds.get(term);
+		if (termId == null) {
+			termId = postings.size();
+			termIds.put(term, termId);
+			postings.add(new PostingsList());
+		}
+		return termId;
 	}
 	
 	/**
@@ -93,7 +310,16 @@ public class SearchEngine {
 	 * @return the set of DocumentIds that contain a given term
 	 */
 	public Set<DocumentId> indexLookup(String term) {
-		return invertedIndex.getOrDefault(term.toLowerCase(), new HashSet<>());
+		Set<DocumentId> result = new HashSet<>();
+		PostingsList list = postingsFor(term);
+		if (list != null) {
+			PostingsIterator postings = list.iterator();
+			for (int document = postings.nextDoc(); document != DocIdIterator.NO_MORE_DOCS;
+					document = postings.nextDoc()) {
+				result.add(documents.get(document));
+			}
+		}
+		return result;
 	}
 	
 	/**
@@ -108,17 +334,12 @@ public class SearchEngine {
 	 * @throws IllegalArgumentException if the documentId has not been added to the engine
 	 */
 	public int termFrequency(DocumentId documentId, String term) throws IllegalArgumentException {
-		List<String> terms = documentIndex.get(documentId);
-        if (terms == null) {
-            throw new IllegalArgumentException("Document not found");
-        }
-        int frequency = 0;
-        for (String t : terms) {
-            if (t.equalsIgnoreCase(term)) {
-                frequency++;
-            }
-        }
-        return frequency;
+		Integer ordinal = documentOrdinals.get(documentId);
+		if (ordinal == null) {
+			throw new IllegalArgumentException("Document not found");
+		}
+		PostingsList list = postingsFor(term);
+		return list == null ? 0 : list.frequencyOf(ordinal);
 	}
 	
 	/**
@@ -132,8 +353,8 @@ public class SearchEngine {
 	 * @return the inverse document frequency of term 
 	 */
 	public double inverseDocumentFrequency(String term) {
-		int documentsWithTerm = invertedIndex.getOrDefault(term.toLowerCase(), new HashSet<>()).size();
-        return Math.log((1 + (double) totalDocuments) / (1 + documentsWithTerm));
+		PostingsList list = postingsFor(term);
+		return inverseDocumentFrequency(list == null ? 0 : list.size());
 	}
 	
 	/**
@@ -148,28 +369,252 @@ public class SearchEngine {
 	 */
 	public double tfIdf(DocumentId documentId, String term) throws IllegalArgumentException {
 		int tf = termFrequency(documentId, term);
-        double idf = inverseDocumentFrequency(term);
-        return tf * idf;
+		double idf = inverseDocumentFrequency(term);
+		return tf * idf;
 	}
 	
 	/**
 	 * Returns a sorted list of documents, most relevant to least relevant, for the given term.
 	 * 
 	 * A document with a larger tfidf score is more relevant than a document with a lower tfidf score.
+	 * Ties are broken by DocumentId, as TfIdfComparator does.
 	 * 
 	 * Each document in the returned list must contain the term.
 	 * 
+	 * The scores are computed once per document, straight from the term's postings.
+	 * 
 	 * @param term
 	 * @return a list of documents sorted in descending order by tfidf
 	 */
 	public List<DocumentId> relevanceLookup(String term) {
-		List<DocumentId> relevantDocuments = new ArrayList<>();
-        Set<DocumentId> documents = indexLookup(term);
-        for (DocumentId documentId : documents) {
-            relevantDocuments.add(documentId);
-			System.out.println(documentId + " " + documentFrequency.get(documentId) + "\n");
-        }
-        relevantDocuments.sort(new TfIdfComparator(this, term));
+		PostingsList list = postingsFor(term);
+		if (list == null) {
+			return new ArrayList<>();
+		}
+		double idf = inverseDocumentFrequency(list.size());
+		List<ScoredDocument> scored = new ArrayList<>(list.size());
+		PostingsIterator postings = list.iterator();
+		for (int document = postings.nextDoc(); document != DocIdIterator.NO_MORE_DOCS;
+				document = postings.nextDoc()) {
+			scored.add(new ScoredDocument(documents.get(document), postings.frequency() * idf));
+		}
+		scored.sort(null);
+		List<DocumentId> relevantDocuments = new ArrayList<>(scored.size());
+		for (ScoredDocument document : scored) {
+			relevantDocuments.add(document.documentId);
+		}
+		return relevantDocuments;
+	}
+
+	/**
+	 * Returns the k most relevant documents for a query, most relevant first.
+	 * 
+	 * The query is split into terms as documents are (empty terms are ignored, as are repeats).
+	 * A document matches if it contains any of the terms, and its relevance is the sum of the
+	 * tfidf scores of the terms for it. Ties are broken by DocumentId, as in
+	 * relevanceLookup(String). For a single-term query, the result is the first k documents of
+	 * relevanceLookup(term).
+	 * 
+	 * @param query the terms to search for
+	 * @param k the maximum number of documents to return
+	 * @return up to k documents, sorted in descending order by relevance
+	 * @throws IllegalArgumentException if k is negative
+	 */
+	public List<DocumentId> relevanceLookup(String query, int k) throws IllegalArgumentException {
+		if (k < 0) {
+			throw new IllegalArgumentException("k must not be negative: " + k);
+		}
+		Set<String> terms = new LinkedHashSet<>(Arrays.asList(query.trim().toLowerCase().split("\\W+")));
+		terms.remove("");
+		List<TermScorer> scorers = new ArrayList<>();
+		for (String term : terms) {
+			PostingsList list = postingsFor(term);
+			if (list != null) {
+				scorers.add(new TermScorer(scorers.size(), list, inverseDocumentFrequency(list.size())));
+			}
+		}
+		if (k == 0 || scorers.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		// contributions are summed in query order, so that scores do not depend on pruning
+		double[] contributions = new double[scorers.size()];
+		TermScorer[] byBound = scorers.toArray(new TermScorer[0]);
+		Arrays.sort(byBound, Comparator.comparingDouble(scorer -> scorer.maxScore));
+		// bounds[i] is the most that the terms byBound[0..i] can add to a score together
+		double[] bounds = new double[byBound.length];
+		double sum = 0;
+		for (int i = 0; i < byBound.length; i++) {
+			sum += byBound[i].maxScore;
+			bounds[i] = sum * (1 + BOUND_SLACK);
+			byBound[i].postings.nextDoc();
+		}
+
+		// the least relevant of the best k so far is at the head
+		PriorityQueue<ScoredDocument> best = new PriorityQueue<>(k, Collections.reverseOrder());
+		// byBound[0..firstEssential) cannot place a document in the top k on their own
+		int firstEssential = 0;
+		double threshold = 0;
+		while (true) {
+			int document = DocIdIterator.NO_MORE_DOCS;
+			for (int i = firstEssential; i < byBound.length; i++) {
+				document = Math.min(document, byBound[i].postings.docID());
+			}
+			if (document == DocIdIterator.NO_MORE_DOCS) {
+				break;
+			}
+
+			Arrays.fill(contributions, 0);
+			double partial = 0;
+			for (int i = firstEssential; i < byBound.length; i++) {
+				TermScorer scorer = byBound[i];
+				if (scorer.postings.docID() == document) {
+					contributions[scorer.position] = scorer.score();
+					partial += contributions[scorer.position];
+					scorer.postings.nextDoc();
+				}
+			}
+			boolean competitive = true;
+			for (int i = firstEssential - 1; i >= 0; i--) {
+				if (partial + bounds[i] < threshold) {
+					competitive = false;
+					break;
+				}
+				TermScorer scorer = byBound[i];
+				int at = scorer.postings.docID();
+				if (at < document) {
+					at = scorer.postings.advance(document);
+				}
+				if (at == document) {
+					contributions[scorer.position] = scorer.score();
+					partial += contributions[scorer.position];
+				}
+			}
+			if (!competitive) {
+				continue;
+			}
+
+			double score = 0;
+			for (double contribution : contributions) {
+				score += contribution;
+			}
+			if (best.size() == k && score < threshold) {
+				continue;
+			}
+			ScoredDocument candidate = new ScoredDocument(documents.get(document), score);
+			if (best.size() < k) {
+				best.add(candidate);
+			} else if (candidate.compareTo(best.peek()) < 0) {
+				best.poll();
+				best.add(candidate);
+			}
+			if (best.size() == k) {
+				threshold = best.peek().score;
+				while (firstEssential < byBound.length && bounds[firstEssential] < threshold) {
+					firstEssential++;
+				}
+			}
+		}
+
+		List<ScoredDocument> sorted = new ArrayList<>(best);
+		sorted.sort(null);
+		List<DocumentId> relevantDocuments = new ArrayList<>(sorted.size());
+		for (ScoredDocument document : sorted) {
+			relevantDocuments.add(document.documentId);
+		}
 		return relevantDocuments;
 	}
+
+	/**
+	 * Returns the documents matching a boolean query, such as "tomato AND (pasta OR pizza)
+	 * AND NOT meat", in the order they were added to the engine.
+	 * 
+	 * Terms are case-insensitive, as in indexLookup(); the operators AND, OR and NOT must be
+	 * in upper case, and AND may be left out. See BooleanQuery for the details.
+	 * 
+	 * The documents are found as the iterator is advanced, rather than up front. Adding
+	 * documents while iterating has undefined results.
+	 * 
+	 * @param query the query
+	 * @return an iterator over the matching documents
+	 * @throws IllegalArgumentException if the query is empty or malformed
+	 */
+	public Iterator<DocumentId> booleanLookup(String query) throws IllegalArgumentException {
+		DocIdIterator matches = BooleanQuery.parse(query).iterator(this::postingsFor, documents.size());
+		return new Iterator<DocumentId>() {
+			private int next = matches.nextDoc();
+
+			@Override
+			public boolean hasNext() {
+				return next != DocIdIterator.NO_MORE_DOCS;
+			}
+
+			@Override
+			public DocumentId next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				DocumentId documentId = documents.get(next);
+				next = matches.nextDoc();
+				return documentId;
+			}
+		};
+	}
+
+	/**
+	 * Returns the postings of the (case-folded) term, or null if no document contains it.
+	 */
+	private PostingsList postingsFor(String term) {
+		Integer termId = termIds.get(term.toLowerCase());
+		return termId == null ? null : postings.get(termId);
+	}
+
+	private double inverseDocumentFrequency(int documentsWithTerm) {
+		return Math.log((1 + (double) documents.size()) / (1 + documentsWithTerm));
+	}
+
+	/**
+	 * The postings of one query term, with its IDF and the most it can add to any score.
+	 */
+	private static class TermScorer {
+		final int position;
+		final PostingsIterator postings;
+		final double idf;
+		final double maxScore;
+
+		TermScorer(int position, PostingsList list, double idf) {
+			this.position = position;
+			this.postings = list.iterator();
+			this.idf = idf;
+			this.maxScore = list.maxFrequency() * idf;
+		}
+
+		double score() {
+			return postings.frequency() * idf;
+		}
+	}
+
+	/**
+	 * A document and its score, ordered most relevant first, as TfIdfComparator orders them.
+	 */
+	private static class ScoredDocument implements Comparable<ScoredDocument> {
+		final DocumentId documentId;
+		final double score;
+
+		ScoredDocument(DocumentId documentId, double score) {
+			this.documentId = documentId;
+			this.score = score;
+		}
+
+		@Override
+		public int compareTo(ScoredDocument other) {
+			if (score < other.score) {
+				return 1;
+			}
+			if (score > other.score) {
+				return -1;
+			}
+			return documentId.id.compareTo(other.documentId.id);
+		}
+	}
 }
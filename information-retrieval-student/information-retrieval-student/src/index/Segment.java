@@ -0,0 +1,69 @@
+package index;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import documents.DocumentId;
+
+/**
+ * A small, private index of a run of documents, built by one ingest worker
+ * and later merged into a SearchEngine.
+ *
+ * A segment is laid out like the engine itself: terms are interned to dense
+ * ints, and each has a PostingsList, but of the documents' ordinals within
+ * the segment (0, 1, 2, ... in the order they were added). Building one
+ * touches nothing shared, so workers can tokenize segments concurrently;
+ * merging one just offsets its ordinals by the number of documents already
+ * in the engine, which keeps every merged PostingsList in increasing order.
+ */
+class Segment {
+	private final List<DocumentId> documents = new ArrayList<>();
+	private final Map<String, Integer> termIds = new HashMap<>();
+	private final List<String> terms = new ArrayList<>();
+	private final List<PostingsList> postings = new ArrayList<>();
+
+	/**
+	 * Tokenize a document and add it as the segment's next document. The
+	 * caller is responsible for never adding the same documentId twice.
+	 *
+	 * @throws IOException iff the reader throws an exception
+	 */
+	void add(DocumentId documentId, Reader reader) throws IOException {
+		Map<String, Integer> frequencies = SearchEngine.countTerms(reader);
+		int ordinal = documents.size();
+		documents.add(documentId);
+		for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+			Integer termId = termIds.get(entry.getKey());
+			if (termId == null) {
+				termId = postings.size();
+				termIds.put(entry.getKey(), termId);
+				terms.add(entry.getKey());
+				postings.add(new PostingsList());
+			}
+			postings.get(termId).add(ordinal, entry.getValue());
+		}
+	}
+
+	/**
+	 * @return the segment's documents, in the order they were added
+	 */
+	List<DocumentId> documents() {
+		return documents;
+	}
+
+	int termCount() {
+		return terms.size();
+	}
+
+	String term(int termId) {
+		return terms.get(termId);
+	}
+
+	PostingsList postings(int termId) {
+		return postings.get(termId);
+	}
+}
@@ -0,0 +1,216 @@
+package index;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import documents.DocumentId;
+
+public class BooleanQueryTest {
+
+	@Rule
+	public Timeout globalTimeout = Timeout.seconds(10); // 10 seconds
+
+	@Test
+	public void testPrecedence() throws Exception {
+		assertEquals("tomato", BooleanQuery.parse("Tomato").toString());
+		assertEquals("(a AND b)", BooleanQuery.parse("a AND b").toString());
+		assertEquals("(a AND b)", BooleanQuery.parse("a b").toString());
+		assertEquals("(a OR (b AND c))", BooleanQuery.parse("a OR b AND c").toString());
+		assertEquals("((a OR b) AND c)", BooleanQuery.parse("(a OR b) c").toString());
+		assertEquals("(NOT a AND b)", BooleanQuery.parse("NOT a b").toString());
+		assertEquals("NOT NOT (a OR b)", BooleanQuery.parse("NOT NOT (a OR b)").toString());
+		assertEquals("(and AND or AND not)", BooleanQuery.parse("and or not").toString());
+		assertEquals("((tomato AND sauce) OR pasta)", BooleanQuery.parse("Tomato-Sauce OR pasta").toString());
+	}
+
+	@Test
+	public void testMalformed() throws Exception {
+		for (String query : new String[] { "", "  ", "a AND", "OR a", "(a", "a)", "()", "NOT", "a OR OR b" }) {
+			try {
+				BooleanQuery.parse(query);
+				fail("parsed '" + query + "'");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	private static List<Integer> drain(DocIdIterator iterator) {
+		List<Integer> documents = new ArrayList<>();
+		for (int d = iterator.nextDoc(); d != DocIdIterator.NO_MORE_DOCS; d = iterator.nextDoc()) {
+			documents.add(d);
+		}
+		assertEquals(DocIdIterator.NO_MORE_DOCS, iterator.nextDoc());
+		return documents;
+	}
+
+	private static PostingsList postings(int... documents) {
+		PostingsList list = new PostingsList();
+		for (int d : documents) {
+			list.add(d, 1);
+		}
+		return list;
+	}
+
+	@Test
+	public void testIterators() throws Exception {
+		PostingsList a = postings(1, 3, 5, 7, 9, 11);
+		PostingsList b = postings(3, 4, 5, 11, 12);
+		PostingsList c = postings(0, 5, 11);
+		assertEquals(Arrays.asList(3, 5, 11),
+				drain(new ConjunctionIterator(Arrays.asList(a.iterator(), b.iterator()))));
+		assertEquals(Arrays.asList(5, 11),
+				drain(new ConjunctionIterator(Arrays.asList(a.iterator(), b.iterator(), c.iterator()))));
+		assertEquals(Arrays.asList(0, 1, 3, 4, 5, 7, 9, 11, 12),
+				drain(new DisjunctionIterator(Arrays.asList(a.iterator(), b.iterator(), c.iterator()))));
+		assertEquals(Arrays.asList(1, 7, 9), drain(new ExclusionIterator(a.iterator(), b.iterator())));
+		assertEquals(Arrays.asList(1, 2, 4, 6, 8, 10),
+				drain(new ExclusionIterator(DocIdIterator.all(11), new DisjunctionIterator(
+						Arrays.asList(c.iterator(), postings(3, 7, 9).iterator())))));
+		assertEquals(Arrays.asList(), drain(DocIdIterator.empty()));
+	}
+
+	@Test
+	public void testConjunctionAdvance() throws Exception {
+		PostingsList a = new PostingsList();
+		PostingsList b = new PostingsList();
+		for (int i = 0; i < 100000; i++) {
+			a.add(i, 1);
+			if (i % 7 == 0) {
+				b.add(i, 1);
+			}
+		}
+		ConjunctionIterator both = new ConjunctionIterator(Arrays.asList(a.iterator(), b.iterator()));
+		assertEquals(b.size(), both.cost());
+		assertEquals(700, both.advance(698));
+		assertEquals(707, both.nextDoc());
+		assertEquals(DocIdIterator.NO_MORE_DOCS, both.advance(100000));
+	}
+
+	/**
+	 * Builds a random query over the terms, and the set of documents it should match.
+	 */
+	private static String randomQuery(Random random, SearchEngine engine, Set<DocumentId> all,
+			List<String> terms, int depth, Set<DocumentId> matches) {
+		int kind = depth == 0 ? 0 : random.nextInt(4);
+		if (kind == 0) {
+			String term = terms.get(random.nextInt(terms.size()));
+			matches.addAll(engine.indexLookup(term));
+			return random.nextBoolean() ? term : term.toUpperCase();
+		}
+		if (kind == 3) {
+			Set<DocumentId> inner = new HashSet<>();
+			String query = randomQuery(random, engine, all, terms, depth - 1, inner);
+			matches.addAll(all);
+			matches.removeAll(inner);
+			return "NOT " + query;
+		}
+		Set<DocumentId> left = new HashSet<>();
+		Set<DocumentId> right = new HashSet<>();
+		String l = randomQuery(random, engine, all, terms, depth - 1, left);
+		String r = randomQuery(random, engine, all, terms, depth - 1, right);
+		if (kind == 1) {
+			left.retainAll(right);
+			matches.addAll(left);
+			return "(" + l + (random.nextBoolean() ? " AND " : " ") + r + ")";
+		}
+		left.addAll(right);
+		matches.addAll(left);
+		return "(" + l + " OR " + r + ")";
+	}
+
+	@Test
+	public void testRandomQueriesMatchSets() throws Exception {
+		Random random = new Random(24);
+		SearchEngine engine = new SearchEngine();
+		Set<DocumentId> all = new HashSet<>();
+		Map<DocumentId, Integer> order = new HashMap<>();
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder text = new StringBuilder();
+			for (int j = random.nextInt(30); j >= 0; j--) {
+				text.append("w").append((int) Math.abs(random.nextGaussian() * 15)).append(' ');
+			}
+			DocumentId id = new DocumentId("doc" + i);
+			all.add(id);
+			order.put(id, i);
+			engine.addDocument(id, new StringReader(text.toString()));
+		}
+		List<String> terms = new ArrayList<>();
+		for (int t = 0; t < 50; t++) {
+			terms.add("w" + t);
+		}
+		for (int q = 0; q < 300; q++) {
+			Set<DocumentId> expected = new HashSet<>();
+			String query = randomQuery(random, engine, all, terms, 1 + random.nextInt(4), expected);
+			List<DocumentId> actual = new ArrayList<>();
+			for (Iterator<DocumentId> it = engine.booleanLookup(query); it.hasNext();) {
+				actual.add(it.next());
+			}
+			assertEquals(query, expected, new HashSet<>(actual));
+			// streamed in the order the documents were added
+			List<DocumentId> sorted = new ArrayList<>(actual);
+			sorted.sort((x, y) -> Integer.compare(order.get(x), order.get(y)));
+			assertEquals(query, sorted, actual);
+		}
+	}
+
+	private static List<DocumentId> lookup(SearchEngine engine, String query) {
+		List<DocumentId> matches = new ArrayList<>();
+		engine.booleanLookup(query).forEachRemaining(matches::add);
+		return matches;
+	}
+
+	@Test
+	public void testLookup() throws Exception {
+		SearchEngine engine = new SearchEngine();
+		DocumentId one = new DocumentId("ONE");
+		DocumentId two = new DocumentId("TWO");
+		DocumentId three = new DocumentId("THREE");
+		engine.addDocument(one, new StringReader("this is a a sample"));
+		engine.addDocument(two, new StringReader("this is another another example example example"));
+		engine.addDocument(three, new StringReader("here is another sample example"));
+
+		assertEquals(Arrays.asList(one, three), lookup(engine, "sample"));
+		assertEquals(Arrays.asList(three), lookup(engine, "Sample AND example"));
+		assertEquals(Arrays.asList(three), lookup(engine, "sample example"));
+		assertEquals(Arrays.asList(one, two, three), lookup(engine, "sample OR example"));
+		assertEquals(Arrays.asList(two), lookup(engine, "example NOT sample"));
+		assertEquals(Arrays.asList(two), lookup(engine, "NOT sample"));
+		assertEquals(Arrays.asList(one), lookup(engine, "NOT another NOT here"));
+		assertEquals(Arrays.asList(one, three), lookup(engine, "(this a) OR here"));
+		assertEquals(Arrays.asList(three), lookup(engine, "here-is"));
+		assertEquals(Arrays.asList(), lookup(engine, "missing OR --"));
+		assertEquals(Arrays.asList(), lookup(engine, "sample missing"));
+		assertEquals(Arrays.asList(one, two, three), lookup(engine, "NOT missing"));
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testExhausted() throws Exception {
+		SearchEngine engine = new SearchEngine();
+		engine.addDocument(new DocumentId("ONE"), new StringReader("sample"));
+		Iterator<DocumentId> matches = engine.booleanLookup("sample");
+		matches.next();
+		assertFalse(matches.hasNext());
+		matches.next();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLookupMalformed() throws Exception {
+		new SearchEngine().booleanLookup("(sample OR");
+	}
+}
@@ -0,0 +1,177 @@
+package index;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PostingsListTest {
+	private static final int BLOCK_SIZE = PostingsCodec.BLOCK_SIZE;
+
+	private static int[] roundTrip(int[] values) {
+		byte[] encoded = PostingsCodec.encode(values);
+		byte[] padded = Arrays.copyOf(encoded, encoded.length + PostingsCodec.PADDING);
+		int[] decoded = new int[BLOCK_SIZE];
+		assertEquals(encoded.length, PostingsCodec.decode(padded, 0, decoded));
+		return decoded;
+	}
+
+	@Test
+	public void testCodecZeros() throws Exception {
+		int[] values = new int[BLOCK_SIZE];
+		assertArrayEquals(values, roundTrip(values));
+		assertEquals(2, PostingsCodec.encode(values).length);
+	}
+
+	@Test
+	public void testCodecExtremes() throws Exception {
+		int[] values = new int[BLOCK_SIZE];
+		Arrays.fill(values, Integer.MAX_VALUE);
+		assertArrayEquals(values, roundTrip(values));
+		values[3] = 0;
+		values[100] = 1;
+		assertArrayEquals(values, roundTrip(values));
+	}
+
+	@Test
+	public void testCodecExceptions() throws Exception {
+		int[] values = new int[BLOCK_SIZE];
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			values[i] = i % 4;
+		}
+		values[7] = 1 << 20;
+		values[127] = 123456789;
+		assertArrayEquals(values, roundTrip(values));
+		// two bits each, plus the two exceptions, beats a byte each
+		assertTrue(PostingsCodec.encode(values).length < 48);
+	}
+
+	@Test
+	public void testCodecRandomWidths() throws Exception {
+		Random random = new Random(23);
+		for (int round = 0; round < 500; round++) {
+			int[] values = new int[BLOCK_SIZE];
+			int bits = random.nextInt(32);
+			for (int i = 0; i < BLOCK_SIZE; i++) {
+				values[i] = random.nextInt(20) == 0 ? random.nextInt(Integer.MAX_VALUE)
+						: (int) (random.nextLong() & ((1L << bits) - 1));
+			}
+			assertArrayEquals(values, roundTrip(values));
+		}
+	}
+
+	/**
+	 * Returns a list holding postings for random increasing documents, which are
+	 * written to documents and frequencies.
+	 */
+	private static PostingsList randomList(Random random, int[] documents, int[] frequencies) {
+		PostingsList list = new PostingsList();
+		int document = -1;
+		for (int i = 0; i < documents.length; i++) {
+			document += 1 + (random.nextInt(10) == 0 ? random.nextInt(100000) : random.nextInt(5));
+			documents[i] = document;
+			frequencies[i] = random.nextInt(10) == 0 ? 1 + random.nextInt(1000) : 1;
+			list.add(document, frequencies[i]);
+		}
+		return list;
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		PostingsList list = new PostingsList();
+		assertEquals(0, list.size());
+		assertEquals(PostingsIterator.NO_MORE_DOCS, list.iterator().nextDoc());
+		assertEquals(PostingsIterator.NO_MORE_DOCS, list.iterator().advance(5));
+		assertEquals(0, list.frequencyOf(0));
+	}
+
+	@Test
+	public void testIterationAcrossBlocks() throws Exception {
+		Random random = new Random(1);
+		for (int size : new int[] { 1, 127, 128, 129, 256, 1000 }) {
+			int[] documents = new int[size];
+			int[] frequencies = new int[size];
+			PostingsList list = randomList(random, documents, frequencies);
+			assertEquals(size, list.size());
+			PostingsIterator postings = list.iterator();
+			assertEquals(-1, postings.docID());
+			for (int i = 0; i < size; i++) {
+				assertEquals(documents[i], postings.nextDoc());
+				assertEquals(documents[i], postings.docID());
+				if (i % 3 == 0) {
+					assertEquals(frequencies[i], postings.frequency());
+				}
+			}
+			assertEquals(PostingsIterator.NO_MORE_DOCS, postings.nextDoc());
+			assertEquals(PostingsIterator.NO_MORE_DOCS, postings.nextDoc());
+		}
+	}
+
+	@Test
+	public void testAdvance() throws Exception {
+		Random random = new Random(2);
+		int[] documents = new int[5000];
+		int[] frequencies = new int[5000];
+		PostingsList list = randomList(random, documents, frequencies);
+		for (int round = 0; round < 200; round++) {
+			PostingsIterator postings = list.iterator();
+			int target = random.nextInt(1000);
+			while (true) {
+				int i = Arrays.binarySearch(documents, target);
+				i = i >= 0 ? i : -i - 1;
+				int expected = i < documents.length ? documents[i] : PostingsIterator.NO_MORE_DOCS;
+				assertEquals(expected, postings.advance(target));
+				if (expected == PostingsIterator.NO_MORE_DOCS) {
+					break;
+				}
+				assertEquals(frequencies[i], postings.frequency());
+				if (random.nextBoolean() && postings.nextDoc() == PostingsIterator.NO_MORE_DOCS) {
+					break;
+				}
+				target = postings.docID() + 1 + random.nextInt(random.nextBoolean() ? 10 : 100000);
+			}
+		}
+	}
+
+	@Test
+	public void testFrequencyOf() throws Exception {
+		Random random = new Random(3);
+		int[] documents = new int[700];
+		int[] frequencies = new int[700];
+		PostingsList list = randomList(random, documents, frequencies);
+		for (int i = 0; i < documents.length; i++) {
+			assertEquals(frequencies[i], list.frequencyOf(documents[i]));
+			if (i > 0 && documents[i] - documents[i - 1] > 1) {
+				assertEquals(0, list.frequencyOf(documents[i] - 1));
+			}
+		}
+		assertEquals(0, list.frequencyOf(documents[documents.length - 1] + 1));
+		assertEquals(Arrays.stream(frequencies).max().getAsInt(), list.maxFrequency());
+	}
+
+	@Test
+	public void testLookupsWhileSealing() throws Exception {
+		PostingsList list = new PostingsList();
+		for (int i = 0; i < 300; i++) {
+			list.add(2 * i, 1 + i % 3);
+			PostingsIterator postings = list.iterator();
+			assertEquals(2 * i, postings.advance(2 * i));
+			assertEquals(1 + i % 3, postings.frequency());
+		}
+	}
+
+	@Test
+	public void testCompression() throws Exception {
+		PostingsList list = new PostingsList();
+		Random random = new Random(4);
+		int document = 0;
+		for (int i = 0; i < 100000; i++) {
+			document += 1 + random.nextInt(8);
+			list.add(document, random.nextInt(20) == 0 ? 2 + random.nextInt(5) : 1);
+		}
+		// a few bits of gap and frequency per posting, against 8 bytes uncompressed
+		assertTrue(list.sizeInBytes() + " bytes", list.sizeInBytes() < 100000);
+	}
+}
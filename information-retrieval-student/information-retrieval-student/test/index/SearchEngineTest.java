@@ -7,9 +7,20 @@ package index;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -17,6 +28,7 @@ import org.junit.Test;
 import org.junit.rules.Timeout;
 
 
+import comparators.TfIdfComparator;
 import documents.DocumentId;
 
 public class SearchEngineTest {
@@ -278,4 +290,297 @@ public class SearchEngineTest {
 		assertEquals(Arrays.asList(),
 				searchEngine.relevanceLookup("foobar"));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testReAddIgnored() throws Exception {
+		searchEngine.addDocument(DOCUMENT1_ID, new StringReader(DOCUMENT1));
+		searchEngine.addDocument(DOCUMENT1_ID, new StringReader(DOCUMENT2));
+		assertEquals(2, searchEngine.termFrequency(DOCUMENT1_ID, "a"));
+		assertEquals(0, searchEngine.termFrequency(DOCUMENT1_ID, "example"));
+		assertEquals(Math.log(2.0), searchEngine.inverseDocumentFrequency("example"), 0.0);
+	}
+
+	@Test
+	public void testTermFrequencyCaseInsensitivity() throws Exception {
+		searchEngine.addDocument(PIZZA_ID, new StringReader(PIZZA));
+		assertEquals(6, searchEngine.termFrequency(PIZZA_ID, "AND"));
+		assertEquals(2, searchEngine.termFrequency(PIZZA_ID, "Pizza"));
+	}
+
+	@Test
+	public void testEmptyTerm() throws Exception {
+		// a line starting with a non-word character splits into a leading empty term
+		DocumentId id = new DocumentId("PAREN");
+		searchEngine.addDocument(id, new StringReader("(hello) world\n(again)"));
+		searchEngine.addDocument(DOCUMENT1_ID, new StringReader(DOCUMENT1));
+		assertEquals(new HashSet<>(Arrays.asList(id)), searchEngine.indexLookup(""));
+		assertEquals(2, searchEngine.termFrequency(id, ""));
+	}
+
+	@Test
+	public void testRelevanceMatchesComparator() throws Exception {
+		Random random = new Random(21);
+		List<DocumentId> ids = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder text = new StringBuilder();
+			for (int j = random.nextInt(50); j >= 0; j--) {
+				text.append("term").append(random.nextInt(100)).append(' ');
+			}
+			DocumentId id = new DocumentId("doc" + i);
+			ids.add(id);
+			searchEngine.addDocument(id, new StringReader(text.toString()));
+		}
+		for (int t = 0; t < 100; t += 7) {
+			String term = "TERM" + t;
+			List<DocumentId> expected = new ArrayList<>();
+			for (DocumentId id : ids) {
+				if (searchEngine.termFrequency(id, term) > 0) {
+					expected.add(id);
+				}
+			}
+			expected.sort(new TfIdfComparator(searchEngine, term));
+			assertEquals(new HashSet<>(expected), searchEngine.indexLookup(term));
+			assertEquals(expected, searchEngine.relevanceLookup(term));
+		}
+	}
+
+	/**
+	 * Adds documents of random "termN" words, with term numbers skewed towards 0.
+	 */
+	private List<DocumentId> addRandomDocuments(Random random, int count) throws IOException {
+		List<DocumentId> ids = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			StringBuilder text = new StringBuilder();
+			for (int j = random.nextInt(60); j >= 0; j--) {
+				int term = (int) Math.abs(random.nextGaussian() * 60);
+				text.append("term").append(term).append(' ');
+			}
+			DocumentId id = new DocumentId(String.format("doc%05d", i));
+			ids.add(id);
+			searchEngine.addDocument(id, new StringReader(text.toString()));
+		}
+		return ids;
+	}
+
+	/**
+	 * Scores every document for the query the slow way, summing tfIdf() in query order.
+	 */
+	private List<DocumentId> bruteForceLookup(List<DocumentId> ids, String query, int k) {
+		Set<String> terms = new LinkedHashSet<>(Arrays.asList(query.trim().toLowerCase().split("\\W+")));
+		terms.remove("");
+		List<DocumentId> matches = new ArrayList<>();
+		Map<DocumentId, Double> scores = new HashMap<>();
+		for (DocumentId id : ids) {
+			double score = 0;
+			boolean matched = false;
+			for (String term : terms) {
+				matched |= searchEngine.termFrequency(id, term) > 0;
+				score += searchEngine.tfIdf(id, term);
+			}
+			if (matched) {
+				matches.add(id);
+				scores.put(id, score);
+			}
+		}
+		matches.sort((a, b) -> {
+			int c = Double.compare(scores.get(b), scores.get(a));
+			return c != 0 ? c : a.id.compareTo(b.id);
+		});
+		return matches.subList(0, Math.min(k, matches.size()));
+	}
+
+	@Test
+	public void testTopKFood() throws Exception {
+		addFood();
+		assertEquals(Arrays.asList(TOMATO_SAUCE_ID), searchEngine.relevanceLookup("tomato", 1));
+		assertEquals(Arrays.asList(TOMATO_SAUCE_ID, PIZZA_ID), searchEngine.relevanceLookup("Tomato", 10));
+		assertEquals(Arrays.asList(), searchEngine.relevanceLookup("foobar", 10));
+		assertEquals(Arrays.asList(), searchEngine.relevanceLookup("tomato", 0));
+		assertEquals(Arrays.asList(TOMATO_SAUCE_ID, SPAGHETTI_ID, PIZZA_ID),
+				searchEngine.relevanceLookup("tomato pasta", 3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTopKNegative() throws Exception {
+		searchEngine.relevanceLookup("tomato", -1);
+	}
+
+	@Test
+	public void testTopKSingleTermIsPrefix() throws Exception {
+		List<DocumentId> ids = addRandomDocuments(new Random(22), 3000);
+		for (int t = 0; t < 150; t += 11) {
+			List<DocumentId> all = searchEngine.relevanceLookup("term" + t);
+			for (int k : new int[] { 1, 10, 100 }) {
+				assertEquals(all.subList(0, Math.min(k, all.size())), searchEngine.relevanceLookup("term" + t, k));
+			}
+		}
+		assertEquals(3000, ids.size());
+	}
+
+	@Test
+	public void testTopKMatchesBruteForce() throws Exception {
+		Random random = new Random(23);
+		List<DocumentId> ids = addRandomDocuments(random, 3000);
+		for (int q = 0; q < 60; q++) {
+			StringBuilder query = new StringBuilder();
+			for (int j = random.nextInt(5); j >= 0; j--) {
+				query.append(j % 2 == 0 ? "Term" : "term").append((int) Math.abs(random.nextGaussian() * 80)).append(' ');
+			}
+			int k = new int[] { 1, 5, 10, 100, 5000 }[q % 5];
+			assertEquals(query.toString(), bruteForceLookup(ids, query.toString(), k),
+					searchEngine.relevanceLookup(query.toString(), k));
+		}
+	}
+
+	/**
+	 * Returns the documents as a stream of entries, each with a new reader over its text.
+	 */
+	private static List<Map.Entry<DocumentId, Reader>> entries(List<DocumentId> ids, List<String> texts) {
+		List<Map.Entry<DocumentId, Reader>> entries = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i++) {
+			entries.add(new AbstractMap.SimpleEntry<>(ids.get(i), new StringReader(texts.get(i))));
+		}
+		return entries;
+	}
+
+	private static List<DocumentId> allDocuments(SearchEngine engine) {
+		List<DocumentId> all = new ArrayList<>();
+		engine.booleanLookup("NOT absent").forEachRemaining(all::add);
+		return all;
+	}
+
+	@Test
+	public void testAddDocumentsMatchesSerial() throws Exception {
+		Random random = new Random(25);
+		List<DocumentId> ids = new ArrayList<>();
+		List<String> texts = new ArrayList<>();
+		for (int i = 0; i < 1500; i++) {
+			StringBuilder text = new StringBuilder(random.nextInt(8) == 0 ? "(" : "");
+			for (int j = random.nextInt(40); j >= 0; j--) {
+				text.append("Term").append((int) Math.abs(random.nextGaussian() * 40)).append(' ');
+			}
+			// about one in ten repeats an earlier document, with different text
+			ids.add(new DocumentId("doc" + (random.nextInt(10) == 0 ? random.nextInt(i + 1) : i)));
+			texts.add(text.toString());
+		}
+		for (int threads : new int[] { 1, 3 }) {
+			SearchEngine serial = new SearchEngine();
+			SearchEngine parallel = new SearchEngine();
+			for (SearchEngine engine : Arrays.asList(serial, parallel)) {
+				engine.addDocument(new DocumentId("doc7"), new StringReader("already here"));
+			}
+			for (Map.Entry<DocumentId, Reader> entry : entries(ids, texts)) {
+				serial.addDocument(entry.getKey(), entry.getValue());
+			}
+			parallel.addDocuments(entries(ids, texts).stream(), threads);
+
+			assertEquals(allDocuments(serial), allDocuments(parallel));
+			for (String term : new String[] { "", "already", "term0", "term3", "term40", "term99" }) {
+				assertEquals(term, serial.indexLookup(term), parallel.indexLookup(term));
+				assertEquals(term, serial.inverseDocumentFrequency(term), parallel.inverseDocumentFrequency(term), 0);
+				assertEquals(term, serial.relevanceLookup(term), parallel.relevanceLookup(term));
+			}
+			for (DocumentId id : allDocuments(serial)) {
+				assertEquals(serial.termFrequency(id, "term1"), parallel.termFrequency(id, "term1"));
+			}
+			assertEquals(serial.relevanceLookup("term2 term9 term30", 20),
+					parallel.relevanceLookup("term2 term9 term30", 20));
+		}
+	}
+
+	@Test
+	public void testAddDocumentsFood() throws Exception {
+		searchEngine.addDocuments(entries(Arrays.asList(PIZZA_ID, SPAGHETTI_ID, TOMATO_SAUCE_ID, PIZZA_ID),
+				Arrays.asList(PIZZA, SPAGHETTI, TOMATO_SAUCE, "not pizza")).stream());
+		assertEquals(new HashSet<>(Arrays.asList(PIZZA_ID, TOMATO_SAUCE_ID)), searchEngine.indexLookup("tomato"));
+		assertEquals(2, searchEngine.termFrequency(PIZZA_ID, "Pizza"));
+		assertEquals(Math.log(4.0 / 3), searchEngine.inverseDocumentFrequency("tomato"), 1e-12);
+		searchEngine.addDocuments(entries(Arrays.asList(), Arrays.asList()).stream());
+		assertEquals(Arrays.asList(PIZZA_ID, SPAGHETTI_ID, TOMATO_SAUCE_ID), allDocuments(searchEngine));
+	}
+
+	@Test(expected = IOException.class)
+	public void testAddDocumentsReaderFails() throws Exception {
+		Reader broken = new Reader() {
+			@Override
+			public int read(char[] buffer, int offset, int length) throws IOException {
+				throw new IOException("broken");
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		searchEngine.addDocuments(Arrays.<Map.Entry<DocumentId, Reader>>asList(
+				new AbstractMap.SimpleEntry<>(DOCUMENT1_ID, new StringReader(DOCUMENT1)),
+				new AbstractMap.SimpleEntry<>(DOCUMENT2_ID, broken)).stream(), 2);
+	}
+
+	/**
+	 * A reader over text that counts, in open, the readers not yet closed.
+	 */
+	private static class CountingReader extends StringReader {
+		private final AtomicInteger open;
+		private final boolean broken;
+		private boolean closed;
+
+		CountingReader(String text, AtomicInteger open, boolean broken) {
+			super(text);
+			this.open = open;
+			this.broken = broken;
+			open.incrementAndGet();
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			if (broken) {
+				throw new IOException("broken");
+			}
+			return super.read(buffer, offset, length);
+		}
+
+		@Override
+		public synchronized void close() {
+			if (!closed) {
+				closed = true;
+				open.decrementAndGet();
+			}
+			super.close();
+		}
+	}
+
+	@Test
+	public void testAddDocumentsBoundsReadAhead() throws Exception {
+		AtomicInteger open = new AtomicInteger();
+		AtomicInteger mostOpen = new AtomicInteger();
+		searchEngine.addDocuments(IntStream.range(0, 3000).mapToObj(i -> {
+			Reader reader = new CountingReader("term" + i % 50 + " term" + i % 7, open, false);
+			mostOpen.accumulateAndGet(open.get(), Math::max);
+			return new AbstractMap.SimpleEntry<DocumentId, Reader>(new DocumentId("doc" + i), reader);
+		}), 2);
+		assertEquals(0, open.get());
+		assertEquals(3000, allDocuments(searchEngine).size());
+		// two batches of 64 per thread in flight, plus the one being filled
+		assertTrue(mostOpen.get() + " readers open", mostOpen.get() <= 5 * 64);
+	}
+
+	@Test
+	public void testAddDocumentsClosesUnreadReaders() throws Exception {
+		AtomicInteger open = new AtomicInteger();
+		try {
+			searchEngine.addDocuments(IntStream.range(0, 1000).mapToObj(i -> new AbstractMap.SimpleEntry<DocumentId, Reader>(
+					new DocumentId("doc" + i), new CountingReader("term" + i, open, i == 300))), 2);
+			fail("expected an IOException");
+		} catch (IOException e) {
+			assertEquals("broken", e.getMessage());
+		}
+		assertEquals(0, open.get());
+		// only whole batches before the broken document's are added
+		assertEquals(256, allDocuments(searchEngine).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddDocumentsNoThreads() throws Exception {
+		searchEngine.addDocuments(entries(Arrays.asList(), Arrays.asList()).stream(), 0);
+	}
+}